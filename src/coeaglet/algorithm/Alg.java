@@ -1,8 +1,23 @@
 package coeaglet.algorithm;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.configuration.Configuration;
 
@@ -10,9 +25,12 @@ import coeaglet.individualCreator.FrequencyBasedIndividualCreator;
 import coeaglet.mutator.Mutator;
 import coeaglet.mutator.SubpopMutator;
 import coeaglet.recombinator.Crossover;
+import coeaglet.utils.RandStreams;
+import coeaglet.utils.StreamRandGen;
 import coeaglet.utils.Utils;
 import coeaglet.utils.Utils.CommunicationType;
 import coeaglet.utils.Utils.EvalType;
+import coeaglet.utils.Utils.TerminationReason;
 import mulan.classifier.MultiLabelLearner;
 import mulan.classifier.transformation.LabelPowerset2;
 import mulan.core.MulanException;
@@ -23,6 +41,7 @@ import net.sf.jclec.fitness.SimpleValueFitness;
 import net.sf.jclec.listind.MultipListCreator;
 import net.sf.jclec.listind.MultipListGenotype;
 import net.sf.jclec.listind.MultipListIndividual;
+import net.sf.jclec.listind.MultipListStore;
 import net.sf.jclec.selector.BettersSelector;
 import net.sf.jclec.selector.WorsesSelector;
 import net.sf.jclec.util.random.IRandGen;
@@ -79,6 +98,16 @@ public class Alg extends MultiSGE {
 	 */
 	Hashtable<String, MultiLabelLearner> tableClassifiers = new Hashtable<String, MultiLabelLearner>();
 	
+	/**
+	 * Archive of evaluated genotypes: the genotype of each member in the table of classifiers (e.g., candidates of refinement)
+	 */
+	Hashtable<String, MultipListGenotype> tableGenotypes = new Hashtable<String, MultipListGenotype>();
+	
+	/**
+	 * Table including the inference cost of all individuals (see Eval.memberCost)
+	 */
+	Hashtable<String, double[]> tableCost = new Hashtable<String, double[]>();
+	
 	/** 
 	 * Betters selector.
 	 */	
@@ -105,10 +134,22 @@ public class Alg extends MultiSGE {
 	double bestEnsembleFitness = -1;
 	
 	/**
-	 * Current ensemble fitness (for listener purposes)
+	 * Current ensemble fitness (for listener purposes); it is the last ensemble evaluated on the full training data
 	 */
 	double currentEnsembleFitness;
 	
+	/**
+	 * Estimated fitness of the current ensemble if it was rejected by its estimate, without evaluating it on the full training data 
+	 *  (NaN if it was evaluated as usual)
+	 */
+	double currentEnsembleEstimate = Double.NaN;
+	
+	/**
+	 * Estimated fitness of the last ensemble rejected by its estimate in evaluateEnsemble (NaN if it was evaluated as usual).
+	 * It is read once its evaluation finishes, to commit the ensemble.
+	 */
+	volatile double lastEnsembleEstimate = Double.NaN;
+	
 	/**
 	 * Ratio of instances sampled at each train data
 	 */
@@ -164,6 +205,368 @@ public class Alg extends MultiSGE {
 	 * The lower the value, the higher the probability of communication
 	 */
 	double omega = 10;
+	
+	/**
+	 * Speculative evaluator of individuals during idle phases (null if not used)
+	 */
+	SpeculativeEvaluator speculator = null;
+	
+	/**
+	 * Indicates if the evaluation of the ensemble in the communication is overlapped with the evaluation of members
+	 */
+	boolean overlapCommunication;
+	
+	/**
+	 * Ensemble being evaluated in the background (null if none)
+	 */
+	Ensemble pendingEnsemble = null;
+	
+	/**
+	 * Fitness of the ensemble being evaluated in the background
+	 */
+	CompletableFuture<Double> pendingEnsembleFitness = null;
+	
+	/**
+	 * Executor to evaluate ensembles in the background
+	 */
+	transient ExecutorService ensembleExecutor = null;
+	
+	/**
+	 * Indicates if the offspring of each generation are allocated among subpopulations by a multi-armed bandit
+	 */
+	boolean banditAllocation;
+	
+	/**
+	 * Min number of offspring of each subpopulation at each generation (bandit allocation)
+	 */
+	int minOffspring;
+	
+	/**
+	 * Exploration coefficient of the upper confidence bound (bandit allocation)
+	 */
+	double banditExploration;
+	
+	/**
+	 * Weight of the fitness gain in the reward; the rest is for the entries in the best ensemble (bandit allocation)
+	 */
+	double banditGainWeight;
+	
+	/**
+	 * Discount of past observations, so recent ones weight more (bandit allocation)
+	 */
+	double banditDecay;
+	
+	/**
+	 * Discounted average reward per offspring of each subpopulation (bandit allocation)
+	 */
+	double [] banditReward;
+	
+	/**
+	 * Discounted number of offspring allocated to each subpopulation (bandit allocation)
+	 */
+	double [] banditPulls;
+	
+	/**
+	 * Average fitness of each subpopulation after the last control (bandit allocation)
+	 */
+	double [] lastAvgFitness;
+	
+	/**
+	 * Number of members of each subpopulation that entered the best ensemble since last allocation (bandit allocation)
+	 */
+	int [] ensembleEntries;
+	
+	/**
+	 * Number of communications without improving the best ensemble to terminate (0 if not used)
+	 */
+	int stagnationComms;
+	
+	/**
+	 * Cache hit ratio of the offspring above which evolution terminates (greater than 1 if not used)
+	 */
+	double maxCacheHitRatio;
+	
+	/**
+	 * Diversity of subpopulations below which evolution terminates (0 if not used)
+	 */
+	double minDiversity;
+	
+	/**
+	 * Number of consecutive generations that cache hit ratio or diversity criteria must hold to terminate
+	 */
+	int terminationPatience;
+	
+	/**
+	 * Number of communications since the best ensemble was improved
+	 */
+	int commsWithoutImprovement = 0;
+	
+	/**
+	 * Number of consecutive generations with cache hit ratio above the threshold
+	 */
+	int cacheHitGenerations = 0;
+	
+	/**
+	 * Number of consecutive generations with diversity below the threshold
+	 */
+	int lowDiversityGenerations = 0;
+	
+	/**
+	 * Budget of time in seconds (0 if the evolution is limited by generations)
+	 */
+	double timeBudget;
+	
+	/**
+	 * Indicates if the time budget is CPU time of the process instead of wall-clock time
+	 */
+	boolean cpuTimeBudget;
+	
+	/**
+	 * Ratio of the time budget reserved for the final communication, pruning and reports
+	 */
+	double timeReserve;
+	
+	/**
+	 * Wall-clock time (ms) or CPU time (ns) when evolution started
+	 */
+	long startTime;
+	
+	/**
+	 * Seconds used at the beginning of last control phase
+	 */
+	double lastControlTime;
+	
+	/**
+	 * Estimated seconds of a generation
+	 */
+	double generationTime = 0;
+	
+	/**
+	 * Progress at which next communication is performed (time budget mode)
+	 */
+	double nextCommProgress;
+	
+	/**
+	 * Indicates if a shutdown hook finishes the evolution gracefully when the process is asked to terminate
+	 */
+	boolean gracefulShutdown;
+	
+	/**
+	 * Max seconds that the shutdown hook waits for the evolution to finish
+	 */
+	int shutdownGraceSeconds;
+	
+	/**
+	 * Indicates if the process has been asked to terminate
+	 */
+	transient volatile boolean shutdownRequested = false;
+	
+	/**
+	 * Released when the execution (including reports of listeners) ends
+	 */
+	transient CountDownLatch executionFinished;
+	
+	/**
+	 * Reason of termination (null if not finished)
+	 */
+	TerminationReason terminationReason = null;
+	
+	/**
+	 * Generation in which evolution terminated
+	 */
+	int terminationGeneration;
+	
+	/**
+	 * Indexes of the instances of full training data sampled for each subpopulation
+	 */
+	int [][] sampleIndexes;
+	
+	/**
+	 * Checkpoint file of the run (null if checkpoints are not used)
+	 */
+	File checkpointFile = null;
+	
+	/**
+	 * Number of generations between checkpoints
+	 */
+	int checkpointFrequency;
+	
+	/**
+	 * Indicates if built classifiers are stored in checkpoints; if not, they are built again when needed after resuming
+	 */
+	boolean checkpointClassifiers;
+	
+	/**
+	 * Indicates if the run is resumed from its checkpoint (if it exists).
+	 * It is only resumed exactly in deterministic mode; otherwise, operators do not continue their random sequences.
+	 */
+	boolean resume;
+	
+	/**
+	 * Indicates if the algorithm runs as a continuous service, evolving until it is stopped
+	 */
+	boolean service;
+	
+	/**
+	 * Publisher of improved ensembles (only in service mode)
+	 */
+	EnsemblePublisher publisher = null;
+	
+	/**
+	 * Max number of members kept in the tables of fitness, classifiers and costs in service mode.
+	 * When they are exceeded, members that are not alive are evicted, those dead for longer first.
+	 */
+	int serviceMaxModels;
+	
+	/**
+	 * Last generation in which each member in the tables was alive, i.e., in a subpopulation or ensemble (only in service mode)
+	 */
+	HashMap<String, Integer> lastAlive = new HashMap<String, Integer>();
+	
+	/**
+	 * Indicates if the state at the end of the run is kept in a final checkpoint (e.g., to warm-start other runs)
+	 */
+	boolean keepFinalCheckpoint;
+	
+	/**
+	 * Fingerprint of full training data
+	 */
+	long dataFingerprint;
+	
+	/**
+	 * Previous run used to warm-start the populations (null if not used)
+	 */
+	WarmStart warmStart = null;
+	
+	/**
+	 * Max ratio of each subpopulation initialized with individuals of the previous run
+	 */
+	double warmStartRatio;
+	
+	/**
+	 * Indicates if the run is updated incrementally when new instances are appended to the training data
+	 */
+	boolean incrementalUpdate;
+	
+	/**
+	 * Training data file
+	 */
+	File trainDataFile;
+	
+	/**
+	 * XML file of the dataset
+	 */
+	String datasetXMLFileName;
+	
+	/**
+	 * Last modification time of the training data file
+	 */
+	long trainDataModified;
+	
+	/**
+	 * Indicates if candidate ensembles are first scored on a subsample of the training data
+	 */
+	boolean approximateScoring;
+	
+	/**
+	 * Ratio of training instances in the scoring subsample
+	 */
+	double scoringRatio;
+	
+	/**
+	 * Max difference between the estimated fitness of a candidate and that of the best ensemble to evaluate the candidate exactly
+	 */
+	double scoringTolerance;
+	
+	/**
+	 * Stratified subsample of the training data to score ensembles (null until it is needed)
+	 */
+	MultiLabelInstances scoringData = null;
+	
+	/**
+	 * Fitness of the best ensemble on the scoring subsample (NaN if not computed yet)
+	 */
+	double bestEnsembleEstimate = Double.NaN;
+	
+	/**
+	 * Indicates if ensembles are evaluated by only predicting the members that changed since the last evaluated ensemble
+	 */
+	boolean deltaEnsembleEvaluation;
+	
+	/**
+	 * Max number of members whose predictions are kept by the delta evaluators
+	 */
+	int deltaMemberCapacity;
+	
+	/**
+	 * Delta evaluator of ensembles on the full training data (null until it is needed)
+	 */
+	transient DeltaEnsembleEval deltaEval = null;
+
+	
+	/**
+	 * Delta evaluator of ensembles on the scoring subsample (null until it is needed)
+	 */
+	transient DeltaEnsembleEval deltaScoringEval = null;	
+	/**
+	 * Stores of the ensemble selections of each island, and of the main thread (last one)
+	 */
+	transient MultipListStore [] selectionStores = null;
+	
+	/**
+	 * Indicates if individuals are selected by Pareto fronts on (fitness, inference cost)
+	 */
+	boolean multiObjective;
+	
+	/**
+	 * Index of the inference cost considered in the multi-objective mode (see Eval.COST_NODES, COST_DEPTH and COST_TIME)
+	 */
+	int costIndex;
+	
+	/**
+	 * Indicates if the best ensemble is refined by local search at the end of the evolution
+	 */
+	boolean refinement;
+	
+	/**
+	 * Time budget of the refinement (seconds)
+	 */
+	double refinementSeconds;
+	
+	/**
+	 * Number of individuals of the archive considered to enter the ensemble in the refinement
+	 */
+	int refinementCandidates;
+	
+	/**
+	 * Max number of moves of the refinement
+	 */
+	int refinementIterations;
+	
+	/**
+	 * Indicates if data are loaded and initial subpopulations are evaluated in parallel at startup
+	 */
+	boolean parallelStartup;
+	
+	/**
+	 * Appearances of each label in the training data of each subpopulation (null if not computed yet)
+	 */
+	int [][] appearances = null;
+	
+	/**
+	 * Indicates if all subpopulations use the same sample of the training data
+	 */
+	boolean sharedSample;
+	
+	/**
+	 * Indicates if subpopulations with the same sample share the keys of their members (see SampleKeys)
+	 */
+	boolean sampleKeys;
+	
+	/**
+	 * Keys of members in the tables of this run
+	 */
+	SampleKeys memberKeys = new SampleKeys();
 
 	
 	/**
@@ -202,6 +605,24 @@ public class Alg extends MultiSGE {
 		return trainData;
 	}
 	
+	/**
+	 * Getter for the indexes of the instances sampled for each subpopulation
+	 * 
+	 * @return Indexes of sampled instances of each subpopulation
+	 */
+	public int[][] getSampleIndexes() {
+		return sampleIndexes;
+	}
+	
+	/**
+	 * Getter for the keys of members in the tables of this run
+	 * 
+	 * @return Keys of members
+	 */
+	public SampleKeys getSampleKeys() {
+		return memberKeys;
+	}
+	
 	/**
 	 * Getter for an specific training data
 	 *  
@@ -231,7 +652,8 @@ public class Alg extends MultiSGE {
 	}
 	
 	/**
-	 * Getter for current ensemble fitness
+	 * Getter for current ensemble fitness.
+	 * Only ensembles evaluated on the full training data are considered; see getCurrentEnsembleEstimate.
 	 * 
 	 * @return Fitness of the current ensemble
 	 */
@@ -240,31 +662,92 @@ public class Alg extends MultiSGE {
 	}
 	
 	/**
-	 * Get best individual of each subpopulation
+	 * Getter for the estimated fitness of the current ensemble
 	 * 
-	 * @return List with best individual of each subpopulation
+	 * @return Estimated fitness if the current ensemble was rejected by its estimate, or NaN if it was evaluated on the full training data
 	 */
-	public List<MultipListIndividual> bestIndividuals(){
-		List<MultipListIndividual> list = new ArrayList<MultipListIndividual>(numSubpop);
-		
-		for(int i=0; i<numSubpop; i++) {
-			list.add((MultipListIndividual) bettersSelector.select(bset.get(i), 1).get(0));
-		}
-		
-		return list;
+	public double getCurrentEnsembleEstimate() {
+		return currentEnsembleEstimate;
 	}
 	
 	/**
-	 * Get the average fitness of the individuals of each subpopulation
+	 * Getter for the reason of termination
 	 * 
-	 * @return Array with average fitness of each subpopulation
+	 * @return Reason of termination, or null if not finished
 	 */
-	public double[] avgFitnessSubpopulation() {
-		double [] avgFit = new double[numSubpop];
-		
-		for(int p=0; p<numSubpop; p++) {
-			avgFit[p] = 0;
-			for(int i=0; i<subpopSize; i++) {
+	public TerminationReason getTerminationReason() {
+		return terminationReason;
+	}
+	
+	/**
+	 * Getter for the generation of termination
+	 * 
+	 * @return Generation in which evolution terminated
+	 */
+	public int getTerminationGeneration() {
+		return terminationGeneration;
+	}
+	
+	/**
+	 * Getter for the table of classifiers
+	 * 
+	 * @return Table with all classifiers built so far
+	 */
+	public Hashtable<String, MultiLabelLearner> getTableClassifiers() {
+		return tableClassifiers;
+	}
+	
+	/**
+	 * Add migrants coming from outside the algorithm to their subpopulations.
+	 * Those not already included are evaluated, and subpopulations exceeding their size are reduced by ensemble selection.
+	 * 
+	 * @param migrants Migrants; their subpopulation is given by their genotype
+	 */
+	public void addMigrants(List<MultipListIndividual> migrants) {
+		for(MultipListIndividual ind : migrants) {
+			addToSubpop(ind);
+		}
+		
+		//Evaluate new individuals
+		((MultipAbstractParallelEvaluator)evaluator).evaluateMultip(bset);
+		
+		//Select new individuals for subpopulations
+		for(int p=0; p<numSubpop; p++) {
+			if(bset.get(p).size() > subpopSize) {
+				EnsembleSelection eSel = newEnsembleSelection(numSubpop, bset.get(p), subpopSize, betaUpdatePop, randgen);
+				eSel.selectEnsemble();
+				setSubpop(p, eSel.getEnsemble());
+				eSel = null;
+			}
+		}
+	}
+	
+	/**
+	 * Get best individual of each subpopulation
+	 * 
+	 * @return List with best individual of each subpopulation
+	 */
+	public List<MultipListIndividual> bestIndividuals(){
+		List<MultipListIndividual> list = new ArrayList<MultipListIndividual>(numSubpop);
+		
+		for(int i=0; i<numSubpop; i++) {
+			list.add((MultipListIndividual) bettersSelector.select(bset.get(i), 1).get(0));
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Get the average fitness of the individuals of each subpopulation
+	 * 
+	 * @return Array with average fitness of each subpopulation
+	 */
+	public double[] avgFitnessSubpopulation() {
+		double [] avgFit = new double[numSubpop];
+		
+		for(int p=0; p<numSubpop; p++) {
+			avgFit[p] = 0;
+			for(int i=0; i<subpopSize; i++) {
 				avgFit[p] += ((SimpleValueFitness)bset.get(p).get(i).getFitness()).getValue();
 			}
 		}
@@ -276,6 +759,36 @@ public class Alg extends MultiSGE {
 		return avgFit;
 	}
 	
+	/**
+	 * Get the diversity of the subpopulations, as the average Jaccard distance between labels of each pair of individuals 
+	 *  of the same subpopulation, averaged over subpopulations
+	 * 
+	 * @return Diversity in [0, 1]
+	 */
+	public double diversity() {
+		double diversity = 0;
+		
+		for(int p=0; p<numSubpop; p++) {
+			//Pairs are compared over the arrays of labels of the subpopulation
+			MultipListStore store = getStore(p);
+			double sum = 0;
+			int nPairs = 0;
+			for(int i=0; i<store.size(); i++) {
+				for(int j=i+1; j<store.size(); j++) {
+					int common = store.commonLabels(i, j);
+					sum += 1 - (1.0 * common) / (2 * store.getK() - common);
+					nPairs++;
+				}
+			}
+			
+			if(nPairs > 0) {
+				diversity += sum / nPairs;
+			}
+		}
+		
+		return diversity / numSubpop;
+	}
+	
 	
 	
 	/**
@@ -324,7 +837,13 @@ public class Alg extends MultiSGE {
 		configureEagletDefaults(configuration);
 		super.configure(configuration);
 		
-		randgen = randGenFactory.createRandGen();
+		//In deterministic mode, use the main stream of the algorithm
+		if(isDeterministic()) {
+			randgen = super.randgen;
+		}
+		else {
+			randgen = randGenFactory.createRandGen();
+		}
 
 		k = configuration.getInt("k");
 		predictionThreshold = configuration.getDouble("prediction-threshold");
@@ -379,24 +898,59 @@ public class Alg extends MultiSGE {
 			break;
 		}
 		
+		//Parallel startup: datasets are parsed concurrently, and samples are built in parallel
+		parallelStartup = configuration.getBoolean("parallel-startup[@enabled]", false);
+		
+		//Subpopulations with the same sample share classifiers and fitness of their members; it is always the case with a shared sample
+		sharedSample = configuration.getBoolean("shared-sample[@enabled]", false);
+		sampleKeys = sharedSample || configuration.getBoolean("sample-aware-keys[@enabled]", false);
+		
 		fullTrainData = null;
 		testData = null;
 		try {
-			fullTrainData = new MultiLabelInstances(datasetTrainFileName, datasetXMLFileName);
-			testData = new MultiLabelInstances(datasetTestFileName, datasetXMLFileName);
+			if(parallelStartup) {
+				loadDataParallel(datasetTrainFileName, datasetTestFileName, datasetXMLFileName);
+			}
+			else {
+				fullTrainData = new MultiLabelInstances(datasetTrainFileName, datasetXMLFileName);
+				testData = new MultiLabelInstances(datasetTestFileName, datasetXMLFileName);
 			
-			trainData = new MultiLabelInstances[numSubpop];
-			for(int p=0; p<numSubpop; p++) {
-				trainData[p] = Utils.sampleData(fullTrainData, sampleRatio, randgen);
+				trainData = new MultiLabelInstances[numSubpop];
+				sampleIndexes = new int[numSubpop][];
+				for(int p=0; p<numSubpop; p++) {
+					if(sharedSample && p > 0) {
+						sampleIndexes[p] = sampleIndexes[0];
+						trainData[p] = trainData[0];
+						continue;
+					}
+					if(isDeterministic()) {
+						sampleIndexes[p] = Utils.sampleIndexes(fullTrainData.getNumInstances(), sampleRatio, streams.stream(RandStreams.SAMPLE, p));
+					}
+					else {
+						sampleIndexes[p] = Utils.sampleIndexes(fullTrainData.getNumInstances(), sampleRatio, randgen);
+					}
+					trainData[p] = Utils.sampleData(fullTrainData, sampleIndexes[p]);
+				}
 			}
 		}
 		catch(MulanException e) {
 			e.printStackTrace();
 		}
+		updateSampleKeys();
 		
 		nLabels = fullTrainData.getNumLabels();
+		dataFingerprint = Utils.fingerprint(fullTrainData);
+		
+		//Incremental update: new instances appended to the training data are included without restarting the evolution
+		incrementalUpdate = configuration.getBoolean("incremental-update[@enabled]", false);
+		trainDataFile = new File(datasetTrainFileName);
+		trainDataModified = trainDataFile.lastModified();
+		this.datasetXMLFileName = datasetXMLFileName;
 		
 		((Mutator) mutator.getDecorated()).setMaxInt(nLabels);
+		for(int p=0; p<numSubpop; p++) {
+			((Mutator) getMutator(p).getDecorated()).setMaxInt(nLabels);
+		}
 		
 		((MultipListCreator) provider).setMaxInt(nLabels);
 		((MultipListCreator) provider).setK(k);
@@ -411,6 +965,350 @@ public class Alg extends MultiSGE {
 		((Eval) evaluator).setEvalData(fullTrainData);
 		((Eval) evaluator).setTableFitness(tableFitness);
 		((Eval) evaluator).setTableClassifiers(tableClassifiers);
+		((Eval) evaluator).setTableGenotypes(tableGenotypes);
+		((Eval) evaluator).setSampleKeys(memberKeys);
+		
+		//Multi-objective mode: accuracy versus inference cost of the members
+		multiObjective = configuration.getBoolean("multi-objective[@enabled]", false);
+		if(multiObjective) {
+			String costString = configuration.getString("multi-objective[@cost]", "nodes");
+			switch (costString) {
+			case "nodes":
+				costIndex = Eval.COST_NODES;
+				break;
+			case "depth":
+				costIndex = Eval.COST_DEPTH;
+				break;
+			case "time":
+				costIndex = Eval.COST_TIME;
+				if(isDeterministic()) {
+					System.out.println("Prediction time is not reproducible; the number of nodes is used as cost in deterministic mode.");
+					costIndex = Eval.COST_NODES;
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown cost for multi-objective mode: " + costString);
+			}
+			((Eval) evaluator).setTableCost(tableCost);
+		}
+		((Eval) evaluator).setDeterministic(isDeterministic());
+		//Members predicted in shards break ties by instance, so their fitness does not depend on how shards are run
+		((Eval) evaluator).setShardSize(configuration.getInt("prediction-shard-size", 0));
+		
+		overlapCommunication = configuration.getBoolean("overlap-communication", false);
+		
+		//Approximate scoring of candidate ensembles; only those close to the best one are evaluated on full data
+		approximateScoring = configuration.getBoolean("approximate-ensemble-scoring[@enabled]", false);
+		scoringRatio = configuration.getDouble("approximate-ensemble-scoring[@ratio]", 0.2);
+		scoringTolerance = configuration.getDouble("approximate-ensemble-scoring[@tolerance]", 0.01);
+		
+		//Delta evaluation of consecutive ensembles, which usually share most members
+		deltaEnsembleEvaluation = configuration.getBoolean("delta-ensemble-evaluation[@enabled]", false);
+		deltaMemberCapacity = configuration.getInt("delta-ensemble-evaluation[@member-capacity]", 4 * nClassifiers);
+		
+		//Local search over the best ensemble before the final report
+		refinement = configuration.getBoolean("refinement[@enabled]", false);
+		refinementSeconds = configuration.getDouble("refinement[@seconds]", 10);
+		refinementCandidates = configuration.getInt("refinement[@candidates]", 100);
+		refinementIterations = configuration.getInt("refinement[@max-iterations]", 50);
+		
+		//Allocation of offspring among subpopulations with a bandit (not used by asynchronous islands)
+		banditAllocation = configuration.getBoolean("bandit-allocation[@enabled]", false);
+		if(banditAllocation) {
+			minOffspring = configuration.getInt("bandit-allocation[@min-offspring]", 2);
+			banditExploration = configuration.getDouble("bandit-allocation[@exploration]", 0.5);
+			banditGainWeight = configuration.getDouble("bandit-allocation[@gain-weight]", 0.5);
+			banditDecay = configuration.getDouble("bandit-allocation[@decay]", 0.3);
+			banditReward = new double[numSubpop];
+			banditPulls = new double[numSubpop];
+			ensembleEntries = new int[numSubpop];
+		}
+		
+		//Early termination criteria
+		stagnationComms = configuration.getInt("early-termination[@stagnation-communications]", 0);
+		maxCacheHitRatio = configuration.getDouble("early-termination[@cache-hit-ratio]", 2);
+		minDiversity = configuration.getDouble("early-termination[@min-diversity]", 0);
+		terminationPatience = configuration.getInt("early-termination[@patience]", 1);
+		if(maxCacheHitRatio <= 1 && asynchronous && isDeterministic()) {
+			//Hits depend on which islands committed first
+			throw new IllegalArgumentException("Cache hit ratio is not reproducible with asynchronous islands in deterministic mode");
+		}
+		
+		//Time budget; generations are then only used to set the number of communications
+		timeBudget = configuration.getDouble("time-budget[@seconds]", 0);
+		cpuTimeBudget = configuration.getBoolean("time-budget[@cpu]", false);
+		if(cpuTimeBudget && !(ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean)) {
+			System.out.println("CPU time of the process is not available; wall-clock time is used for the time budget.");
+			cpuTimeBudget = false;
+		}
+		timeReserve = configuration.getDouble("time-budget[@reserve]", 0.1);
+		
+		//Graceful shutdown on termination signals
+		gracefulShutdown = configuration.getBoolean("graceful-shutdown[@enabled]", false);
+		shutdownGraceSeconds = configuration.getInt("graceful-shutdown[@grace-seconds]", 60);
+		
+		//Continuous service: evolution goes on until it is stopped (or the time budget ends), publishing each improved ensemble
+		service = configuration.getBoolean("service[@enabled]", false);
+		if(service) {
+			File modelDir = new File(configuration.getString("service[@model-dir]", "models"));
+			publisher = new EnsemblePublisher(modelDir, configuration.getBoolean("service[@prune]", true) ? fullTrainData : null);
+			//A service may evaluate members endlessly, so tables are bounded
+			serviceMaxModels = configuration.getInt("service[@max-models]", 20 * populationSize);
+			gracefulShutdown = true;
+		}
+		
+		//Checkpoints; each run has its own file, given by its data and seed
+		checkpointFrequency = configuration.getInt("checkpoint[@frequency]", 0);
+		resume = configuration.getBoolean("checkpoint[@resume]", false);
+		keepFinalCheckpoint = configuration.getBoolean("checkpoint[@keep-final]", false);
+		if(checkpointFrequency > 0 || resume || keepFinalCheckpoint) {
+			String name = new File(datasetTrainFileName).getName() + "_" + configuration.getLong("rand-gen-factory[@seed]", 0) + ".ckpt";
+			checkpointFile = new File(configuration.getString("checkpoint[@dir]", "checkpoints"), name);
+			checkpointClassifiers = configuration.getBoolean("checkpoint[@classifiers]", false);
+		}
+		//Random streams of the operators are only stored in deterministic mode, so exact resume cannot be guaranteed otherwise
+		if(resume && configuration.getBoolean("checkpoint[@exact]", false) && !isDeterministic()) {
+			throw new IllegalArgumentException("Exact resume from checkpoints requires deterministic mode");
+		}
+		
+		//Warm start from a previous run, given by its checkpoint or its report directory
+		try {
+			if(configuration.containsKey("warm-start[@checkpoint]")) {
+				warmStart = WarmStart.fromCheckpoint(new File(configuration.getString("warm-start[@checkpoint]")));
+			}
+			else if(configuration.containsKey("warm-start[@report-dir]")) {
+				warmStart = WarmStart.fromReports(new File(configuration.getString("warm-start[@report-dir]")));
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException("Error reading the previous run to warm-start", e);
+		}
+		warmStartRatio = configuration.getDouble("warm-start[@ratio]", 0.5);
+		
+		//Speculative evaluation of individuals in idle phases
+		if(configuration.getBoolean("speculative-evaluation", false)) {
+			int budget = configuration.getInt("speculation-budget", 4 * Runtime.getRuntime().availableProcessors());
+			speculator = new SpeculativeEvaluator((Eval) evaluator, budget, randGenFactory.createRandGen());
+			((Eval) evaluator).setSpeculator(speculator);
+		}
+	}
+	
+	@Override
+	public void execute()
+	{
+		executionFinished = new CountDownLatch(1);
+		Thread hook = null;
+		if(gracefulShutdown) {
+			hook = new Thread(this::onShutdown, "graceful-shutdown");
+			Runtime.getRuntime().addShutdownHook(hook);
+		}
+		
+		try {
+			super.execute();
+		}
+		finally {
+			executionFinished.countDown();
+			if(hook != null) {
+				try {
+					Runtime.getRuntime().removeShutdownHook(hook);
+				}
+				catch (IllegalStateException e) {
+					//The JVM is already shutting down
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Called when the process is asked to terminate (e.g., SIGTERM).
+	 * The evolution finishes after the current generation, as when the time budget is over, 
+	 *  and the process waits for the final ensemble and the reports.
+	 * Subpopulations not generated yet get no offspring, and speculation and refinement are skipped,
+	 *  so the grace period only has to cover the evaluations already started, the last communication and the reports.
+	 */
+	protected void onShutdown()
+	{
+		shutdownRequested = true;
+		System.out.println("Shutdown requested; finishing evolution.");
+		//Speculative evaluations stop, and the algorithm may be waiting for a snapshot of asynchronous islands
+		if(speculator != null) {
+			speculator.cancel();
+		}
+		notifySnapshot();
+		try {
+			if(!executionFinished.await(shutdownGraceSeconds, TimeUnit.SECONDS)) {
+				System.out.println("Evolution did not finish in " + shutdownGraceSeconds + " seconds.");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Get the current time for the time budget
+	 * 
+	 * @return CPU time of the process (ns) if cpuTimeBudget, and wall-clock time (ms) if not
+	 */
+	protected long currentTime()
+	{
+		if(cpuTimeBudget) {
+			return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+		}
+		
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * Get the seconds used since evolution started
+	 * 
+	 * @return Seconds used
+	 */
+	public double elapsedTime()
+	{
+		long elapsed = currentTime() - startTime;
+		if(cpuTimeBudget) {
+			return elapsed / 1e9;
+		}
+		
+		return elapsed / 1e3;
+	}
+	
+	/**
+	 * Get the progress of the evolution in [0, 1].
+	 * It is the ratio of generations performed or, with a time budget, the ratio of available time used.
+	 * 
+	 * @return Progress of the evolution
+	 */
+	public double progress()
+	{
+		if(timeBudget > 0) {
+			return Math.min(1, elapsedTime() / (timeBudget * (1 - timeReserve)));
+		}
+		
+		//A service goes on after max generations, as in the last generations of a run
+		return Math.min(1, (generation*1.0) / maxOfGenerations);
+	}
+	
+	/**
+	 * Check if next generation would exceed the available time
+	 * 
+	 * @return True if evolution should finish now to keep the time budget
+	 */
+	protected boolean deadlineApproaching()
+	{
+		return timeBudget > 0 && elapsedTime() + generationTime > timeBudget * (1 - timeReserve);
+	}
+	
+	/**
+	 * Check if communication is performed in the current generation.
+	 * With a time budget, the communications that would be done in maxOfGenerations are evenly spread over the available time.
+	 * 
+	 * @return True if subpopulations communicate in this generation
+	 */
+	protected boolean isCommunicationGeneration()
+	{
+		if(timeBudget <= 0) {
+			return (generation % generationsComm) == 0;
+		}
+		
+		if(generation == 0 || progress() >= nextCommProgress) {
+			double step = 1.0 / Math.max(1, maxOfGenerations / generationsComm);
+			while(nextCommProgress <= progress()) {
+				nextCommProgress += step;
+			}
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Load the train and test datasets concurrently, and then build the data of each subpopulation
+	 *  (sample and appearances of labels) in parallel, each one with its own random stream.
+	 * In deterministic mode, streams are the same than in a serial startup, so samples are the same.
+	 * 
+	 * @param datasetTrainFileName Train dataset file
+	 * @param datasetTestFileName Test dataset file
+	 * @param datasetXMLFileName XML file of the dataset
+	 * @throws MulanException
+	 */
+	protected void loadDataParallel(String datasetTrainFileName, String datasetTestFileName, String datasetXMLFileName) throws MulanException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(2, ((MultipAbstractParallelEvaluator) evaluator).getNumThreads()));
+		try {
+			CompletableFuture<MultiLabelInstances> train = CompletableFuture.supplyAsync(() -> readData(datasetTrainFileName, datasetXMLFileName), executor);
+			CompletableFuture<MultiLabelInstances> test = CompletableFuture.supplyAsync(() -> readData(datasetTestFileName, datasetXMLFileName), executor);
+			fullTrainData = train.join();
+			
+			//Random streams are created before, so they do not depend on the order of the threads
+			IRandGen [] sampleRandgen = new IRandGen[numSubpop];
+			for(int p=0; p<numSubpop; p++) {
+				sampleRandgen[p] = isDeterministic() ? streams.stream(RandStreams.SAMPLE, p) : randGenFactory.createRandGen();
+			}
+			
+			trainData = new MultiLabelInstances[numSubpop];
+			sampleIndexes = new int[numSubpop][];
+			appearances = new int[numSubpop][];
+			//With a shared sample, only the first one is built
+			CompletableFuture<?> [] samples = new CompletableFuture<?>[sharedSample ? 1 : numSubpop];
+			for(int p=0; p<samples.length; p++) {
+				final int subpop = p;
+				samples[p] = CompletableFuture.runAsync(() -> {
+					sampleIndexes[subpop] = Utils.sampleIndexes(fullTrainData.getNumInstances(), sampleRatio, sampleRandgen[subpop]);
+					trainData[subpop] = Utils.sampleData(fullTrainData, sampleIndexes[subpop]);
+					appearances[subpop] = Utils.getAppearances(trainData[subpop]);
+				}, executor);
+			}
+			CompletableFuture.allOf(samples).join();
+			for(int p=samples.length; p<numSubpop; p++) {
+				sampleIndexes[p] = sampleIndexes[0];
+				trainData[p] = trainData[0];
+				appearances[p] = appearances[0];
+			}
+			
+			testData = test.join();
+		}
+		catch(CompletionException e) {
+			if(e.getCause() instanceof MulanException) {
+				throw (MulanException) e.getCause();
+			}
+			throw e;
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Update the keys of members for the current samples (if sample-aware keys are used).
+	 * Subpopulations with the same sample than a previous one also share its data.
+	 */
+	protected void updateSampleKeys()
+	{
+		int [] representatives = memberKeys.setSamples(sampleKeys ? sampleIndexes : null);
+		if(representatives != null) {
+			for(int p=0; p<numSubpop; p++) {
+				trainData[p] = trainData[representatives[p]];
+			}
+		}
+	}
+	
+	/**
+	 * Read a multi-label dataset; the exception is wrapped so it can be read by another thread
+	 * 
+	 * @param arffFileName Arff file
+	 * @param xmlFileName XML file
+	 * @return Dataset
+	 */
+	protected static MultiLabelInstances readData(String arffFileName, String xmlFileName)
+	{
+		try {
+			return new MultiLabelInstances(arffFileName, xmlFileName);
+		}
+		catch(MulanException e) {
+			throw new CompletionException(e);
+		}
 	}
 	
 	/**
@@ -419,6 +1317,10 @@ public class Alg extends MultiSGE {
 	 */
 	protected void doInit() 
 	{		
+		startTime = currentTime();
+		lastControlTime = 0;
+		nextCommProgress = 0;
+		
 		//Calculate individuals by subpopulation
 		subpopSize = (int)Math.round((populationSize*1.0) / numSubpop);
 		
@@ -427,68 +1329,301 @@ public class Alg extends MultiSGE {
 		cset = new ArrayList<List<IIndividual>>(numSubpop);
 		rset = new ArrayList<List<IIndividual>>(numSubpop);
 		
+		//Continue from the end of the generation stored in the checkpoint
+		if(resume && checkpointFile.exists()) {
+			try {
+				restoreCheckpoint();
+				System.out.println("Resumed from " + checkpointFile + " at generation " + generation);
+				if(publisher != null && bestEnsemble != null) {
+					publishBestEnsemble();
+				}
+				return;
+			}
+			catch (Exception e) {
+				throw new IllegalStateException("Error resuming from " + checkpointFile, e);
+			}
+		}
+		
+		//Individuals of the previous run (if any) are included first
+		List<List<IIndividual>> seeds = (warmStart != null) ? warmStartSeeds() : null;
+		
+		//In parallel startup, each subpopulation is evaluated while the next ones are created
+		MultipAbstractParallelEvaluator eval = (MultipAbstractParallelEvaluator) evaluator;
+		List<CompletableFuture<Void>> evaluations = new ArrayList<CompletableFuture<Void>>(numSubpop);
+		
 		for(int p=0; p<numSubpop; p++) {
 			//Initialize each population
 			((FrequencyBasedIndividualCreator) provider).setSubpopId(p);
 			((FrequencyBasedIndividualCreator) provider).setaMin(1);
-			((FrequencyBasedIndividualCreator) provider).setAppearances(Utils.getAppearances(trainData[p]));
-			bset.add(p, provider.provide(subpopSize));
+			((FrequencyBasedIndividualCreator) provider).setAppearances((appearances != null) ? appearances[p] : Utils.getAppearances(trainData[p]));
+			if(seeds == null) {
+				bset.add(p, provider.provide(subpopSize));
+			}
+			else {
+				bset.add(p, topUp(seeds.get(p)));
+			}
 			
 			// Evaluate individuals
 			//evaluator.evaluate(bset.get(p));
+			if(parallelStartup) {
+				evaluations.add(eval.evaluateAsync(bset.get(p)));
+			}
 		}
+		reindex();
 		
 		//Evaluate individuals of all subpopulations
-		((MultipAbstractParallelEvaluator)evaluator).evaluateMultip(bset);
+		if(parallelStartup) {
+			//Results are committed in the order of subpopulations, as in evaluateMultip
+			CompletableFuture.allOf(evaluations.toArray(new CompletableFuture<?>[numSubpop])).join();
+			for(List<IIndividual> subpop : bset) {
+				eval.commit(subpop);
+			}
+		}
+		else {
+			eval.evaluateMultip(bset);
+		}
 
 		// Do Control
 		doControl();
 	}
 	
 	
-	@Override
-	protected void doUpdate() {
-		//Update each subpopulation
-		for(int p=0; p<numSubpop; p++) {			
-			//Add to rset all individuals from bset
-			for(IIndividual bInd : bset.get(p)) {
-				if(!Utils.contains(rset.get(p), (MultipListIndividual) bInd)) {
-					rset.get(p).add(bInd);
-				}
+	/**
+	 * Select the individuals of the previous run included in each subpopulation, up to the warm-start ratio.
+	 * Members of its best ensemble come first, followed by the rest of its populations;
+	 *  individuals of subpopulations that do not exist in current run are assigned cyclically.
+	 * Fitness and classifiers are reused only if both runs used the same data; otherwise, individuals are evaluated again.
+	 * 
+	 * @return Individuals for each subpopulation
+	 */
+	protected List<List<IIndividual>> warmStartSeeds() {
+		boolean sameData = warmStart.sameData(dataFingerprint, sampleIndexes);
+		if(sameData) {
+			tableFitness.putAll(warmStart.tableFitness);
+			tableClassifiers.putAll(warmStart.tableClassifiers);
+			tableGenotypes.putAll(warmStart.tableGenotypes);
+		}
+		
+		List<IIndividual> candidates = new ArrayList<IIndividual>(warmStart.ensemble);
+		for(List<IIndividual> subpop : warmStart.subpops) {
+			candidates.addAll(subpop);
+		}
+		
+		int maxSeeds = (int)Math.round(warmStartRatio * subpopSize);
+		List<List<IIndividual>> seeds = new ArrayList<List<IIndividual>>(numSubpop);
+		for(int p=0; p<numSubpop; p++) {
+			seeds.add(new ArrayList<IIndividual>());
+		}
+		
+		Set<IIndividual> included = new HashSet<IIndividual>();
+		int nSeeds = 0;
+		for(IIndividual ind : candidates) {
+			MultipListGenotype gen = ((MultipListIndividual) ind).getGenotype();
+			int p = gen.subpop % numSubpop;
+			
+			//Individuals must be valid for current data and number of labels per classifier
+			if(seeds.get(p).size() >= maxSeeds || gen.genotype.size() != k || gen.genotype.stream().anyMatch(l -> l >= nLabels)) {
+				continue;
 			}
 			
-			//Add to rset individuals from cset that are not already contained
-			for(IIndividual bInd : cset.get(p)) {
-				if(!Utils.contains(rset.get(p), (MultipListIndividual) bInd)) {
-					rset.get(p).add(bInd);
+			MultipListIndividual seed = new MultipListIndividual(MultipListGenotype.of(p, gen.genotype));
+			if(included.add(seed)) {
+				if(sameData && ind.getFitness() != null) {
+					seed.setFitness(ind.getFitness());
 				}
+				seeds.get(p).add(seed);
+				nSeeds++;
 			}
-			
-			//Update subpopulation with ensemble selection procedure
-			EnsembleSelection eSel = new EnsembleSelection(rset.get(p), subpopSize, nLabels, betaUpdatePop);
-			eSel.setRandgen(randgen);
-			eSel.selectEnsemble();
-			bset.set(p, eSel.getEnsemble());
-			eSel = null;
-			
-			//Clear rest of sets
-			pset.get(p).clear();
-			rset.get(p).clear();
-			cset.get(p).clear();
 		}
+		
+		if(sameData) {
+			System.out.println("Warm start with " + nSeeds + " individuals of previous run, reusing their fitness and classifiers.");
+		}
+		else {
+			System.out.println("Warm start with " + nSeeds + " individuals of previous run; they are evaluated again with current data.");
+		}
+		
+		//Previous run is not needed anymore
+		warmStart = null;
+		
+		return seeds;
 	}
 	
-	
 	/**
-	 * At the moment just generate and evaluate the ensemble
+	 * Complete a subpopulation with new individuals of the provider, avoiding repeated individuals
+	 * 
+	 * @param seeds Individuals already included in the subpopulation
+	 * @return Subpopulation
 	 */
-	protected void doCommunication() 
-	{
-		/*
-		 * First, build ensemble
-		 */
-		//Join all individuals of all subpopulations
-		List<IIndividual> allInds = new ArrayList<IIndividual>();
+	protected List<IIndividual> topUp(List<IIndividual> seeds) {
+		List<IIndividual> subpop = new ArrayList<IIndividual>(seeds);
+		Set<IIndividual> members = new HashSet<IIndividual>(seeds);
+		
+		//A few attempts are made to replace repeated individuals
+		for(int attempt=0; attempt<10 && subpop.size() < subpopSize; attempt++) {
+			for(IIndividual ind : provider.provide(subpopSize - subpop.size())) {
+				if(subpop.size() < subpopSize && members.add(ind)) {
+					subpop.add(ind);
+				}
+			}
+		}
+		
+		return subpop;
+	}
+	
+	@Override
+	protected boolean isEvaluated(IIndividual ind) {
+		return tableFitness.containsKey(memberKeys.key(((MultipListIndividual) ind).getGenotype()));
+	}
+	
+	@Override
+	protected void doUpdate(int p) {
+		//Individuals in rset, to check in constant time if they are already contained
+		Set<IIndividual> members = new HashSet<IIndividual>(rset.get(p));
+		
+		//Add to rset all individuals from bset
+		for(IIndividual bInd : bset.get(p)) {
+			if(members.add(bInd)) {
+				rset.get(p).add(bInd);
+			}
+		}
+		
+		//Add to rset individuals from cset that are not already contained
+		for(IIndividual bInd : cset.get(p)) {
+			if(members.add(bInd)) {
+				rset.get(p).add(bInd);
+			}
+		}
+		
+		//Update subpopulation with ensemble selection procedure
+		//	If each subpop has its own stream, the order of updates does not matter
+		EnsembleSelection eSel = newEnsembleSelection(p, rset.get(p), subpopSize, betaUpdatePop, (subpopRandgen != null) ? subpopRandgen[p] : randgen);
+		eSel.selectEnsemble();
+		setSubpop(p, eSel.getEnsemble());
+		eSel = null;
+		
+		//Clear rest of sets
+		pset.get(p).clear();
+		rset.get(p).clear();
+		cset.get(p).clear();
+	}
+	
+	@Override
+	protected List<IIndividual> steadyStateUpdate(int p, List<IIndividual> pop, List<IIndividual> offspring) {
+		//Join subpopulation and offspring not already contained
+		List<IIndividual> all = new ArrayList<IIndividual>(pop);
+		Set<IIndividual> members = new HashSet<IIndividual>(pop);
+		for(IIndividual ind : offspring) {
+			if(members.add(ind)) {
+				all.add(ind);
+			}
+		}
+		
+		//Update subpopulation with ensemble selection procedure
+		EnsembleSelection eSel = newEnsembleSelection(p, all, subpopSize, betaUpdatePop, subpopRandgen[p]);
+		eSel.selectEnsemble();
+		
+		return eSel.getEnsemble();
+	}
+	
+	/**
+	 * Get the inference cost of the given individuals in the multi-objective mode.
+	 * Individuals whose cost is unknown (e.g., their fitness was reused from a previous run) are considered the most costly.
+	 * 
+	 * @param inds Individuals
+	 * @return Cost of each individual, or null if not in multi-objective mode
+	 */
+	protected double[] costs(List<IIndividual> inds) {
+		if(!multiObjective) {
+			return null;
+		}
+		
+		double [] cost = new double[inds.size()];
+		for(int i=0; i<inds.size(); i++) {
+			double [] c = tableCost.get(memberKeys.key(((MultipListIndividual) inds.get(i)).getGenotype()));
+			cost[i] = (c != null) ? c[costIndex] : Double.POSITIVE_INFINITY;
+		}
+		
+		return cost;
+	}
+	
+	/**
+	 * Create the ensemble selection procedure over some individuals, as all selections of the algorithm do:
+	 *  in multi-objective mode, individuals are selected by Pareto fronts on (fitness, cost).
+	 * 
+	 * @param p Subpopulation whose island performs the selection, or numSubpop if it is performed by the main thread
+	 * @param inds Individuals to select from
+	 * @param size Number of individuals to select
+	 * @param beta Weight of fitness versus diversity
+	 * @param rand Random numbers generator
+	 * @return Ensemble selection, not performed yet
+	 */
+	protected EnsembleSelection newEnsembleSelection(int p, List<IIndividual> inds, int size, double beta, IRandGen rand) {
+		EnsembleSelection eSel = new EnsembleSelection(inds, selectionStore(p), size, nLabels, beta);
+		eSel.setRandgen(rand);
+		eSel.setCosts(costs(inds));
+		
+		return eSel;
+	}
+	
+	/**
+	 * Get the store used by the ensemble selections of a subpopulation, kept across generations so its arrays are reused.
+	 * Islands select concurrently, so each one has its own store, and the main thread has another one.
+	 * 
+	 * @param p Subpopulation whose island performs the selection, or numSubpop for the main thread
+	 * @return Store
+	 */
+	protected synchronized MultipListStore selectionStore(int p) {
+		if(selectionStores == null) {
+			selectionStores = new MultipListStore[numSubpop + 1];
+		}
+		if(selectionStores[p] == null) {
+			selectionStores[p] = new MultipListStore(0, 2 * subpopSize);
+		}
+		
+		return selectionStores[p];
+	}
+	
+	/**
+	 * Get the total inference cost of the members of an ensemble
+	 * 
+	 * @param ensemble Ensemble
+	 * @return Sum of the cost of its members
+	 */
+	protected double ensembleCost(Ensemble ensemble) {
+		double sum = 0;
+		for(double c : costs(new ArrayList<IIndividual>(ensemble.inds))) {
+			sum += c;
+		}
+		
+		return sum;
+	}
+	
+	@Override
+	protected boolean stopRequested() {
+		return shutdownRequested;
+	}
+	
+	@Override
+	protected void afterUpdate() {
+		//While the rest of phases are performed, speculate mutations of the new subpopulations (unless the evolution is finishing)
+		if(speculator != null && !shutdownRequested) {
+			speculator.startRound();
+			speculator.speculateNeighbours(bset, nLabels);
+		}
+	}
+	
+	
+	/**
+	 * At the moment just generate and evaluate the ensemble
+	 */
+	protected void doCommunication() 
+	{
+		/*
+		 * First, build ensemble
+		 */
+		//Join all individuals of all subpopulations
+		List<IIndividual> allInds = new ArrayList<IIndividual>();
 		for(int p=0; p<numSubpop; p++) {
 			allInds.addAll(bset.get(p));
 		}
@@ -496,50 +1631,57 @@ public class Alg extends MultiSGE {
 		//Add individuals of the best ensemble with a probability
 		//	The probability is higher in last generations and lower in earlier
 		if(bestEnsemble != null) {
+			Set<IIndividual> added = new HashSet<IIndividual>();
 			for(IIndividual ind : bestEnsemble.inds) {
-				if(randgen.coin((generation*1.0)/maxOfGenerations)) {
-					if(!Utils.contains(allInds, (MultipListIndividual)ind)) {
+				if(randgen.coin(progress())) {
+					if(!isInSubpop(ind) && added.add(ind)) {
 						allInds.add(ind.copy());
 					}
 				}
 			}
 		}
 			
+		//While the ensemble is built, speculate individuals that may be exchanged (unless the evolution is finishing)
+		if(speculator != null && !shutdownRequested) {
+			if(commType == CommunicationType.exchangeBestEnsemble && bestEnsemble != null) {
+				speculator.speculateExchange(bestEnsemble.inds, numSubpop);
+			}
+			else if(commType == CommunicationType.exchangeSubpop) {
+				for(int p=0; p<numSubpop; p++) {
+					speculator.speculateExchange(bset.get(p), numSubpop);
+				}
+			}
+		}
+			
 		//Create ensemble considering all individuals
-		EnsembleSelection eSel = new EnsembleSelection(allInds, nClassifiers, nLabels, betaEnsembleSelection);
-		eSel.setRandgen(randgen);
+		EnsembleSelection eSel = newEnsembleSelection(numSubpop, allInds, nClassifiers, betaEnsembleSelection, randgen);
 		eSel.selectEnsemble();
+		ensureClassifiers(eSel.getEnsemble());
 		LabelPowerset2 learner = new LabelPowerset2(new J48());
 		((LabelPowerset2)learner).setSeed(1);
 		
 		Ensemble currentEnsemble = new Ensemble(eSel.getEnsemble(), learner);
-		currentEnsemble.setTableClassifiers(tableClassifiers);
+		currentEnsemble.setTableClassifiers(tableClassifiers, memberKeys);
 		
 		//Object no longer used
 		eSel = null;
 		
-		try {
-			currentEnsemble.build(fullTrainData);
-
-			//Evaluate ensemble
-			EnsembleEval eEval = new EnsembleEval(currentEnsemble, fullTrainData);
-			currentEnsembleFitness = eEval.evaluate();
-			eEval = null;
-				
-			System.out.println("Fitness iter " + generation + ": " + currentEnsembleFitness);
-			//System.out.println("currentEnsemble  votes: " + Arrays.toString(eSel.labelVotes));
-			
-			if(currentEnsembleFitness > bestEnsembleFitness) {
-				System.out.println("\tNew best fitness!");
-				//System.out.println(currentEnsemble);
-				bestEnsemble = currentEnsemble;
-				bestEnsembleFitness = currentEnsembleFitness;
-			}
-				
-			System.out.println();
-				
-		} catch (Exception e) {
-			e.printStackTrace();
+		//The estimate of the best ensemble is computed here, so candidates evaluated in the background only read it
+		if(approximateScoring && bestEnsemble != null && Double.isNaN(bestEnsembleEstimate)) {
+			bestEnsembleEstimate = estimateFitness(bestEnsemble);
+		}
+		
+		//Build and evaluate the ensemble
+		//	If overlapped, it is evaluated while next members are evaluated, and bestEnsemble is updated later.
+		//	The first ensemble is always evaluated here, since communication may need bestEnsemble.
+		if(overlapCommunication && bestEnsemble != null) {
+			final int gen = generation;
+			final Ensemble candidate = currentEnsemble;
+			pendingEnsemble = candidate;
+			pendingEnsembleFitness = CompletableFuture.supplyAsync(() -> evaluateEnsemble(candidate, gen), getEnsembleExecutor());
+		}
+		else {
+			commitEnsemble(currentEnsemble, evaluateEnsemble(currentEnsemble, generation));
 		}
 		
 		/*
@@ -560,6 +1702,7 @@ public class Alg extends MultiSGE {
 			double prob;
 			int exchanged = 0;
 			
+			
 			for(int i=0; i<bestEnsemble.inds.size(); i++) {
 				//Probability to be selected is lower as it is deeper in the ensemble
 				//It is calculated as an exponential (importance ^ omega)
@@ -576,23 +1719,21 @@ public class Alg extends MultiSGE {
 					}while(r == sp);
 					
 					//Individual with same list of genotype, but different subpopulation
-					newInd = new MultipListIndividual(new MultipListGenotype(r, new ArrayList<Integer>(currInd.getGenotype().genotype)));
+					newInd = new MultipListIndividual(MultipListGenotype.of(r, currInd.getGenotype().genotype));
 					
 					//If it has been evaluated yet at any moment
 						//Probability to be included again is reduced with generations
 					//If not, just include
 					//Only include if not already present in the subpopulation
-					if(tableFitness.containsKey(newInd.getGenotype().toString())) {
-						if(randgen.coin( 1 - ((generation*1.0) / maxOfGenerations) )) {
-							if(!Utils.contains(bset.get(r), newInd)) {
-								bset.get(r).add(newInd);
+					if(tableFitness.containsKey(memberKeys.key(newInd.getGenotype()))) {
+						if(randgen.coin( 1 - progress() )) {
+							if(addToSubpop(newInd)) {
 								exchanged++;
 							}
 						}
 					}
 					else {
-						if(!Utils.contains(bset.get(r), newInd)) {
-							bset.get(r).add(newInd);
+						if(addToSubpop(newInd)) {
 							exchanged++;
 						}
 					}
@@ -610,10 +1751,9 @@ public class Alg extends MultiSGE {
 			//Select new individuals for subpopulations
 			for(int i=0; i<numSubpop; i++) {
 				if(bset.get(i).size() > subpopSize) {
-					eSel = new EnsembleSelection(bset.get(i), subpopSize, nLabels, betaUpdatePop);
-					eSel.setRandgen(randgen);
+					eSel = newEnsembleSelection(numSubpop, bset.get(i), subpopSize, betaUpdatePop, randgen);
 					eSel.selectEnsemble();
-					bset.set(i, eSel.getEnsemble());
+					setSubpop(i, eSel.getEnsemble());
 					eSel = null;
 				}
 			}
@@ -633,6 +1773,9 @@ public class Alg extends MultiSGE {
 				exchangedInds.add(i, new ArrayList<IIndividual>());
 			}
 			
+			//Exchanged individuals, which are not in the subpopulations yet
+			Set<IIndividual> exchangedSet = new HashSet<IIndividual>();
+			
 			//For each subpop
 			for(int p=0; p<numSubpop; p++) {
 				//Each individual of the subpop
@@ -652,29 +1795,24 @@ public class Alg extends MultiSGE {
 						}while(r == sp);
 						
 						//Individual with same list of genotype, but different subpopulation
-						newInd = new MultipListIndividual(new MultipListGenotype(r, new ArrayList<Integer>(currInd.getGenotype().genotype)));
+						newInd = new MultipListIndividual(MultipListGenotype.of(r, currInd.getGenotype().genotype));
 						
 						//If it has been evaluated yet at any moment
 							//Probability to be included again is reduced with generations
 						//If not, just include
 						//Also, only include if it is already not in the corresponding subpop nor the exchanged inds
-						if(tableFitness.containsKey(newInd.getGenotype().toString())) {
-							if(randgen.coin( 1 - ((generation*1.0) / maxOfGenerations) )) {
-								if(!Utils.contains(bset.get(r), newInd)) {
-									if(!Utils.contains(exchangedInds.get(r), newInd)) {
-										exchangedInds.get(r).add(newInd);
-										exchanged++;
-									}
+						if(tableFitness.containsKey(memberKeys.key(newInd.getGenotype()))) {
+							if(randgen.coin( 1 - progress() )) {
+								if(!isInSubpop(newInd) && exchangedSet.add(newInd)) {
+									exchangedInds.get(r).add(newInd);
+									exchanged++;
 								}
-								
 							}
 						}
 						else {
-							if(!Utils.contains(bset.get(r), newInd)) {
-								if(!Utils.contains(exchangedInds.get(r), newInd)) {
-									exchangedInds.get(r).add(newInd);
-									exchanged++;
-								}
+							if(!isInSubpop(newInd) && exchangedSet.add(newInd)) {
+								exchangedInds.get(r).add(newInd);
+								exchanged++;
 							}
 						}
 					}
@@ -686,7 +1824,7 @@ public class Alg extends MultiSGE {
 			//Add exchanged inds to corresponding subpops
 			for(int p=0; p<numSubpop; p++) {
 				for(int i=0; i<exchangedInds.get(p).size(); i++) {
-					bset.get(p).add(exchangedInds.get(p).get(i));
+					addToSubpop(exchangedInds.get(p).get(i));
 				}
 			}
 			
@@ -700,10 +1838,9 @@ public class Alg extends MultiSGE {
 			//Select new individuals for subpopulations
 			for(int i=0; i<numSubpop; i++) {
 				if(bset.get(i).size() > subpopSize) {
-					eSel = new EnsembleSelection(bset.get(i), subpopSize, nLabels, betaUpdatePop);
-					eSel.setRandgen(randgen);
+					eSel = newEnsembleSelection(numSubpop, bset.get(i), subpopSize, betaUpdatePop, randgen);
 					eSel.selectEnsemble();
-					bset.set(i, eSel.getEnsemble());
+					setSubpop(i, eSel.getEnsemble());
 					eSel = null;
 				}
 			}
@@ -754,21 +1891,18 @@ public class Alg extends MultiSGE {
 			}
 			
 			//Add each new individual to its corresponding subpopulation (if applicable)
-			int currSubpop;
 			for(MultipListIndividual ind : newInds) {
-				currSubpop = ind.getSubpop();
-				
 				//If the individual is not already included in the subpopulation
-				if(!Utils.contains(bset.get(currSubpop), ind)) {
+				if(!isInSubpop(ind)) {
 					//If individual was already evaluated at any moment, include with decreasing probability
-					if(tableFitness.containsKey(ind.getGenotype().toString())) {
-						if(randgen.coin( 1 - ((generation*1.0) / maxOfGenerations) )) {
-							bset.get(currSubpop).add(ind);
+					if(tableFitness.containsKey(memberKeys.key(ind.getGenotype()))) {
+						if(randgen.coin( 1 - progress() )) {
+							addToSubpop(ind);
 						}
 					}
 					//If never evaluated, include in corresponding subpopulation
 					else {
-						bset.get(currSubpop).add(ind);
+						addToSubpop(ind);
 					}
 				}
 			}
@@ -782,10 +1916,9 @@ public class Alg extends MultiSGE {
 			for(int p=0; p<numSubpop; p++) {
 				if(bset.get(p).size() > subpopSize) {
 					//Update subpopulation with ensemble selection procedure
-					eSel = new EnsembleSelection(bset.get(p), subpopSize, nLabels, betaUpdatePop);
-					eSel.setRandgen(randgen);
+					eSel = newEnsembleSelection(numSubpop, bset.get(p), subpopSize, betaUpdatePop, randgen);
 					eSel.selectEnsemble();
-					bset.set(p, eSel.getEnsemble());
+					setSubpop(p, eSel.getEnsemble());
 					eSel = null;
 				}
 			}
@@ -796,27 +1929,961 @@ public class Alg extends MultiSGE {
 	
 	}
 	
+	/**
+	 * Build and evaluate an ensemble over the full training data
+	 * 
+	 * @param ensemble Ensemble
+	 * @param gen Generation in which the ensemble was created
+	 * @return Fitness of the ensemble, or NaN if it was rejected by its estimate (stored in lastEnsembleEstimate)
+	 */
+	protected double evaluateEnsemble(Ensemble ensemble, int gen) {
+		double fitness = -1;
+		lastEnsembleEstimate = Double.NaN;
+		
+		try {
+			ensemble.build(fullTrainData);
+			
+			//Candidates clearly worse than the best ensemble on the subsample are not evaluated on full data;
+			//	they have no fitness, so they are never taken as best, and their estimate is kept apart
+			if(approximateScoring && !Double.isNaN(bestEnsembleEstimate)) {
+				double estimate = estimateFitness(ensemble);
+				if(estimate < bestEnsembleEstimate - scoringTolerance) {
+					lastEnsembleEstimate = estimate;
+					System.out.println("Fitness iter " + gen + " (estimated): " + estimate);
+					return Double.NaN;
+				}
+			}
+
+			//Evaluate ensemble
+			fitness = evaluateOn(ensemble, fullTrainData);
+				
+			System.out.println("Fitness iter " + gen + ": " + fitness);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		
+		return fitness;
+	}
+	
+	/**
+	 * Estimate the fitness of a built ensemble on the scoring subsample.
+	 * The subsample is stratified by labelset and it is kept along the evolution (until the data changes), 
+	 *  so estimates of different ensembles are comparable.
+	 * The fitness stored in the ensemble is not modified.
+	 * 
+	 * @param ensemble Built ensemble
+	 * @return Estimated fitness
+	 */
+	protected double estimateFitness(Ensemble ensemble) {
+		if(scoringData == null) {
+			IRandGen scoringRandgen = isDeterministic() ? streams.stream(RandStreams.SAMPLE, numSubpop, fullTrainData.getNumInstances()) : randgen;
+			scoringData = Utils.sampleData(fullTrainData, Utils.stratifiedSampleIndexes(fullTrainData, scoringRatio, scoringRandgen));
+		}
+		
+		double fitness = ensemble.fitness;
+		double estimate = -1;
+		try {
+			estimate = evaluateOn(ensemble, scoringData);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		ensemble.setFitness(fitness);
+		
+		return estimate;
+	}
+	
+	/**
+	 * Evaluate a built ensemble on the full training data or on the scoring subsample.
+	 * With delta evaluation, only members that changed since the last ensemble evaluated on the same data are predicted.
+	 * 
+	 * @param ensemble Built ensemble
+	 * @param data Full training data or scoring subsample
+	 * @return Fitness of the ensemble
+	 * @throws Exception
+	 */
+	protected double evaluateOn(Ensemble ensemble, MultiLabelInstances data) throws Exception {
+		if(!deltaEnsembleEvaluation) {
+			return new EnsembleEval(ensemble, data).evaluate();
+		}
+		
+		int capacity = Math.max(deltaMemberCapacity, nClassifiers);
+		if(data == scoringData) {
+			if(deltaScoringEval == null) {
+				deltaScoringEval = new DeltaEnsembleEval(scoringData, capacity, memberKeys);
+			}
+			return deltaScoringEval.evaluate(ensemble);
+		}
+		
+		if(deltaEval == null) {
+			deltaEval = new DeltaEnsembleEval(fullTrainData, capacity, memberKeys);
+		}
+		return deltaEval.evaluate(ensemble);
+	}
+	
+	/**
+	 * Set the fitness of the current ensemble and replace the best ensemble if it is improved
+	 * 
+	 * @param ensemble Evaluated ensemble
+	 * @param fitness Fitness of the ensemble (NaN if it was rejected by its estimate)
+	 */
+	protected void commitEnsemble(Ensemble ensemble, double fitness) {
+		commsWithoutImprovement++;
+		
+		//Estimates are not comparable with fitness over the full data, so they are not reported as such
+		if(Double.isNaN(fitness)) {
+			currentEnsembleEstimate = lastEnsembleEstimate;
+			System.out.println();
+			return;
+		}
+		currentEnsembleFitness = fitness;
+		currentEnsembleEstimate = Double.NaN;
+		
+		if(currentEnsembleFitness > bestEnsembleFitness) {
+			System.out.println("\tNew best fitness!");
+			commsWithoutImprovement = 0;
+			if(banditAllocation) {
+				countEnsembleEntries(ensemble);
+			}
+			bestEnsemble = ensemble;
+			bestEnsembleFitness = currentEnsembleFitness;
+			bestEnsembleEstimate = Double.NaN;
+			
+			if(publisher != null) {
+				publishBestEnsemble();
+			}
+		}
+			
+		System.out.println();
+	}
+	
+	/**
+	 * Publish a copy of the best ensemble (service mode); the copy is pruned and written in background
+	 */
+	protected void publishBestEnsemble() {
+		try {
+			Ensemble copy = bestEnsemble.detachedCopy();
+			copy.setFitness(bestEnsembleFitness);
+			publisher.publish(copy, generation);
+		}
+		catch (Exception e) {
+			//Evolution continues; next improvement is published as usual
+			System.out.println("Error copying ensemble to publish: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Evict members that are not alive from the tables of fitness, classifiers and costs, so a service runs in bounded memory.
+	 * Members of the subpopulations, the best ensemble and the ensemble being evaluated are alive, so they are never evicted.
+	 * Members are evicted only if tables exceed the max number of models, those that have been dead for longer first.
+	 * A member is only evicted after it is found dead in a previous generation, so members being evaluated (e.g., by asynchronous islands) are kept.
+	 * An evicted member is evaluated again if it appears later; its classifier is built again if it joins an ensemble.
+	 * Interned genotypes are weakly referenced, so they are released once no individual uses them.
+	 */
+	protected void evictDeadMembers() {
+		//Mark alive members
+		List<IIndividual> alive = new ArrayList<IIndividual>();
+		for(int p=0; p<numSubpop; p++) {
+			alive.addAll(bset.get(p));
+		}
+		if(bestEnsemble != null) {
+			alive.addAll(bestEnsemble.inds);
+		}
+		if(pendingEnsemble != null) {
+			alive.addAll(pendingEnsemble.inds);
+		}
+		Set<String> aliveKeys = new HashSet<String>();
+		for(IIndividual ind : alive) {
+			String key = memberKeys.key(((MultipListIndividual) ind).getGenotype());
+			aliveKeys.add(key);
+			lastAlive.put(key, generation);
+		}
+		
+		//Members evaluated since last check are considered alive now
+		synchronized(tableFitness) {
+			for(String key : tableFitness.keySet()) {
+				lastAlive.putIfAbsent(key, generation);
+			}
+		}
+		lastAlive.keySet().retainAll(tableFitness.keySet());
+		
+		int nEvict = tableFitness.size() - serviceMaxModels;
+		if(nEvict <= 0) {
+			return;
+		}
+		
+		//Least recently alive first
+		List<String> dead = new ArrayList<String>();
+		for(String key : lastAlive.keySet()) {
+			if(!aliveKeys.contains(key) && lastAlive.get(key) < generation) {
+				dead.add(key);
+			}
+		}
+		dead.sort((k1, k2) -> Integer.compare(lastAlive.get(k1), lastAlive.get(k2)));
+		
+		nEvict = Math.min(nEvict, dead.size());
+		for(String key : dead.subList(0, nEvict)) {
+			tableFitness.remove(key);
+			tableClassifiers.remove(key);
+			tableGenotypes.remove(key);
+			tableCost.remove(key);
+			lastAlive.remove(key);
+		}
+		System.out.println("Members evicted: " + nEvict + " (" + tableFitness.size() + " kept)");
+	}
+	
+	/**
+	 * Getter for the handle to predict with the last published ensemble
+	 * 
+	 * @return Handle (null if not in service mode)
+	 */
+	public EnsembleHandle getEnsembleHandle() {
+		return (publisher != null) ? publisher.getHandle() : null;
+	}
+	
+	/**
+	 * Wait for the ensemble being evaluated in the background (if any) and commit it.
+	 * It is called at the beginning of each control phase and before the final ensemble is used,
+	 *  so bestEnsemble always changes at the same point of the evolution.
+	 */
+	protected void commitPendingEnsemble() {
+		if(pendingEnsemble != null) {
+			commitEnsemble(pendingEnsemble, pendingEnsembleFitness.join());
+			pendingEnsemble = null;
+			pendingEnsembleFitness = null;
+		}
+	}
+	
+	/**
+	 * Count the members of a new best ensemble that were not in the previous one, for each subpopulation
+	 * 
+	 * @param ensemble New best ensemble
+	 */
+	protected void countEnsembleEntries(Ensemble ensemble) {
+		Set<IIndividual> previous = new HashSet<IIndividual>();
+		if(bestEnsemble != null) {
+			previous.addAll(bestEnsemble.inds);
+		}
+		
+		for(MultipListIndividual ind : ensemble.inds) {
+			if(!previous.contains(ind)) {
+				ensembleEntries[ind.getSubpop()]++;
+			}
+		}
+	}
+	
+	/**
+	 * Get the gain in average fitness of each subpopulation since the last control.
+	 * Losses are considered as no gain.
+	 * 
+	 * @return Array with the gain of each subpopulation
+	 */
+	protected double[] fitnessGains() {
+		double [] gains = new double[numSubpop];
+		if(lastAvgFitness != null) {
+			double [] avgFit = avgFitnessSubpopulation();
+			for(int p=0; p<numSubpop; p++) {
+				gains[p] = Math.max(0, avgFit[p] - lastAvgFitness[p]);
+			}
+		}
+		
+		return gains;
+	}
+	
+	/**
+	 * Allocate the offspring of next generation among subpopulations with a discounted UCB bandit.
+	 * The reward of each subpopulation combines its fitness gain and its entries in the best ensemble, 
+	 *  and it is divided by its offspring, so subpopulations are compared by reward per evaluation.
+	 * The total number of offspring is kept as the population size, and each subpopulation gets at least minOffspring.
+	 * The remaining offspring are given one by one to the subpopulation with highest upper confidence bound.
+	 * 
+	 * @param gains Fitness gain of each subpopulation in this generation
+	 */
+	protected void allocateOffspring(double [] gains) {
+		//Observe rewards of last allocation (none at initialization)
+		if(generation > 0) {
+			for(int p=0; p<numSubpop; p++) {
+				double reward = banditGainWeight * gains[p] + (1 - banditGainWeight) * ((1.0 * ensembleEntries[p]) / nClassifiers);
+				int nOffspring = Math.max(1, getOffspringQuota(p));
+				
+				banditReward[p] = (1 - banditDecay) * banditReward[p] + banditDecay * (reward / nOffspring);
+				banditPulls[p] = (1 - banditDecay) * banditPulls[p] + nOffspring;
+				ensembleEntries[p] = 0;
+			}
+		}
+		
+		//Rewards are scaled to [0, 1] so exploration coefficient does not depend on fitness scale
+		double maxReward = 0;
+		double totalPulls = 0;
+		for(int p=0; p<numSubpop; p++) {
+			maxReward = Math.max(maxReward, banditReward[p]);
+			totalPulls += banditPulls[p];
+		}
+		
+		int budget = subpopSize * numSubpop;
+		int min = Math.min(minOffspring, subpopSize);
+		int [] quota = new int[numSubpop];
+		Arrays.fill(quota, min);
+		
+		for(int assigned = min * numSubpop; assigned < budget; assigned++) {
+			int best = 0;
+			double bestUCB = Double.NEGATIVE_INFINITY;
+			for(int p=0; p<numSubpop; p++) {
+				double mean = (maxReward > 0) ? banditReward[p] / maxReward : 0;
+				double ucb = mean + banditExploration * Math.sqrt(Math.log(totalPulls + assigned + 1) / (banditPulls[p] + quota[p]));
+				if(ucb > bestUCB) {
+					bestUCB = ucb;
+					best = p;
+				}
+			}
+			quota[best]++;
+		}
+		
+		offspringQuota = quota;
+	}
+	
+	/**
+	 * Get the executor to evaluate ensembles in the background, creating it if needed
+	 * 
+	 * @return Executor
+	 */
+	protected ExecutorService getEnsembleExecutor() {
+		if(ensembleExecutor == null) {
+			ensembleExecutor = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "ensemble-evaluation");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		
+		return ensembleExecutor;
+	}
+	
 	@Override
 	protected void doControl()
 	{
 		System.out.println("Generation " + generation);
 		
-		if ((generation % generationsComm) == 0) {
+		//Ensemble from previous communication is committed before anything else
+		commitPendingEnsemble();
+		
+		if(incrementalUpdate) {
+			checkNewData();
+		}
+		
+		//Estimate time of a generation
+		double now = elapsedTime();
+		if(generation > 0) {
+			double last = now - lastControlTime;
+			generationTime = (generationTime > 0) ? 0.5 * generationTime + 0.5 * last : last;
+		}
+		lastControlTime = now;
+		
+		//Before the deadline, subpopulations always communicate so the final ensemble considers them
+		boolean lastGeneration = shutdownRequested || deadlineApproaching();
+		
+		if(tabuVariation && generation > 0) {
+			System.out.println("Fresh offspring ratio: " + resetFreshOffspringRatio());
+		}
+		
+		//Gains are measured before migrants arrive to subpopulations
+		double [] gains = null;
+		if(banditAllocation) {
+			gains = fitnessGains();
+		}
+		
+		if (isCommunicationGeneration() || lastGeneration) {
 			doCommunication();
 		}
 		
-		if (generation >= maxOfGenerations) {
-			if(prune) {
-				int nPruned = bestEnsemble.prune(fullTrainData);
-				System.out.println(nPruned + " members pruned.");
+		if(banditAllocation) {
+			lastAvgFitness = avgFitnessSubpopulation();
+			allocateOffspring(gains);
+			System.out.println("Offspring quota: " + Arrays.toString(offspringQuota));
+		}
+		
+		if(asynchronous) {
+			System.out.println("Throughput: " + getEvaluationsPerSecond() + " evaluations/s");
+		}
+		
+		if(deltaEval != null) {
+			System.out.println("Ensemble members predicted: " + deltaEval.resetPredictedMembers());
+		}
+		
+		if(speculator != null) {
+			int nSpeculated = speculator.getNumSpeculated();
+			System.out.println("Speculation hit rate: " + speculator.resetHitRate() + " (" + nSpeculated + " speculated)");
+		}
+		
+		if(service) {
+			evictDeadMembers();
+		}
+		
+		TerminationReason reason = lastGeneration ? (shutdownRequested ? TerminationReason.shutdown : TerminationReason.timeBudget) : checkTermination();
+		if (reason != null) {
+			finish(reason);
+		}
+		else if (checkpointFrequency > 0 && (generation % checkpointFrequency) == 0) {
+			try {
+				saveCheckpoint();
+			}
+			catch (IOException e) {
+				//Evolution may continue without checkpoint
+				System.out.println("Error writing checkpoint: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Check if evolution has to terminate
+	 * 
+	 * @return Reason to terminate, or null if evolution continues
+	 */
+	protected TerminationReason checkTermination()
+	{
+		if (shutdownRequested) {
+			return TerminationReason.shutdown;
+		}
+		
+		//A service only finishes when it is stopped (or its time budget ends)
+		if (service) {
+			return null;
+		}
+		
+		//With a time budget, the number of generations is not limited
+		if (timeBudget <= 0 && generation >= maxOfGenerations) {
+			return TerminationReason.maxGenerations;
+		}
+		
+		if (evaluator.getNumberOfEvaluations() > maxOfEvaluations) {
+			return TerminationReason.maxEvaluations;
+		}
+		
+		if (stagnationComms > 0 && commsWithoutImprovement >= stagnationComms) {
+			return TerminationReason.stagnation;
+		}
+		
+		//Individuals of the initial population are always new, so they are not considered
+		if (maxCacheHitRatio <= 1) {
+			double cacheHitRatio = ((Eval) evaluator).resetCacheHitRatio();
+			if (generation > 0) {
+				System.out.println("Cache hit ratio: " + cacheHitRatio);
+				cacheHitGenerations = (cacheHitRatio >= maxCacheHitRatio) ? cacheHitGenerations + 1 : 0;
+				if (cacheHitGenerations >= terminationPatience) {
+					return TerminationReason.cacheHits;
+				}
+			}
+		}
+		
+		if (minDiversity > 0) {
+			double diversity = diversity();
+			System.out.println("Diversity: " + diversity);
+			lowDiversityGenerations = (diversity < minDiversity) ? lowDiversityGenerations + 1 : 0;
+			if (lowDiversityGenerations >= terminationPatience) {
+				return TerminationReason.diversity;
 			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Finish the evolution: the best ensemble is obtained (and pruned if applicable), 
+	 *  and all threads are released.
+	 * 
+	 * @param reason Reason of termination
+	 */
+	protected void finish(TerminationReason reason)
+	{
+		terminationReason = reason;
+		terminationGeneration = generation;
+		System.out.println("Termination: " + reason + " at generation " + generation);
+		
+		//Islands are not needed anymore
+		stopAsyncIslands();
+		
+		//Ensemble of last communication (if any) should be considered
+		commitPendingEnsemble();
+		
+		//Refinement may take longer than the grace period of a shutdown
+		if(refinement && !shutdownRequested) {
+			refineBestEnsemble();
+		}
+		
+		if(prune) {
+			int nPruned = bestEnsemble.prune(fullTrainData);
+			System.out.println(nPruned + " members pruned.");
+		}
 
-			EnsembleEval eEval = new EnsembleEval(bestEnsemble, fullTrainData);
-			double eFitness = eEval.evaluate();
-			System.out.println("FINAL FITNESS: " + eFitness);
+		EnsembleEval eEval = new EnsembleEval(bestEnsemble, fullTrainData);
+		double eFitness = eEval.evaluate();
+		System.out.println("FINAL FITNESS: " + eFitness);
+		if(multiObjective) {
+			System.out.println("FINAL COST: " + ensembleCost(bestEnsemble));
+		}
+		
+		if(publisher != null) {
+			publisher.shutdown(shutdownGraceSeconds);
+		}
+		if(speculator != null) {
+			speculator.shutdown();
+		}
+		if(ensembleExecutor != null) {
+			ensembleExecutor.shutdown();
+		}
+		((MultipAbstractParallelEvaluator)evaluator).shutdown();
+		shutdownIslands();
+		
+		//Checkpoint is kept only if the run was interrupted, so it can be resumed
+		if(checkpointFile != null && reason != TerminationReason.shutdown && reason != TerminationReason.timeBudget) {
+			checkpointFile.delete();
 			
-			state = FINISHED;
+			if(keepFinalCheckpoint) {
+				File finalFile = new File(checkpointFile.getPath().replaceAll("\\.ckpt$", ".final.ckpt"));
+				try {
+					saveCheckpoint(finalFile);
+				}
+				catch (IOException e) {
+					System.out.println("Error writing final checkpoint: " + e.getMessage());
+				}
+			}
+		}
+		
+		state = FINISHED;
+	}
+	
+	/**
+	 * Check if new instances were appended to the training data file since last check, and update the run with them.
+	 * Other changes of the file are ignored, since the evolution cannot continue with different data.
+	 */
+	protected void checkNewData()
+	{
+		long modified = trainDataFile.lastModified();
+		if(modified == trainDataModified) {
+			return;
+		}
+		
+		MultiLabelInstances data;
+		try {
+			data = new MultiLabelInstances(trainDataFile.getPath(), datasetXMLFileName);
+		}
+		catch (MulanException e) {
+			//The file may be being written; it is read again in next control
+			System.out.println("Unable to read new training data: " + e.getMessage());
 			return;
 		}
-	}	
+		trainDataModified = modified;
+		
+		int nOld = fullTrainData.getNumInstances();
+		if(data.getNumInstances() <= nOld || Utils.fingerprint(data, nOld) != dataFingerprint) {
+			System.out.println("Training data changed but no instances were appended to it; changes are ignored.");
+			return;
+		}
+		
+		fullTrainData = data;
+		updateWithNewData(nOld);
+	}
+	
+	/**
+	 * Update the run after new instances were appended to the full training data.
+	 * New instances are included in the sample of each subpopulation, keeping the sampling ratio.
+	 * Models and fitness of all genotypes are invalidated; only live individuals (those in the subpopulations 
+	 *  and in the best ensemble) are evaluated again (in parallel), while the rest are only evaluated if they appear again.
+	 * Then, the best ensemble is built with the new models and evaluated again, and evolution continues from current state.
+	 * 
+	 * @param nOld Number of instances before the update
+	 */
+	protected void updateWithNewData(int nOld)
+	{
+		int nNew = fullTrainData.getNumInstances() - nOld;
+		System.out.println(nNew + " new training instances; updating the run.");
+		
+		//Subpopulations cannot change while they are updated
+		stopAsyncIslands();
+		commitPendingEnsemble();
+		
+		//Extend samples; in deterministic mode, new instances of each update have their own stream
+		for(int p=0; p<numSubpop; p++) {
+			if(sharedSample && p > 0) {
+				sampleIndexes[p] = sampleIndexes[0];
+				trainData[p] = trainData[0];
+				continue;
+			}
+			IRandGen sampleRandgen = isDeterministic() ? streams.stream(RandStreams.SAMPLE, p, nOld) : randgen;
+			sampleIndexes[p] = Utils.appendSampleIndexes(sampleIndexes[p], nOld, fullTrainData.getNumInstances(), sampleRatio, sampleRandgen);
+			trainData[p] = Utils.sampleData(fullTrainData, sampleIndexes[p]);
+		}
+		updateSampleKeys();
+		dataFingerprint = Utils.fingerprint(fullTrainData);
+		
+		((Eval) evaluator).setTrainData(trainData);
+		((Eval) evaluator).setEvalData(fullTrainData);
+		if(speculator != null) {
+			speculator.invalidate();
+		}
+		if(publisher != null) {
+			publisher.setPruneData(fullTrainData);
+		}
+		
+		//Ensembles are scored on a new subsample, and votes of previous models are not valid anymore
+		scoringData = null;
+		bestEnsembleEstimate = Double.NaN;
+		deltaEval = null;
+		deltaScoringEval = null;
+		
+		//Models of dead genotypes are just discarded
+		tableFitness.clear();
+		tableClassifiers.clear();
+		tableGenotypes.clear();
+		tableCost.clear();
+		
+		//Live individuals; members of the ensemble that are not in the subpopulations are evaluated along with them
+		List<List<IIndividual>> live = new ArrayList<List<IIndividual>>(numSubpop);
+		for(int p=0; p<numSubpop; p++) {
+			live.add(new ArrayList<IIndividual>(bset.get(p)));
+		}
+		if(bestEnsemble != null) {
+			Set<IIndividual> added = new HashSet<IIndividual>();
+			for(MultipListIndividual ind : bestEnsemble.inds) {
+				if(!isInSubpop(ind) && added.add(ind)) {
+					live.get(ind.getSubpop()).add(ind);
+				}
+			}
+		}
+		for(List<IIndividual> list : live) {
+			for(IIndividual ind : list) {
+				ind.setFitness(null);
+			}
+		}
+		((MultipAbstractParallelEvaluator)evaluator).evaluateMultip(live);
+		
+		//Rebuild and evaluate the best ensemble with the new models
+		if(bestEnsemble != null) {
+			List<IIndividual> members = new ArrayList<IIndividual>(bestEnsemble.inds);
+			for(IIndividual ind : members) {
+				ind.setFitness(new SimpleValueFitness(tableFitness.get(memberKeys.key(((MultipListIndividual) ind).getGenotype()))));
+			}
+			try {
+				bestEnsemble = buildEnsemble(members);
+				EnsembleEval eEval = new EnsembleEval(bestEnsemble, fullTrainData);
+				bestEnsembleFitness = eEval.evaluate();
+				currentEnsembleFitness = bestEnsembleFitness;
+				System.out.println("Fitness of best ensemble with new data: " + bestEnsembleFitness);
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+			
+			if(publisher != null) {
+				publishBestEnsemble();
+			}
+		}
+		
+		//Fitness before the update is not comparable with current one
+		commsWithoutImprovement = 0;
+		if(lastAvgFitness != null) {
+			lastAvgFitness = avgFitnessSubpopulation();
+		}
+	}
+	
+	/**
+	 * Refine the best ensemble by local search with swap, add and remove moves.
+	 * Candidates are the best individuals of the archive of evaluated genotypes (all individuals with a classifier built), 
+	 *  and moves are scored with the predictions of members and candidates over the full training data.
+	 * The refined ensemble is evaluated again as usual, and it replaces the best one only if it is better.
+	 */
+	protected void refineBestEnsemble()
+	{
+		//Best individuals of the archive that are not in the ensemble; ties in fitness are broken by key, so the order is reproducible
+		Set<String> members = new HashSet<String>();
+		for(MultipListIndividual ind : bestEnsemble.inds) {
+			members.add(memberKeys.key(ind.getGenotype()));
+		}
+		List<String> keys = new ArrayList<String>();
+		for(String key : tableGenotypes.keySet()) {
+			if(!members.contains(key) && tableFitness.containsKey(key) && tableClassifiers.containsKey(key)) {
+				keys.add(key);
+			}
+		}
+		keys.sort((k1, k2) -> {
+			int c = Double.compare(tableFitness.get(k2), tableFitness.get(k1));
+			return (c != 0) ? c : k1.compareTo(k2);
+		});
+		List<MultipListIndividual> candidates = new ArrayList<MultipListIndividual>();
+		for(String key : keys.subList(0, Math.min(refinementCandidates, keys.size()))) {
+			MultipListIndividual ind = new MultipListIndividual(tableGenotypes.get(key));
+			ind.setFitness(new SimpleValueFitness(tableFitness.get(key)));
+			candidates.add(ind);
+		}
+		
+		try {
+			DeltaEnsembleEval eval = (deltaEval != null) ? deltaEval : new DeltaEnsembleEval(fullTrainData, Math.max(deltaMemberCapacity, nClassifiers), memberKeys);
+			EnsembleRefiner refiner = new EnsembleRefiner(eval, tableClassifiers, nClassifiers, ((MultipAbstractParallelEvaluator) evaluator).getNumThreads());
+			List<IIndividual> refined = refiner.refine(bestEnsemble.inds, candidates, refinementSeconds, refinementIterations);
+			System.out.println("Refinement: " + refiner.getNumMoves() + " moves (estimated fitness " + refiner.getFitness() + ")");
+			
+			if(refiner.getNumMoves() > 0) {
+				Ensemble ensemble = buildEnsemble(refined);
+				double fitness = new EnsembleEval(ensemble, fullTrainData).evaluate();
+				if(fitness > bestEnsembleFitness) {
+					System.out.println("Refined ensemble fitness: " + fitness);
+					bestEnsemble = ensemble;
+					bestEnsembleFitness = fitness;
+					if(publisher != null) {
+						publishBestEnsemble();
+					}
+				}
+			}
+		}
+		catch (Exception e) {
+			//Evolution already finished; the best ensemble is kept
+			System.out.println("Error refining the ensemble: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Build the classifiers of the given individuals that are not in the table.
+	 * It only happens after resuming from a checkpoint without classifiers; they are built as in the evaluation.
+	 * 
+	 * @param inds Individuals
+	 */
+	protected void ensureClassifiers(List<IIndividual> inds) {
+		for(IIndividual ind : inds) {
+			MultipListGenotype gen = ((MultipListIndividual) ind).getGenotype();
+			String key = memberKeys.key(gen);
+			if(!tableClassifiers.containsKey(key)) {
+				try {
+					tableClassifiers.put(key, ((Eval) evaluator).buildMember(gen).classifier.makeCopy());
+					tableGenotypes.putIfAbsent(key, gen);
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+					System.exit(1);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Create an ensemble with given members, as in the communication, and build it
+	 * 
+	 * @param inds Members of the ensemble
+	 * @return Built ensemble
+	 * @throws Exception
+	 */
+	protected Ensemble buildEnsemble(List<IIndividual> inds) throws Exception {
+		ensureClassifiers(inds);
+		
+		LabelPowerset2 learner = new LabelPowerset2(new J48());
+		learner.setSeed(1);
+		Ensemble ensemble = new Ensemble(inds, learner);
+		ensemble.setTableClassifiers(tableClassifiers, memberKeys);
+		ensemble.build(fullTrainData);
+		
+		return ensemble;
+	}
+	
+	/**
+	 * Write the state of the algorithm at the end of current generation to the checkpoint file.
+	 * In deterministic mode, the state of all random streams is included, 
+	 *  so a run resumed from the checkpoint gives the same results as if it had not been interrupted.
+	 * 
+	 * @throws IOException
+	 */
+	protected void saveCheckpoint() throws IOException {
+		saveCheckpoint(checkpointFile);
+	}
+	
+	/**
+	 * Write the state of the algorithm to the given checkpoint file
+	 * 
+	 * @param file Checkpoint file
+	 * @throws IOException
+	 */
+	protected void saveCheckpoint(File file) throws IOException {
+		//The ensemble being evaluated in the background is needed to continue
+		double pendingFitness = (pendingEnsemble != null) ? pendingEnsembleFitness.join() : -1;
+		double pendingEstimate = (pendingEnsemble != null) ? lastEnsembleEstimate : Double.NaN;
+		
+		DataOutputStream out = Checkpoint.create(file);
+		
+		out.writeInt(numSubpop);
+		out.writeInt(subpopSize);
+		out.writeBoolean(isDeterministic());
+		out.writeLong(dataFingerprint);
+		out.writeInt(fullTrainData.getNumInstances());
+		out.writeInt(generation);
+		out.writeInt(evaluator.getNumberOfEvaluations());
+		
+		//Data samples and subpopulations
+		for(int p=0; p<numSubpop; p++) {
+			Checkpoint.writeInts(out, sampleIndexes[p]);
+		}
+		for(int p=0; p<numSubpop; p++) {
+			Checkpoint.writeIndividuals(out, bset.get(p));
+		}
+		
+		//Tables
+		Checkpoint.writeFitnessTable(out, tableFitness);
+		Checkpoint.writeClassifierTable(out, checkpointClassifiers ? tableClassifiers : null, tableGenotypes);
+		
+		//Ensembles
+		out.writeDouble(bestEnsembleFitness);
+		out.writeDouble(currentEnsembleFitness);
+		Checkpoint.writeIndividuals(out, (bestEnsemble != null) ? bestEnsemble.inds : new ArrayList<MultipListIndividual>());
+		Checkpoint.writeIndividuals(out, (pendingEnsemble != null) ? pendingEnsemble.inds : new ArrayList<MultipListIndividual>());
+		out.writeDouble(pendingFitness);
+		out.writeDouble(pendingEstimate);
+		out.writeDouble(currentEnsembleEstimate);
+		
+		//Previous content is also read to warm-start other runs (see WarmStart)
+		
+		//Random numbers generators
+		if(isDeterministic()) {
+			out.writeLong(((StreamRandGen) randgen).getState());
+			for(int p=0; p<numSubpop; p++) {
+				out.writeLong(((StreamRandGen) subpopRandgen[p]).getState());
+			}
+			out.writeInt(contextStreams.size());
+			for(StreamRandGen stream : contextStreams) {
+				out.writeLong(stream.getState());
+			}
+		}
+		else {
+			//Generators of the operators are not available, so only those of the algorithm are stored
+			Checkpoint.writeObject(out, super.randgen);
+			Checkpoint.writeObject(out, randgen);
+			Checkpoint.writeObject(out, subpopRandgen);
+		}
+		
+		//Termination and time
+		out.writeInt(commsWithoutImprovement);
+		out.writeInt(cacheHitGenerations);
+		out.writeInt(lowDiversityGenerations);
+		out.writeDouble(elapsedTime());
+		out.writeDouble(generationTime);
+		out.writeDouble(nextCommProgress);
+		
+		//Bandit allocation
+		Checkpoint.writeInts(out, offspringQuota);
+		Checkpoint.writeDoubles(out, banditReward);
+		Checkpoint.writeDoubles(out, banditPulls);
+		Checkpoint.writeDoubles(out, lastAvgFitness);
+		Checkpoint.writeInts(out, ensembleEntries);
+		
+		//Inference costs
+		Checkpoint.writeCostTable(out, tableCost);
+		
+		Checkpoint.commit(out, file);
+	}
+	
+	/**
+	 * Restore the state of the algorithm from the checkpoint file.
+	 * The algorithm must be configured as when the checkpoint was written.
+	 * Out of deterministic mode, the resumed run continues with the generators of the algorithm, 
+	 *  but not those of the operators, so it is not the same as an uninterrupted run.
+	 * 
+	 * @throws Exception
+	 */
+	protected void restoreCheckpoint() throws Exception {
+		DataInputStream in = Checkpoint.open(checkpointFile);
+		
+		if(in.readInt() != numSubpop || in.readInt() != subpopSize || in.readBoolean() != isDeterministic()) {
+			in.close();
+			throw new IllegalStateException("Checkpoint does not match the configuration");
+		}
+		long fingerprint = in.readLong();
+		int nInstances = in.readInt();
+		boolean appended = false;
+		if(fingerprint != dataFingerprint) {
+			//With incremental update, the run may continue if instances were only appended to the data
+			appended = incrementalUpdate && nInstances < fullTrainData.getNumInstances() && Utils.fingerprint(fullTrainData, nInstances) == fingerprint;
+			if(!appended) {
+				in.close();
+				throw new IllegalStateException("Training data has changed since the checkpoint was written");
+			}
+		}
+		generation = in.readInt();
+		((MultipAbstractParallelEvaluator) evaluator).setNumberOfEvaluations(in.readInt());
+		
+		//Data samples and subpopulations
+		for(int p=0; p<numSubpop; p++) {
+			sampleIndexes[p] = Checkpoint.readInts(in);
+			trainData[p] = Utils.sampleData(fullTrainData, sampleIndexes[p]);
+		}
+		updateSampleKeys();
+		for(int p=0; p<numSubpop; p++) {
+			bset.add(Checkpoint.readIndividuals(in));
+		}
+		reindex();
+		
+		//Tables
+		Checkpoint.readFitnessTable(in, tableFitness);
+		Checkpoint.readClassifierTable(in, tableClassifiers, tableGenotypes);
+		
+		//Ensembles
+		bestEnsembleFitness = in.readDouble();
+		currentEnsembleFitness = in.readDouble();
+		List<IIndividual> inds = Checkpoint.readIndividuals(in);
+		if(inds.size() > 0) {
+			bestEnsemble = buildEnsemble(inds);
+		}
+		inds = Checkpoint.readIndividuals(in);
+		double pendingFitness = in.readDouble();
+		lastEnsembleEstimate = in.readDouble();
+		currentEnsembleEstimate = in.readDouble();
+		if(inds.size() > 0) {
+			pendingEnsemble = buildEnsemble(inds);
+			pendingEnsembleFitness = CompletableFuture.completedFuture(pendingFitness);
+		}
+		
+		//Random numbers generators
+		if(isDeterministic()) {
+			((StreamRandGen) randgen).setState(in.readLong());
+			for(int p=0; p<numSubpop; p++) {
+				((StreamRandGen) subpopRandgen[p]).setState(in.readLong());
+			}
+			if(in.readInt() != contextStreams.size()) {
+				in.close();
+				throw new IllegalStateException("Checkpoint does not match the configuration");
+			}
+			for(StreamRandGen stream : contextStreams) {
+				stream.setState(in.readLong());
+			}
+		}
+		else {
+			super.randgen = (IRandGen) Checkpoint.readObject(in);
+			randgen = (IRandGen) Checkpoint.readObject(in);
+			subpopRandgen = (IRandGen []) Checkpoint.readObject(in);
+			System.out.println("Operators do not continue their random sequences; use deterministic mode to resume exactly.");
+		}
+		
+		//Termination and time
+		commsWithoutImprovement = in.readInt();
+		cacheHitGenerations = in.readInt();
+		lowDiversityGenerations = in.readInt();
+		double elapsed = in.readDouble();
+		startTime = currentTime() - (long)(elapsed * (cpuTimeBudget ? 1e9 : 1e3));
+		lastControlTime = elapsed;
+		generationTime = in.readDouble();
+		nextCommProgress = in.readDouble();
+		
+		//Bandit allocation
+		offspringQuota = Checkpoint.readInts(in);
+		banditReward = Checkpoint.readDoubles(in);
+		banditPulls = Checkpoint.readDoubles(in);
+		lastAvgFitness = Checkpoint.readDoubles(in);
+		ensembleEntries = Checkpoint.readInts(in);
+		
+		//Inference costs
+		Checkpoint.readCostTable(in, tableCost);
+		
+		in.close();
+		
+		if(appended) {
+			updateWithNewData(nInstances);
+		}
+	}
 }
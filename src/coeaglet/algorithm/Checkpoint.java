@@ -0,0 +1,386 @@
+package coeaglet.algorithm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import mulan.classifier.MultiLabelLearner;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.listind.MultipListGenotype;
+import net.sf.jclec.listind.MultipListIndividual;
+
+/**
+ * Utilities to write and read checkpoints of the algorithm.
+ * A checkpoint is a compressed binary file starting with a magic number and a version;
+ *  the rest of its content is written and read in the same order by the algorithm (see Alg).
+ * It is first written to a temporary file, and then moved to its place, so a crash while writing never leaves a broken checkpoint.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class Checkpoint {
+
+	/**
+	 * Magic number of checkpoint files
+	 */
+	static final int MAGIC = 0x43434b50;
+
+	/**
+	 * Version of the format
+	 */
+	static final int VERSION = 5;
+
+
+	/**
+	 * Create a checkpoint, writing its header
+	 *
+	 * @param file Checkpoint file
+	 * @return Output stream to write the content
+	 * @throws IOException
+	 */
+	public static DataOutputStream create(File file) throws IOException {
+		if(file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile(file)))));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		return out;
+	}
+
+	/**
+	 * Close the output stream of a checkpoint and replace the previous checkpoint (if any)
+	 *
+	 * @param out Output stream of the checkpoint
+	 * @param file Checkpoint file
+	 * @throws IOException
+	 */
+	public static void commit(DataOutputStream out, File file) throws IOException {
+		out.close();
+		Files.move(tmpFile(file).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Open a checkpoint, checking its header
+	 *
+	 * @param file Checkpoint file
+	 * @return Input stream to read the content
+	 * @throws IOException
+	 */
+	public static DataInputStream open(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+		if(in.readInt() != MAGIC) {
+			in.close();
+			throw new IOException(file + " is not a checkpoint");
+		}
+		int version = in.readInt();
+		if(version != VERSION) {
+			in.close();
+			throw new IOException("Unsupported version of checkpoint: " + version);
+		}
+
+		return in;
+	}
+
+	/**
+	 * Get the temporary file where a checkpoint is written
+	 *
+	 * @param file Checkpoint file
+	 * @return Temporary file
+	 */
+	static File tmpFile(File file) {
+		return new File(file.getPath() + ".tmp");
+	}
+
+	/**
+	 * Write a list of individuals: its size, and for each one, subpopulation, labels and fitness (-1 if not evaluated)
+	 *
+	 * @param out Output stream
+	 * @param inds List of individuals
+	 * @throws IOException
+	 */
+	public static void writeIndividuals(DataOutputStream out, List<? extends IIndividual> inds) throws IOException {
+		out.writeInt(inds.size());
+		for(IIndividual ind : inds) {
+			MultipListGenotype gen = ((MultipListIndividual) ind).getGenotype();
+			out.writeInt(gen.subpop);
+			out.writeShort(gen.genotype.size());
+			for(int l : gen.genotype) {
+				out.writeShort(l);
+			}
+			out.writeDouble((ind.getFitness() != null) ? ((SimpleValueFitness) ind.getFitness()).getValue() : -1);
+		}
+	}
+
+	/**
+	 * Read a list of individuals
+	 *
+	 * @param in Input stream
+	 * @return List of individuals
+	 * @throws IOException
+	 */
+	public static List<IIndividual> readIndividuals(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		List<IIndividual> inds = new ArrayList<IIndividual>(n);
+		for(int i=0; i<n; i++) {
+			int subpop = in.readInt();
+			int k = in.readUnsignedShort();
+			ArrayList<Integer> labels = new ArrayList<Integer>(k);
+			for(int j=0; j<k; j++) {
+				labels.add(in.readUnsignedShort());
+			}
+			MultipListIndividual ind = new MultipListIndividual(MultipListGenotype.of(subpop, labels));
+			double fitness = in.readDouble();
+			if(fitness >= 0) {
+				ind.setFitness(new SimpleValueFitness(fitness));
+			}
+			inds.add(ind);
+		}
+
+		return inds;
+	}
+
+	/**
+	 * Write the table of fitness
+	 *
+	 * @param out Output stream
+	 * @param tableFitness Table with the fitness of each individual
+	 * @throws IOException
+	 */
+	public static void writeFitnessTable(DataOutputStream out, Hashtable<String, Double> tableFitness) throws IOException {
+		List<String> keys = new ArrayList<String>(tableFitness.keySet());
+		out.writeInt(keys.size());
+		for(String key : keys) {
+			out.writeUTF(key);
+			out.writeDouble(tableFitness.get(key));
+		}
+	}
+
+	/**
+	 * Read the table of fitness
+	 *
+	 * @param in Input stream
+	 * @param tableFitness Table where entries are added
+	 * @throws IOException
+	 */
+	public static void readFitnessTable(DataInputStream in, Hashtable<String, Double> tableFitness) throws IOException {
+		int n = in.readInt();
+		for(int i=0; i<n; i++) {
+			String key = in.readUTF();
+			tableFitness.put(key, in.readDouble());
+		}
+	}
+
+	/**
+	 * Write the table of inference costs
+	 *
+	 * @param out Output stream
+	 * @param tableCost Table with the cost of each individual
+	 * @throws IOException
+	 */
+	public static void writeCostTable(DataOutputStream out, Hashtable<String, double[]> tableCost) throws IOException {
+		List<String> keys = new ArrayList<String>(tableCost.keySet());
+		out.writeInt(keys.size());
+		for(String key : keys) {
+			out.writeUTF(key);
+			writeDoubles(out, tableCost.get(key));
+		}
+	}
+
+	/**
+	 * Read the table of inference costs
+	 *
+	 * @param in Input stream
+	 * @param tableCost Table where entries are added
+	 * @throws IOException
+	 */
+	public static void readCostTable(DataInputStream in, Hashtable<String, double[]> tableCost) throws IOException {
+		int n = in.readInt();
+		for(int i=0; i<n; i++) {
+			String key = in.readUTF();
+			tableCost.put(key, readDoubles(in));
+		}
+	}
+
+	/**
+	 * Write the table of classifiers, or only a mark if they are not stored
+	 *
+	 * @param out Output stream
+	 * @param tableClassifiers Table with the classifier of each individual (null to not store it)
+	 * @param tableGenotypes Table with the genotype of each individual with a classifier
+	 * @throws IOException
+	 */
+	public static void writeClassifierTable(DataOutputStream out, Hashtable<String, MultiLabelLearner> tableClassifiers, Hashtable<String, MultipListGenotype> tableGenotypes) throws IOException {
+		out.writeBoolean(tableClassifiers != null);
+		if(tableClassifiers != null) {
+			List<String> keys = new ArrayList<String>(tableClassifiers.keySet());
+			out.writeInt(keys.size());
+			for(String key : keys) {
+				out.writeUTF(key);
+				MultipListGenotype gen = tableGenotypes.get(key);
+				out.writeBoolean(gen != null);
+				if(gen != null) {
+					out.writeInt(gen.subpop);
+					writeInts(out, gen.genotype.stream().mapToInt(Integer::intValue).toArray());
+				}
+				writeObject(out, tableClassifiers.get(key));
+			}
+		}
+	}
+
+	/**
+	 * Read the table of classifiers (if it was stored)
+	 *
+	 * @param in Input stream
+	 * @param tableClassifiers Table where entries are added
+	 * @param tableGenotypes Table where the genotypes of the entries are added
+	 * @throws IOException
+	 */
+	public static void readClassifierTable(DataInputStream in, Hashtable<String, MultiLabelLearner> tableClassifiers, Hashtable<String, MultipListGenotype> tableGenotypes) throws IOException {
+		if(in.readBoolean()) {
+			int n = in.readInt();
+			for(int i=0; i<n; i++) {
+				String key = in.readUTF();
+				if(in.readBoolean()) {
+					int subpop = in.readInt();
+					ArrayList<Integer> labels = new ArrayList<Integer>();
+					for(int l : readInts(in)) {
+						labels.add(l);
+					}
+					tableGenotypes.put(key, MultipListGenotype.of(subpop, labels));
+				}
+				tableClassifiers.put(key, (MultiLabelLearner) readObject(in));
+			}
+		}
+	}
+
+	/**
+	 * Write an array of integers (null is allowed)
+	 *
+	 * @param out Output stream
+	 * @param array Array
+	 * @throws IOException
+	 */
+	public static void writeInts(DataOutputStream out, int [] array) throws IOException {
+		out.writeInt((array != null) ? array.length : -1);
+		if(array != null) {
+			for(int v : array) {
+				out.writeInt(v);
+			}
+		}
+	}
+
+	/**
+	 * Read an array of integers
+	 *
+	 * @param in Input stream
+	 * @return Array (or null)
+	 * @throws IOException
+	 */
+	public static int[] readInts(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if(n < 0) {
+			return null;
+		}
+		int [] array = new int[n];
+		for(int i=0; i<n; i++) {
+			array[i] = in.readInt();
+		}
+
+		return array;
+	}
+
+	/**
+	 * Write an array of doubles (null is allowed)
+	 *
+	 * @param out Output stream
+	 * @param array Array
+	 * @throws IOException
+	 */
+	public static void writeDoubles(DataOutputStream out, double [] array) throws IOException {
+		out.writeInt((array != null) ? array.length : -1);
+		if(array != null) {
+			for(double v : array) {
+				out.writeDouble(v);
+			}
+		}
+	}
+
+	/**
+	 * Read an array of doubles
+	 *
+	 * @param in Input stream
+	 * @return Array (or null)
+	 * @throws IOException
+	 */
+	public static double[] readDoubles(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if(n < 0) {
+			return null;
+		}
+		double [] array = new double[n];
+		for(int i=0; i<n; i++) {
+			array[i] = in.readDouble();
+		}
+
+		return array;
+	}
+
+	/**
+	 * Write a serializable object (e.g., a classifier or a random numbers generator) as its length and bytes
+	 *
+	 * @param out Output stream
+	 * @param object Object
+	 * @throws IOException
+	 */
+	public static void writeObject(DataOutputStream out, Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(object);
+		oos.close();
+
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+	/**
+	 * Read an object written with writeObject
+	 *
+	 * @param in Input stream
+	 * @return Object
+	 * @throws IOException
+	 */
+	public static Object readObject(DataInputStream in) throws IOException {
+		byte [] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return ois.readObject();
+		}
+		catch (ClassNotFoundException e) {
+			throw new IOException("Unknown class in checkpoint", e);
+		}
+		finally {
+			ois.close();
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package coeaglet.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mulan.classifier.MultiLabelLearner;
+import mulan.classifier.transformation.LabelPowerset2;
+import mulan.data.MultiLabelInstances;
+import mulan.evaluation.measure.InformationRetrievalMeasures;
+import net.sf.jclec.listind.MultipListIndividual;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Evaluator of ensembles that only predicts the members that changed since the last evaluated ensemble.
+ * It keeps the sum of votes for each instance and label of the last ensemble, and the predictions of recent members;
+ *  the votes of a new ensemble are obtained by subtracting removed members and adding new ones,
+ *  so the cost of predictions is proportional to the symmetric difference of both ensembles.
+ * Ensembles with the same multiset of members return the fitness computed before.
+ * The fitness is the same example-based F-measure given by EnsembleEval.
+ *
+ * Models of the members must not change while the evaluator is used (e.g., after new training data, a new one is needed).
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class DeltaEnsembleEval {
+
+	/**
+	 * Predictions of a member over all instances
+	 */
+	static class MemberPredictions {
+
+		/**
+		 * Labels of the member
+		 */
+		final List<Integer> labels;
+
+		/**
+		 * Predictions for each instance and label of the member, in [i*k + l]
+		 */
+		final boolean [] predictions;
+
+		/**
+		 * Constructor
+		 *
+		 * @param labels Labels of the member
+		 * @param predictions Predictions of the member
+		 */
+		MemberPredictions(List<Integer> labels, boolean [] predictions) {
+			this.labels = labels;
+			this.predictions = predictions;
+		}
+	}
+
+	/**
+	 * Number of ensembles whose fitness is kept
+	 */
+	static final int FITNESS_CACHE_SIZE = 64;
+
+	/**
+	 * Evaluation data
+	 */
+	MultiLabelInstances mlData;
+
+	/**
+	 * Instances to predict (with labels hidden); those with missing labels are skipped, as in Mulan evaluator
+	 */
+	List<Instance> instances = new ArrayList<Instance>();
+
+	/**
+	 * True labels of each instance to predict
+	 */
+	List<boolean[]> truth = new ArrayList<boolean[]>();
+
+	/**
+	 * Number of labels
+	 */
+	int numLabels;
+
+	/**
+	 * Sum of votes of the last ensemble for each instance and label, in [i*numLabels + j]
+	 */
+	int [] sumVotes;
+
+	/**
+	 * Number of members of the last ensemble that predict each label
+	 */
+	int [] nVotes;
+
+	/**
+	 * Number of copies of each member in the last ensemble
+	 */
+	Map<String, Integer> lastMembers = new HashMap<String, Integer>();
+
+	/**
+	 * Predictions of recent members
+	 */
+	LinkedHashMap<String, MemberPredictions> memberPredictions;
+
+	/**
+	 * Fitness of recent ensembles, given by their multiset of members
+	 */
+	LinkedHashMap<String, Double> fitnessCache = new LinkedHashMap<String, Double>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+			return size() > FITNESS_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Number of member predictions performed since last call to resetPredictedMembers
+	 */
+	AtomicInteger predictedMembers = new AtomicInteger(0);
+
+	/**
+	 * Keys of members
+	 */
+	SampleKeys sampleKeys;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param mlData Evaluation data
+	 * @param memberCapacity Max number of members whose predictions are kept
+	 * @param sampleKeys Keys of members (members with the same key share their predictions)
+	 */
+	public DeltaEnsembleEval(MultiLabelInstances mlData, int memberCapacity, SampleKeys sampleKeys)
+	{
+		this.mlData = mlData;
+		this.sampleKeys = sampleKeys;
+		this.numLabels = mlData.getNumLabels();
+
+		memberPredictions = new LinkedHashMap<String, MemberPredictions>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, MemberPredictions> eldest) {
+				return size() > memberCapacity;
+			}
+		};
+
+		Instances data = mlData.getDataSet();
+		int [] labelIndices = mlData.getLabelIndices();
+		for(int i=0; i<data.numInstances(); i++) {
+			Instance instance = data.instance(i);
+			if(mlData.hasMissingLabels(instance)) {
+				continue;
+			}
+
+			Instance labelsMissing = instance.copy();
+			labelsMissing.setDataset(instance.dataset());
+			boolean [] labels = new boolean[numLabels];
+			for(int j=0; j<numLabels; j++) {
+				labels[j] = instance.attribute(labelIndices[j]).value((int) instance.value(labelIndices[j])).equals("1");
+				labelsMissing.setMissing(labelIndices[j]);
+			}
+
+			instances.add(labelsMissing);
+			truth.add(labels);
+		}
+
+		sumVotes = new int[instances.size() * numLabels];
+		nVotes = new int[numLabels];
+	}
+
+	/**
+	 * Evaluate a built ensemble, and set its fitness
+	 *
+	 * @param ensemble Built ensemble
+	 * @return Fitness of the ensemble
+	 * @throws Exception
+	 */
+	public synchronized double evaluate(Ensemble ensemble) throws Exception
+	{
+		//Members of the new ensemble
+		Map<String, Integer> members = new HashMap<String, Integer>();
+		Map<String, Integer> position = new HashMap<String, Integer>();
+		List<String> keys = new ArrayList<String>(ensemble.nClassifiers);
+		for(int i=0; i<ensemble.nClassifiers; i++) {
+			String key = sampleKeys.key(ensemble.inds.get(i).getGenotype());
+			members.merge(key, 1, Integer::sum);
+			position.putIfAbsent(key, i);
+			keys.add(key);
+		}
+		Collections.sort(keys);
+		String multiset = String.join(";", keys);
+
+		Double cached = fitnessCache.get(multiset);
+		if(cached != null) {
+			ensemble.setFitness(cached);
+			return cached;
+		}
+
+		//Remove members that are not in the new ensemble (or have fewer copies)
+		for(Map.Entry<String, Integer> e : lastMembers.entrySet()) {
+			int diff = members.getOrDefault(e.getKey(), 0) - e.getValue();
+			if(diff < 0) {
+				MemberPredictions member = memberPredictions.get(e.getKey());
+				if(member == null) {
+					//Its predictions are not available anymore, so votes are computed again from scratch
+					clear();
+					break;
+				}
+				addVotes(member, diff);
+			}
+		}
+
+		//Add new members (or more copies)
+		for(Map.Entry<String, Integer> e : members.entrySet()) {
+			int diff = e.getValue() - lastMembers.getOrDefault(e.getKey(), 0);
+			if(diff > 0) {
+				MemberPredictions member = memberPredictions.get(e.getKey());
+				if(member == null) {
+					int i = position.get(e.getKey());
+					member = predict(ensemble.ensemble[i], ensemble.inds.get(i));
+					memberPredictions.put(e.getKey(), member);
+				}
+				addVotes(member, diff);
+			}
+		}
+		lastMembers = members;
+
+		double fitness = fMeasure();
+		fitnessCache.put(multiset, fitness);
+		ensemble.setFitness(fitness);
+
+		return fitness;
+	}
+
+	/**
+	 * Get the predictions of a member, predicting it only if they are not cached.
+	 * It may be called by several threads for different members.
+	 *
+	 * @param mll Classifier of the member
+	 * @param ind Individual of the member
+	 * @return Predictions of the member
+	 * @throws Exception
+	 */
+	public MemberPredictions getPredictions(MultiLabelLearner mll, MultipListIndividual ind) throws Exception
+	{
+		String key = sampleKeys.key(ind.getGenotype());
+		MemberPredictions member;
+		synchronized(this) {
+			member = memberPredictions.get(key);
+		}
+		
+		if(member == null) {
+			member = predict(mll, ind);
+			synchronized(this) {
+				memberPredictions.put(key, member);
+			}
+		}
+		
+		return member;
+	}
+
+	/**
+	 * Getter for the number of instances to predict
+	 *
+	 * @return Number of instances
+	 */
+	public int getNumInstances() {
+		return instances.size();
+	}
+
+	/**
+	 * Getter for the true labels of the i-th instance to predict
+	 *
+	 * @param i Index of the instance
+	 * @return True labels
+	 */
+	public boolean[] getTruth(int i) {
+		return truth.get(i);
+	}
+
+	/**
+	 * Predict all instances with a member, as in an evaluation of the ensemble (starting from the same seed).
+	 * A copy of the member is used, since its classifier is shared with the tables and other evaluations.
+	 *
+	 * @param mll Classifier of the member
+	 * @param ind Individual of the member
+	 * @return Predictions of the member
+	 * @throws Exception
+	 */
+	protected MemberPredictions predict(MultiLabelLearner mll, MultipListIndividual ind) throws Exception
+	{
+		List<Integer> labels = new ArrayList<Integer>(ind.getGenotype().genotype);
+		int k = labels.size();
+		LabelPowerset2 copy = (LabelPowerset2) mll.makeCopy();
+		copy.setSeed(1);
+
+		boolean [] predictions = new boolean[instances.size() * k];
+		for(int i=0; i<instances.size(); i++) {
+			boolean [] bipartition = copy.makePrediction(instances.get(i)).getBipartition();
+			System.arraycopy(bipartition, 0, predictions, i*k, k);
+		}
+		predictedMembers.incrementAndGet();
+
+		return new MemberPredictions(labels, predictions);
+	}
+
+	/**
+	 * Add (or subtract) the votes of a member
+	 *
+	 * @param member Predictions of the member
+	 * @param times Number of times it is added (negative to subtract)
+	 */
+	protected void addVotes(MemberPredictions member, int times)
+	{
+		boolean [] predictions = member.predictions;
+		int k = member.labels.size();
+		for(int l=0; l<k; l++) {
+			int j = member.labels.get(l);
+			nVotes[j] += times;
+			for(int i=0; i<instances.size(); i++) {
+				if(predictions[i*k + l]) {
+					sumVotes[i*numLabels + j] += times;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove all votes; next ensemble is evaluated from scratch
+	 */
+	protected void clear()
+	{
+		Arrays.fill(sumVotes, 0);
+		Arrays.fill(nVotes, 0);
+		lastMembers = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Example-based F-measure of the current votes, combined by majority voting as in the Ensemble
+	 *
+	 * @return F-measure
+	 */
+	protected double fMeasure()
+	{
+		double sum = 0;
+		for(int i=0; i<instances.size(); i++) {
+			boolean [] labels = truth.get(i);
+			double tp = 0, fp = 0, fn = 0;
+			for(int j=0; j<numLabels; j++) {
+				boolean predicted = ((sumVotes[i*numLabels + j]*1.0) / nVotes[j]) >= 0.5;
+				if(predicted && labels[j]) {
+					tp++;
+				}
+				else if(predicted) {
+					fp++;
+				}
+				else if(labels[j]) {
+					fn++;
+				}
+			}
+			sum += InformationRetrievalMeasures.fMeasure(tp, fp, fn, 1);
+		}
+
+		return sum / instances.size();
+	}
+
+	/**
+	 * Get the number of members predicted since last call, and reset it
+	 *
+	 * @return Number of members predicted
+	 */
+	public int resetPredictedMembers() {
+		return predictedMembers.getAndSet(0);
+	}
+}
@@ -52,6 +52,11 @@ public class Ensemble extends MultiLabelMetaLearner {
 	 */
 	Hashtable<String, MultiLabelLearner> tableClassifiers;
 	
+	/**
+	 * Keys of members in the table of classifiers
+	 */
+	SampleKeys sampleKeys = new SampleKeys();
+	
 	/**
 	 * Fitness of the ensemble
 	 */
@@ -98,6 +103,26 @@ public class Ensemble extends MultiLabelMetaLearner {
 		this.tableClassifiers = tableClassifiers;
 	}
 	
+	/**
+	 * Setter for tableClassifiers, with the keys of members in the table
+	 * 
+	 * @param tableClassifiers Table storing all classifiers built so far
+	 * @param sampleKeys Keys of members in the table
+	 */
+	public void setTableClassifiers(Hashtable<String, MultiLabelLearner> tableClassifiers, SampleKeys sampleKeys) {
+		this.tableClassifiers = tableClassifiers;
+		this.sampleKeys = sampleKeys;
+	}
+	
+	/**
+	 * Getter for the individuals of the ensemble
+	 * 
+	 * @return Individuals that compose the ensemble
+	 */
+	public List<MultipListIndividual> getInds() {
+		return inds;
+	}
+	
 	/**
 	 * Reset seed for each member
 	 */
@@ -107,6 +132,33 @@ public class Ensemble extends MultiLabelMetaLearner {
 		}
 	}
 	
+	/**
+	 * Copy of the (built) ensemble with its own copies of the classifiers, 
+	 *  and a table including only them, so it can be used and pruned apart from the evolution
+	 * 
+	 * @return Copy of the ensemble
+	 * @throws Exception
+	 */
+	public Ensemble detachedCopy() throws Exception {
+		//The table of all classifiers is not copied
+		Hashtable<String, MultiLabelLearner> table = tableClassifiers;
+		tableClassifiers = null;
+		Ensemble copy;
+		try {
+			copy = (Ensemble) makeCopy();
+		}
+		finally {
+			tableClassifiers = table;
+		}
+		
+		copy.tableClassifiers = new Hashtable<String, MultiLabelLearner>();
+		for(int i=0; i<copy.nClassifiers; i++) {
+			copy.tableClassifiers.put(sampleKeys.key(copy.inds.get(i).getGenotype()), copy.ensemble[i]);
+		}
+		
+		return copy;
+	}
+	
 	/**
 	 * Setter for fitness
 	 * 
@@ -128,7 +180,7 @@ public class Ensemble extends MultiLabelMetaLearner {
 		//Ensemble members should be already in the table
 		ensemble = new MultiLabelLearner[nClassifiers];
 		for(int i=0; i<nClassifiers; i++) {
-			ensemble[i] = tableClassifiers.get(((MultipListIndividual)inds.get(i)).getGenotype().toString());
+			ensemble[i] = tableClassifiers.get(sampleKeys.key(((MultipListIndividual)inds.get(i)).getGenotype()));
 		}
 		
 	}
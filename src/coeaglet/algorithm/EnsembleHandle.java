@@ -0,0 +1,106 @@
+package coeaglet.algorithm;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import mulan.classifier.MultiLabelOutput;
+import weka.core.Instance;
+
+/**
+ * In-process handle to the last ensemble published by the algorithm in service mode.
+ * Publishing a new ensemble only swaps a reference, so it never blocks predictions:
+ *  predictions in flight finish with the ensemble they started with, and next ones use the new one.
+ * Published ensembles are private copies, so they do not share classifiers with the evolution.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class EnsembleHandle {
+
+	/**
+	 * Published ensemble along with its version
+	 */
+	static class Published {
+
+		/**
+		 * Version of the ensemble
+		 */
+		final int version;
+
+		/**
+		 * Ensemble
+		 */
+		final Ensemble ensemble;
+
+		/**
+		 * Constructor
+		 *
+		 * @param version Version
+		 * @param ensemble Ensemble
+		 */
+		Published(int version, Ensemble ensemble) {
+			this.version = version;
+			this.ensemble = ensemble;
+		}
+	}
+
+	/**
+	 * Current ensemble (null until the first one is published)
+	 */
+	final AtomicReference<Published> current = new AtomicReference<Published>();
+
+
+	/**
+	 * Publish a new version of the ensemble
+	 *
+	 * @param version Version
+	 * @param ensemble Ensemble
+	 */
+	void publish(int version, Ensemble ensemble) {
+		current.set(new Published(version, ensemble));
+	}
+
+	/**
+	 * Check if any ensemble was published
+	 *
+	 * @return True if an ensemble is available
+	 */
+	public boolean isAvailable() {
+		return current.get() != null;
+	}
+
+	/**
+	 * Getter for the version of the current ensemble
+	 *
+	 * @return Version (0 if none was published)
+	 */
+	public int getVersion() {
+		Published p = current.get();
+		return (p != null) ? p.version : 0;
+	}
+
+	/**
+	 * Getter for the current ensemble
+	 *
+	 * @return Ensemble (null if none was published)
+	 */
+	public Ensemble getEnsemble() {
+		Published p = current.get();
+		return (p != null) ? p.ensemble : null;
+	}
+
+	/**
+	 * Predict an instance with the current ensemble
+	 *
+	 * @param instance Instance
+	 * @return Prediction
+	 * @throws Exception
+	 */
+	public MultiLabelOutput predict(Instance instance) throws Exception {
+		Published p = current.get();
+		if(p == null) {
+			throw new IllegalStateException("No ensemble has been published yet");
+		}
+
+		return p.ensemble.makePrediction(instance);
+	}
+}
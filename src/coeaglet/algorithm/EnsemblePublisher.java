@@ -0,0 +1,218 @@
+package coeaglet.algorithm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import mulan.data.MultiLabelInstances;
+
+/**
+ * Publisher of the best ensemble in service mode.
+ * Each improved ensemble is (optionally) pruned and published as a new version:
+ *  it is written to the model directory as ensemble-v[version].model, and the LATEST file is updated to point to it;
+ *  both files are written to a temporary file first and then moved, so readers never see partial files.
+ * Then, it is swapped behind the in-process handle.
+ * Publication runs in its own thread, in order of versions, so evolution does not wait for it.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class EnsemblePublisher {
+
+	/**
+	 * Directory where ensembles are published
+	 */
+	File modelDir;
+
+	/**
+	 * Data to prune ensembles (null to not prune them)
+	 */
+	MultiLabelInstances pruneData;
+
+	/**
+	 * In-process handle to the last ensemble
+	 */
+	EnsembleHandle handle = new EnsembleHandle();
+
+	/**
+	 * Last version given to an ensemble
+	 */
+	int lastVersion = 0;
+
+	/**
+	 * Thread publishing the ensembles
+	 */
+	ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "ensemble-publisher");
+		t.setDaemon(true);
+		return t;
+	});
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param modelDir Directory where ensembles are published
+	 * @param pruneData Data to prune ensembles (null to not prune them)
+	 */
+	public EnsemblePublisher(File modelDir, MultiLabelInstances pruneData)
+	{
+		this.modelDir = modelDir;
+		this.pruneData = pruneData;
+		modelDir.mkdirs();
+
+		//Continue with versions of previous runs in the same directory
+		File latest = new File(modelDir, "LATEST");
+		if(latest.exists()) {
+			try {
+				lastVersion = Integer.parseInt(Files.readAllLines(latest.toPath(), StandardCharsets.UTF_8).get(0).trim());
+			}
+			catch (IOException | RuntimeException e) {
+				System.out.println("Unable to read last version in " + latest + "; versions start again.");
+			}
+		}
+	}
+
+	/**
+	 * Getter for the in-process handle
+	 *
+	 * @return Handle
+	 */
+	public EnsembleHandle getHandle() {
+		return handle;
+	}
+
+	/**
+	 * Set the data to prune next ensembles (e.g., when new training instances arrive).
+	 * It is ignored if ensembles are not pruned.
+	 *
+	 * @param pruneData Data to prune ensembles
+	 */
+	public void setPruneData(MultiLabelInstances pruneData) {
+		if(this.pruneData != null) {
+			this.pruneData = pruneData;
+		}
+	}
+
+	/**
+	 * Publish a new version of the ensemble in background.
+	 * The ensemble must be a detached copy (see Ensemble.detachedCopy) with its fitness set; 
+	 *  it should not be used by the caller anymore.
+	 *
+	 * @param ensemble Ensemble
+	 * @param generation Generation in which it was obtained
+	 * @return Version of the ensemble
+	 */
+	public int publish(Ensemble ensemble, int generation)
+	{
+		int version = ++lastVersion;
+		executor.execute(() -> {
+			try {
+				doPublish(ensemble, version, generation);
+			}
+			catch (IOException e) {
+				//Evolution continues; next improvement is published as usual
+				System.out.println("Error publishing ensemble version " + version + ": " + e.getMessage());
+			}
+		});
+
+		return version;
+	}
+
+	/**
+	 * Prune, write and swap an ensemble
+	 *
+	 * @param ensemble Ensemble
+	 * @param version Version
+	 * @param generation Generation in which it was obtained
+	 * @throws IOException
+	 */
+	protected void doPublish(Ensemble ensemble, int version, int generation) throws IOException
+	{
+		if(pruneData != null) {
+			ensemble.prune(pruneData);
+		}
+
+		//The table only includes the members, which are already in the model
+		ensemble.setTableClassifiers(null);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeObject(ensemble);
+		oos.close();
+
+		String name = "ensemble-v" + version + ".model";
+		writeAtomically(new File(modelDir, name), bytes.toByteArray());
+		String latest = version + System.lineSeparator()
+				+ name + System.lineSeparator()
+				+ "fitness=" + ensemble.fitness + System.lineSeparator()
+				+ "generation=" + generation + System.lineSeparator()
+				+ "members=" + ensemble.getInds().size() + System.lineSeparator();
+		writeAtomically(new File(modelDir, "LATEST"), latest.getBytes(StandardCharsets.UTF_8));
+
+		//The ensemble is not modified anymore, so it can be shared by all predictions
+		handle.publish(version, ensemble);
+
+		System.out.println("Published ensemble version " + version + " (fitness " + ensemble.fitness + ")");
+	}
+
+	/**
+	 * Read the last ensemble published in a model directory (e.g., to serve it from another process)
+	 *
+	 * @param modelDir Directory where ensembles are published
+	 * @return Last published ensemble
+	 * @throws IOException
+	 */
+	public static Ensemble readLatest(File modelDir) throws IOException
+	{
+		List<String> latest = Files.readAllLines(new File(modelDir, "LATEST").toPath(), StandardCharsets.UTF_8);
+		ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(new File(modelDir, latest.get(1).trim()).toPath()));
+		try {
+			return (Ensemble) ois.readObject();
+		}
+		catch (ClassNotFoundException e) {
+			throw new IOException("Invalid ensemble in " + modelDir, e);
+		}
+		finally {
+			ois.close();
+		}
+	}
+
+	/**
+	 * Write a file through a temporary file, so it is replaced at once
+	 *
+	 * @param file File
+	 * @param content Content
+	 * @throws IOException
+	 */
+	protected static void writeAtomically(File file, byte [] content) throws IOException
+	{
+		File tmp = new File(file.getPath() + ".tmp");
+		Files.write(tmp.toPath(), content);
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Wait for pending publications and stop the publisher
+	 *
+	 * @param seconds Max time to wait
+	 */
+	public void shutdown(int seconds)
+	{
+		executor.shutdown();
+		try {
+			executor.awaitTermination(seconds, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
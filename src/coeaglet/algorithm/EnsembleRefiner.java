@@ -0,0 +1,495 @@
+package coeaglet.algorithm;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import mulan.classifier.MultiLabelLearner;
+import mulan.evaluation.measure.InformationRetrievalMeasures;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.listind.MultipListIndividual;
+
+/**
+ * Local search over the members of an ensemble, given the predictions of the members and candidates over the evaluation data.
+ * Moves remove a member, add a candidate, or swap a member by a candidate.
+ * Each move is scored by updating only the votes of the labels of the members involved, and the counts of
+ *  true positives, false positives and false negatives of each instance, so nothing is built or predicted again.
+ * At each iteration, all moves are scored in parallel and the best one is applied if it improves the fitness;
+ *  the search finishes when no move improves, after a max number of iterations, or when the time budget is over.
+ * The fitness is the example-based F-measure of the ensemble, as in DeltaEnsembleEval.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class EnsembleRefiner {
+
+	/**
+	 * Evaluator giving the instances and the predictions of the members
+	 */
+	DeltaEnsembleEval eval;
+
+	/**
+	 * Table with the classifiers of members and candidates
+	 */
+	Hashtable<String, MultiLabelLearner> tableClassifiers;
+
+	/**
+	 * Max number of members of the ensemble
+	 */
+	int maxSize;
+
+	/**
+	 * Number of threads
+	 */
+	int numThreads;
+
+	/**
+	 * Number of instances
+	 */
+	int n;
+
+	/**
+	 * Number of labels
+	 */
+	int numLabels;
+
+	/**
+	 * Individuals that may be in the ensemble: initial members followed by candidates
+	 */
+	List<MultipListIndividual> pool = new ArrayList<MultipListIndividual>();
+
+	/**
+	 * Predictions of each individual of the pool
+	 */
+	List<DeltaEnsembleEval.MemberPredictions> predictions = new ArrayList<DeltaEnsembleEval.MemberPredictions>();
+
+	/**
+	 * Indicates if each individual of the pool is currently in the ensemble
+	 */
+	boolean [] inEnsemble;
+
+	/**
+	 * Current size of the ensemble
+	 */
+	int size;
+
+	/**
+	 * Sum of votes of the ensemble for each instance and label, in [i*numLabels + j]
+	 */
+	int [] sumVotes;
+
+	/**
+	 * Number of members that predict each label
+	 */
+	int [] nVotes;
+
+	/**
+	 * Prediction of the ensemble for each instance and label, in [i*numLabels + j]
+	 */
+	boolean [] predicted;
+
+	/**
+	 * True positives, false positives and false negatives of each instance
+	 */
+	int [] tp, fp, fn;
+
+	/**
+	 * Fitness of the current ensemble
+	 */
+	double fitness;
+
+	/**
+	 * Number of moves applied
+	 */
+	int nMoves = 0;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param eval Evaluator giving the instances and the predictions of the members
+	 * @param tableClassifiers Table with the classifiers of members and candidates
+	 * @param maxSize Max number of members of the ensemble
+	 * @param numThreads Number of threads
+	 */
+	public EnsembleRefiner(DeltaEnsembleEval eval, Hashtable<String, MultiLabelLearner> tableClassifiers, int maxSize, int numThreads)
+	{
+		this.eval = eval;
+		this.tableClassifiers = tableClassifiers;
+		this.maxSize = maxSize;
+		this.numThreads = numThreads;
+		this.n = eval.getNumInstances();
+		this.numLabels = eval.numLabels;
+	}
+
+	/**
+	 * Refine an ensemble
+	 *
+	 * @param members Members of the ensemble
+	 * @param candidates Candidates to enter the ensemble, in order of preference (not including the members)
+	 * @param seconds Time budget
+	 * @param maxIterations Max number of moves
+	 * @return Members of the refined ensemble
+	 * @throws Exception
+	 */
+	public List<IIndividual> refine(List<MultipListIndividual> members, List<MultipListIndividual> candidates, double seconds, int maxIterations) throws Exception
+	{
+		long deadline = System.currentTimeMillis() + (long)(seconds * 1000);
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+		try {
+			//Predictions of members are always needed; those of candidates, only while there is time
+			List<MultipListIndividual> all = new ArrayList<MultipListIndividual>(members);
+			all.addAll(candidates);
+			List<CompletableFuture<DeltaEnsembleEval.MemberPredictions>> futures = new ArrayList<CompletableFuture<DeltaEnsembleEval.MemberPredictions>>();
+			for(int i=0; i<all.size(); i++) {
+				final MultipListIndividual ind = all.get(i);
+				final boolean member = i < members.size();
+				futures.add(CompletableFuture.supplyAsync(() -> {
+					if(!member && System.currentTimeMillis() > deadline) {
+						return null;
+					}
+					try {
+						return eval.getPredictions(tableClassifiers.get(eval.sampleKeys.key(ind.getGenotype())), ind);
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				}, executor));
+			}
+			for(int i=0; i<all.size(); i++) {
+				DeltaEnsembleEval.MemberPredictions p = futures.get(i).join();
+				if(p != null) {
+					pool.add(all.get(i));
+					predictions.add(p);
+				}
+			}
+
+			//Initial ensemble
+			inEnsemble = new boolean[pool.size()];
+			sumVotes = new int[n * numLabels];
+			nVotes = new int[numLabels];
+			predicted = new boolean[n * numLabels];
+			tp = new int[n];
+			fp = new int[n];
+			fn = new int[n];
+			for(int m=0; m<members.size(); m++) {
+				inEnsemble[m] = true;
+				DeltaEnsembleEval.MemberPredictions p = predictions.get(m);
+				for(int l=0; l<p.labels.size(); l++) {
+					int j = p.labels.get(l);
+					nVotes[j]++;
+					for(int i=0; i<n; i++) {
+						if(p.predictions[i*p.labels.size() + l]) {
+							sumVotes[i*numLabels + j]++;
+						}
+					}
+				}
+			}
+			size = members.size();
+			for(int i=0; i<n; i++) {
+				boolean [] truth = eval.getTruth(i);
+				for(int j=0; j<numLabels; j++) {
+					predicted[i*numLabels + j] = vote(sumVotes[i*numLabels + j], nVotes[j]);
+					count(i, predicted[i*numLabels + j], truth[j], 1);
+				}
+			}
+			fitness = fMeasure(tp, fp, fn);
+
+			//Best improvement search
+			for(int it=0; it<maxIterations && System.currentTimeMillis() < deadline; it++) {
+				int [] move = bestMove(executor);
+				if(move == null) {
+					break;
+				}
+				apply(move[0], move[1]);
+				nMoves++;
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		List<IIndividual> refined = new ArrayList<IIndividual>(size);
+		for(int i=0; i<pool.size(); i++) {
+			if(inEnsemble[i]) {
+				refined.add(pool.get(i));
+			}
+		}
+
+		return refined;
+	}
+
+	/**
+	 * Score all moves in parallel and get the best one that improves current fitness.
+	 * Ties are broken by the order of the moves, so the result does not depend on the threads.
+	 *
+	 * @param executor Executor
+	 * @return Move as {removed, added} (-1 if none), or null if no move improves
+	 */
+	protected int[] bestMove(ExecutorService executor)
+	{
+		//Moves, as pairs of removed and added individual
+		List<int[]> moves = new ArrayList<int[]>();
+		for(int r=-1; r<pool.size(); r++) {
+			if(r >= 0 && !inEnsemble[r]) {
+				continue;
+			}
+			for(int a=-1; a<pool.size(); a++) {
+				if(a >= 0 && inEnsemble[a]) {
+					continue;
+				}
+				if((r < 0 && a < 0) || (a < 0 && size <= 1) || (r < 0 && size >= maxSize)) {
+					continue;
+				}
+				moves.add(new int[] {r, a});
+			}
+		}
+
+		//Each thread scores a contiguous block of moves
+		int nBlocks = Math.min(numThreads, moves.size());
+		List<CompletableFuture<double[]>> futures = new ArrayList<CompletableFuture<double[]>>(nBlocks);
+		for(int b=0; b<nBlocks; b++) {
+			final int from = (int)((long) b * moves.size() / nBlocks);
+			final int to = (int)((long) (b+1) * moves.size() / nBlocks);
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				double bestScore = Double.NEGATIVE_INFINITY;
+				int best = -1;
+				for(int m=from; m<to; m++) {
+					double score = score(moves.get(m)[0], moves.get(m)[1]);
+					if(score > bestScore) {
+						bestScore = score;
+						best = m;
+					}
+				}
+				return new double[] {bestScore, best};
+			}, executor));
+		}
+
+		double bestScore = fitness;
+		int best = -1;
+		for(CompletableFuture<double[]> future : futures) {
+			double [] result = future.join();
+			if(result[0] > bestScore) {
+				bestScore = result[0];
+				best = (int) result[1];
+			}
+		}
+
+		return (best >= 0) ? moves.get(best) : null;
+	}
+
+	/**
+	 * Fitness of the ensemble after a move, without modifying the current state
+	 *
+	 * @param r Index of removed individual (-1 if none)
+	 * @param a Index of added individual (-1 if none)
+	 * @return Fitness after the move
+	 */
+	protected double score(int r, int a)
+	{
+		int [][] changes = changes(r, a);
+		int [] labels = changes[0];
+
+		int [] tpMove = tp.clone();
+		int [] fpMove = fp.clone();
+		int [] fnMove = fn.clone();
+		for(int i=0; i<n; i++) {
+			boolean [] truth = eval.getTruth(i);
+			for(int x=0; x<labels.length; x++) {
+				int j = labels[x];
+				boolean newVote = vote(sumVotes[i*numLabels + j] + voteChange(i, x, changes, r, a), nVotes[j] + changes[1][x]);
+				boolean oldVote = predicted[i*numLabels + j];
+				if(newVote != oldVote) {
+					countInto(tpMove, fpMove, fnMove, i, oldVote, truth[j], -1);
+					countInto(tpMove, fpMove, fnMove, i, newVote, truth[j], 1);
+				}
+			}
+		}
+
+		return fMeasure(tpMove, fpMove, fnMove);
+	}
+
+	/**
+	 * Apply a move to the current state
+	 *
+	 * @param r Index of removed individual (-1 if none)
+	 * @param a Index of added individual (-1 if none)
+	 */
+	protected void apply(int r, int a)
+	{
+		int [][] changes = changes(r, a);
+		int [] labels = changes[0];
+
+		for(int i=0; i<n; i++) {
+			boolean [] truth = eval.getTruth(i);
+			for(int x=0; x<labels.length; x++) {
+				int j = labels[x];
+				sumVotes[i*numLabels + j] += voteChange(i, x, changes, r, a);
+				boolean newVote = vote(sumVotes[i*numLabels + j], nVotes[j] + changes[1][x]);
+				if(newVote != predicted[i*numLabels + j]) {
+					count(i, predicted[i*numLabels + j], truth[j], -1);
+					count(i, newVote, truth[j], 1);
+					predicted[i*numLabels + j] = newVote;
+				}
+			}
+		}
+		for(int x=0; x<labels.length; x++) {
+			nVotes[labels[x]] += changes[1][x];
+		}
+
+		if(r >= 0) {
+			inEnsemble[r] = false;
+			size--;
+		}
+		if(a >= 0) {
+			inEnsemble[a] = true;
+			size++;
+		}
+		fitness = fMeasure(tp, fp, fn);
+	}
+
+	/**
+	 * Labels affected by a move, with the change in their number of votes and their position in the removed and added individuals
+	 *
+	 * @param r Index of removed individual (-1 if none)
+	 * @param a Index of added individual (-1 if none)
+	 * @return Arrays {labels, change of nVotes, position in removed (-1 if not), position in added (-1 if not)}
+	 */
+	protected int[][] changes(int r, int a)
+	{
+		List<Integer> rLabels = (r >= 0) ? predictions.get(r).labels : new ArrayList<Integer>();
+		List<Integer> aLabels = (a >= 0) ? predictions.get(a).labels : new ArrayList<Integer>();
+
+		List<Integer> labels = new ArrayList<Integer>(rLabels);
+		for(int j : aLabels) {
+			if(!labels.contains(j)) {
+				labels.add(j);
+			}
+		}
+
+		int [][] changes = new int[4][labels.size()];
+		for(int x=0; x<labels.size(); x++) {
+			int j = labels.get(x);
+			changes[0][x] = j;
+			changes[2][x] = rLabels.indexOf(j);
+			changes[3][x] = aLabels.indexOf(j);
+			changes[1][x] = ((changes[3][x] >= 0) ? 1 : 0) - ((changes[2][x] >= 0) ? 1 : 0);
+		}
+
+		return changes;
+	}
+
+	/**
+	 * Change of the votes of an instance for an affected label
+	 *
+	 * @param i Index of instance
+	 * @param x Index of the label in the affected labels
+	 * @param changes Affected labels (see changes)
+	 * @param r Index of removed individual (-1 if none)
+	 * @param a Index of added individual (-1 if none)
+	 * @return Change of votes
+	 */
+	protected int voteChange(int i, int x, int [][] changes, int r, int a)
+	{
+		int change = 0;
+		if(changes[2][x] >= 0) {
+			DeltaEnsembleEval.MemberPredictions p = predictions.get(r);
+			change -= p.predictions[i*p.labels.size() + changes[2][x]] ? 1 : 0;
+		}
+		if(changes[3][x] >= 0) {
+			DeltaEnsembleEval.MemberPredictions p = predictions.get(a);
+			change += p.predictions[i*p.labels.size() + changes[3][x]] ? 1 : 0;
+		}
+
+		return change;
+	}
+
+	/**
+	 * Prediction of a label by majority voting, as in the Ensemble
+	 *
+	 * @param sumVotes Positive votes
+	 * @param nVotes Number of votes
+	 * @return Prediction
+	 */
+	protected static boolean vote(int sumVotes, int nVotes)
+	{
+		return ((sumVotes*1.0) / nVotes) >= 0.5;
+	}
+
+	/**
+	 * Add (or remove) a prediction to the counts of current ensemble
+	 *
+	 * @param i Index of instance
+	 * @param prediction Prediction
+	 * @param truth True value
+	 * @param times 1 to add and -1 to remove
+	 */
+	protected void count(int i, boolean prediction, boolean truth, int times)
+	{
+		countInto(tp, fp, fn, i, prediction, truth, times);
+	}
+
+	/**
+	 * Add (or remove) a prediction to the given counts
+	 *
+	 * @param tp True positives of each instance
+	 * @param fp False positives of each instance
+	 * @param fn False negatives of each instance
+	 * @param i Index of instance
+	 * @param prediction Prediction
+	 * @param truth True value
+	 * @param times 1 to add and -1 to remove
+	 */
+	protected static void countInto(int [] tp, int [] fp, int [] fn, int i, boolean prediction, boolean truth, int times)
+	{
+		if(prediction && truth) {
+			tp[i] += times;
+		}
+		else if(prediction) {
+			fp[i] += times;
+		}
+		else if(truth) {
+			fn[i] += times;
+		}
+	}
+
+	/**
+	 * Example-based F-measure given the counts of each instance
+	 *
+	 * @param tp True positives of each instance
+	 * @param fp False positives of each instance
+	 * @param fn False negatives of each instance
+	 * @return F-measure
+	 */
+	protected double fMeasure(int [] tp, int [] fp, int [] fn)
+	{
+		double sum = 0;
+		for(int i=0; i<n; i++) {
+			sum += InformationRetrievalMeasures.fMeasure(tp[i], fp[i], fn[i], 1);
+		}
+
+		return sum / n;
+	}
+
+	/**
+	 * Getter for the number of moves applied
+	 *
+	 * @return Number of moves
+	 */
+	public int getNumMoves() {
+		return nMoves;
+	}
+
+	/**
+	 * Getter for the fitness of the refined ensemble
+	 *
+	 * @return Fitness
+	 */
+	public double getFitness() {
+		return fitness;
+	}
+}
@@ -6,13 +6,15 @@ import java.util.List;
 
 import coeaglet.utils.Utils;
 import net.sf.jclec.IIndividual;
-import net.sf.jclec.fitness.SimpleValueFitness;
-import net.sf.jclec.listind.MultipListIndividual;
+import net.sf.jclec.listind.MultipListStore;
 import net.sf.jclec.util.random.IRandGen;
 
 /**
  * Class implementing the selection of members for an ensemble given a population of individuals.
  * The size of the population should be greater or equal than the desired ensemble size.
+ * The selection runs over a structure-of-arrays store of the population, and only selected members are copied.
+ * If the cost of the individuals is given, individuals are selected by Pareto fronts on (fitness, cost):
+ *  each member is selected among the remaining individuals of the best front, with the same criterion.
  * 
  * @author Jose M. Moyano
  *
@@ -24,6 +26,11 @@ public class EnsembleSelection {
 	 */
 	List<IIndividual> population;
 	
+	/**
+	 * Labels, fitness and positions of the population
+	 */
+	MultipListStore store;
+	
 	/**
 	 * Selected ensemble
 	 */
@@ -59,6 +66,11 @@ public class EnsembleSelection {
 	 */
 	IRandGen randgen;
 	
+	/**
+	 * Inference cost of each individual of the population (null if only the fitness is considered)
+	 */
+	double [] cost = null;
+	
 	/**
 	 * Constructor
 	 * 
@@ -68,11 +80,21 @@ public class EnsembleSelection {
 	 * @param beta Beta value to give more importance to the diversity or to the fitness
 	 */
 	public EnsembleSelection(List<IIndividual> population, int desiredEnsembleSize, int nLabels, double beta) {
-		//Copy all individuals
-		this.population = new ArrayList<IIndividual>(population.size());
-		for(int i=0; i<population.size(); i++) {
-			this.population.add(population.get(i).copy());
-		}
+		this(population, new MultipListStore(0, population.size()), desiredEnsembleSize, nLabels, beta);
+	}
+	
+	/**
+	 * Constructor reusing a store, which is filled with the population (e.g., the store kept by the algorithm across generations)
+	 * 
+	 * @param population Population of possible members
+	 * @param store Store to fill with the population; it must not be used by other selections meanwhile
+	 * @param desiredEnsembleSize Size of the desired ensemble
+	 * @param nLabels Number of labels of the dataset
+	 * @param beta Beta value to give more importance to the diversity or to the fitness
+	 */
+	public EnsembleSelection(List<IIndividual> population, MultipListStore store, int desiredEnsembleSize, int nLabels, double beta) {
+		this.population = population;
+		this.store = store.fill(population);
 		
 		this.desiredEnsembleSize = desiredEnsembleSize;
 		this.nLabels = nLabels;
@@ -91,6 +113,15 @@ public class EnsembleSelection {
 		this.randgen = randgen;
 	}
 	
+	/**
+	 * Setter for the inference cost of the individuals; then, they are selected by Pareto fronts on (fitness, cost)
+	 * 
+	 * @param cost Cost of each individual, in the order of the population
+	 */
+	public void setCosts(double [] cost) {
+		this.cost = cost;
+	}
+	
 	/**
 	 * Getter for the ensemble
 	 * 
@@ -125,35 +156,38 @@ public class EnsembleSelection {
 		//Initialize
 		this.ensemble = new ArrayList<IIndividual>(desiredEnsembleSize);
 		this.labelVotes = new int[nLabels];
+		
+		//Individuals not selected yet, in order of the population
+		int [] remaining = new int[store.size()];
+		for(int i=0; i<remaining.length; i++) {
+			remaining[i] = i;
+		}
+		int nRemaining = remaining.length;
 
-		//Get best individual
+		//Pareto front of each individual (all in the same front if costs are not considered)
+		int [] front = (cost != null) ? paretoFronts() : new int[store.size()];
+		
+		//Get best individual (of the first front)
 		int best = -1;
 		double bestFit = -1;
-		IIndividual currInd = null;
-		for(int i=0; i<population.size(); i++) {
-			currInd = population.get(i);
-			
-			if(((SimpleValueFitness)currInd.getFitness()).getValue() > bestFit) {
-				bestFit = ((SimpleValueFitness)currInd.getFitness()).getValue();
+		for(int i=0; i<nRemaining; i++) {
+			if(front[i] == 0 && store.getFitness(i) > bestFit) {
+				bestFit = store.getFitness(i);
 				best = i;
 			}
 		}
 		
-		//Add best to ensemble
-		ensemble.add(population.get(best));
+		//Add best to ensemble and remove it from population
+		select(remaining[best]);
+		System.arraycopy(remaining, best+1, remaining, best, nRemaining-best-1);
+		nRemaining--;
 		
-		//Update votes
-		for(Integer g : ((MultipListIndividual)population.get(best)).getGenotype().genotype) {
-			labelVotes[g]++;
-		}
-		
-		//Remove best from population
-		population.remove(best);
+		int k = store.getK();
 		
 		//Until desired ensemble size is reached, select individuals based on fitness and diversity
 		while(ensemble.size() < desiredEnsembleSize) {
 			//Re-calculated fitnesses
-			double [] newFitness = new double[population.size()];
+			double [] newFitness = new double[nRemaining];
 
 			//Weights for distance
 			double [] weights = new double[nLabels];
@@ -170,31 +204,108 @@ public class EnsembleSelection {
 				weights[l] /= sumW;
 			}
 						
+			//Only individuals of the best remaining front are candidates
+			int bestFront = Integer.MAX_VALUE;
+			for(int i=0; i<nRemaining; i++) {
+				bestFront = Math.min(bestFront, front[remaining[i]]);
+			}
+			
 			//Calculate new fitness including distance of each member
 			double dist = -1;
-			for(int i=0; i<population.size(); i++) {
+			for(int i=0; i<nRemaining; i++) {
+				if(front[remaining[i]] != bestFront) {
+					newFitness[i] = Double.NEGATIVE_INFINITY;
+					continue;
+				}
+				
 				dist = 0;
-				for(Integer g : ((MultipListIndividual)population.get(i)).getGenotype().genotype) {
-					dist += weights[g];
+				for(int j=0; j<k; j++) {
+					dist += weights[store.getLabel(remaining[i], j)];
 				}
 				
 				//New fitness is: B*dist + (1-B)*fitness
-				newFitness[i] = (beta * dist) + ((1-beta) * ((SimpleValueFitness)population.get(i).getFitness()).getValue());
+				newFitness[i] = (beta * dist) + ((1-beta) * store.getFitness(remaining[i]));
 			}
 			
 			//Get index of individual with max newFitness
 			best = Utils.getMaxIndex(newFitness, randgen);
 			
-			//Add current best to ensemble
-			ensemble.add(population.get(best));
-			
-			//Update votes
-			for(Integer g : ((MultipListIndividual)population.get(best)).getGenotype().genotype) {
-				labelVotes[g]++;
+			//Add current best to ensemble and remove it from population
+			select(remaining[best]);
+			System.arraycopy(remaining, best+1, remaining, best, nRemaining-best-1);
+			nRemaining--;
+		}
+	}
+	
+	/**
+	 * Get the Pareto front of each individual on (fitness, cost), maximizing fitness and minimizing cost.
+	 * Front 0 includes non-dominated individuals, front 1 those only dominated by front 0, and so on.
+	 * With two objectives, individuals sorted by fitness can only be dominated by previous ones, so fronts are obtained in O(n log n).
+	 * 
+	 * @return Front of each individual of the store
+	 */
+	protected int[] paretoFronts() {
+		int n = store.size();
+		int [] front = new int[n];
+		
+		//Sorted by fitness (descending) and then by cost (ascending)
+		Integer [] order = new Integer[n];
+		for(int i=0; i<n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> {
+			int c = Double.compare(store.getFitness(j), store.getFitness(i));
+			return (c != 0) ? c : Double.compare(cost[i], cost[j]);
+		});
+		
+		//Last individual added to each front; it has the lowest cost of its front, so if any individual of the front dominates another one, it does too.
+		//	Fronts whose last individual dominates a given one are always the first ones, so its front is found by binary search.
+		int [] last = new int[n];
+		int nFronts = 0;
+		for(int i : order) {
+			int lo = 0, hi = nFronts;
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if(dominates(last[mid], i)) {
+					lo = mid + 1;
+				}
+				else {
+					hi = mid;
+				}
 			}
 			
-			//Remove current best from population
-			population.remove(best);
+			front[i] = lo;
+			last[lo] = i;
+			if(lo == nFronts) {
+				nFronts++;
+			}
+		}
+		
+		return front;
+	}
+	
+	/**
+	 * Check if an individual dominates another one on (fitness, cost)
+	 * 
+	 * @param i Index of first individual
+	 * @param j Index of second individual
+	 * @return True if i is not worse than j in both objectives and better in at least one
+	 */
+	protected boolean dominates(int i, int j) {
+		double fi = store.getFitness(i), fj = store.getFitness(j);
+		return fi >= fj && cost[i] <= cost[j] && (fi > fj || cost[i] < cost[j]);
+	}
+	
+	/**
+	 * Add an individual of the store to the ensemble, updating the votes of its labels
+	 * 
+	 * @param i Index of the individual in the store
+	 */
+	protected void select(int i) {
+		ensemble.add(population.get(store.getPosition(i)).copy());
+		
+		for(int j=0; j<store.getK(); j++) {
+			labelVotes[store.getLabel(i, j)]++;
 		}
 	}
 	
@@ -4,6 +4,13 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import coeaglet.utils.DatasetTransformation;
 import mulan.classifier.MultiLabelLearner;
@@ -12,6 +19,7 @@ import mulan.data.MultiLabelInstances;
 import mulan.evaluation.Evaluation;
 import mulan.evaluation.MulanLP2Evaluator;
 import mulan.evaluation.measure.ExampleBasedFMeasure;
+import mulan.evaluation.measure.InformationRetrievalMeasures;
 import mulan.evaluation.measure.Measure;
 import net.sf.jclec.IFitness;
 import net.sf.jclec.IIndividual;
@@ -20,6 +28,9 @@ import net.sf.jclec.fitness.ValueFitnessComparator;
 import net.sf.jclec.listind.MultipListGenotype;
 import net.sf.jclec.listind.MultipListIndividual;
 import weka.classifiers.trees.J48;
+import weka.classifiers.trees.J48Structure;
+import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  * Class implementing the evaluator for individuals (MultipListIndividuals).
@@ -65,11 +76,82 @@ public class Eval extends MultipAbstractParallelEvaluator {
 	 */
 	Hashtable<String, MultiLabelLearner> tableClassifiers;
 	
+	/**
+	 * Archive with the genotype of each member in the table of classifiers (null if not kept)
+	 */
+	Hashtable<String, MultipListGenotype> tableGenotypes = null;
+	
+	/**
+	 * Table including the inference cost of all individuals (null if costs are not measured)
+	 */
+	Hashtable<String, double[]> tableCost = null;
+	
+	/**
+	 * Keys of members in the tables
+	 */
+	SampleKeys sampleKeys = new SampleKeys();
+	
 	/**
 	 * MultiLabelLearner
 	 */
 	MultiLabelLearner baseLearner;
 	
+	/**
+	 * Speculative evaluator (null if speculation is not used)
+	 */
+	SpeculativeEvaluator speculator = null;
+	
+	/**
+	 * Indicates if results are staged and committed in canonical order (deterministic mode)
+	 */
+	boolean deterministic = false;
+	
+	/**
+	 * Evaluations in progress in deterministic mode, so each individual is built only once
+	 */
+	ConcurrentHashMap<String, CompletableFuture<Member>> inFlight = new ConcurrentHashMap<String, CompletableFuture<Member>>();
+	
+	/**
+	 * Members evaluated but not committed to the tables yet in deterministic mode
+	 */
+	ConcurrentHashMap<String, Member> staged = new ConcurrentHashMap<String, Member>();
+	
+	/**
+	 * Number of instances of each shard to evaluate members (0 if members are not evaluated by shards)
+	 */
+	int shardSize = 0;
+	
+	/**
+	 * Executor to predict shards of instances
+	 */
+	transient ExecutorService shardExecutor = null;
+	
+	/**
+	 * Number of individuals evaluated since last reset of the cache hit ratio
+	 */
+	AtomicInteger cacheLookups = new AtomicInteger(0);
+	
+	/**
+	 * Number of them whose fitness was already in the table
+	 */
+	AtomicInteger cacheHits = new AtomicInteger(0);
+	
+	
+	/**
+	 * Index of the number of nodes of the tree in the cost of a member
+	 */
+	public static final int COST_NODES = 0;
+	
+	/**
+	 * Index of the depth of the tree in the cost of a member
+	 */
+	public static final int COST_DEPTH = 1;
+	
+	/**
+	 * Index of the average time to predict an instance (ns) in the cost of a member
+	 */
+	public static final int COST_TIME = 2;
+	
 	
 	/**
 	 * Constructor
@@ -112,6 +194,15 @@ public class Eval extends MultipAbstractParallelEvaluator {
 		this.tableFitness = tableFitness;
 	}
 	
+	/**
+	 * Setter for tableCost; if it is not null, the inference cost of each member is measured in its evaluation
+	 * 
+	 * @param tableCost Table to store the inference cost of all individuals
+	 */
+	public void setTableCost(Hashtable<String, double[]> tableCost) {
+		this.tableCost = tableCost;
+	}
+	
 	/**
 	 * Setter for tableClassifiers
 	 * 
@@ -121,6 +212,33 @@ public class Eval extends MultipAbstractParallelEvaluator {
 		this.tableClassifiers = tableClassifiers;
 	}
 	
+	/**
+	 * Setter for the archive of genotypes
+	 * 
+	 * @param tableGenotypes Table storing the genotype of each member with a classifier
+	 */
+	public void setTableGenotypes(Hashtable<String, MultipListGenotype> tableGenotypes) {
+		this.tableGenotypes = tableGenotypes;
+	}
+	
+	/**
+	 * Setter for the keys of members in the tables
+	 * 
+	 * @param sampleKeys Keys of members
+	 */
+	public void setSampleKeys(SampleKeys sampleKeys) {
+		this.sampleKeys = sampleKeys;
+	}
+	
+	/**
+	 * Getter for the keys of members in the tables
+	 * 
+	 * @return Keys of members
+	 */
+	public SampleKeys getSampleKeys() {
+		return sampleKeys;
+	}
+	
 	/**
 	 * Setter for baseLearner
 	 * 
@@ -132,6 +250,66 @@ public class Eval extends MultipAbstractParallelEvaluator {
 	
 	
 	
+	/**
+	 * Setter for the speculative evaluator
+	 * 
+	 * @param speculator Speculative evaluator
+	 */
+	public void setSpeculator(SpeculativeEvaluator speculator) {
+		this.speculator = speculator;
+	}
+	
+	/**
+	 * Setter for deterministic mode.
+	 * In deterministic mode, results are not visible in the tables until they are committed,
+	 *  and ties in the predictions of members are solved independently of the order of predictions.
+	 * 
+	 * @param deterministic True to use deterministic mode
+	 */
+	public void setDeterministic(boolean deterministic) {
+		this.deterministic = deterministic;
+	}
+	
+	/**
+	 * Setter for shard size.
+	 * With shards, ties in the predictions of members are solved by instance (as in deterministic mode).
+	 * 
+	 * @param shardSize Number of instances of each shard (0 to not use shards)
+	 */
+	public void setShardSize(int shardSize) {
+		this.shardSize = shardSize;
+	}
+	
+	/**
+	 * Get the ratio of evaluated individuals whose fitness was already in the table, and reset it
+	 * 
+	 * @return Cache hit ratio since last reset (0 if no individual was evaluated)
+	 */
+	public double resetCacheHitRatio() {
+		int lookups = cacheLookups.getAndSet(0);
+		int hits = cacheHits.getAndSet(0);
+		
+		return (lookups > 0) ? (1.0 * hits) / lookups : 0;
+	}
+	
+	/**
+	 * Getter for tableFitness
+	 * 
+	 * @return Table storing fitness of each individual
+	 */
+	public Hashtable<String, Double> getTableFitness() {
+		return tableFitness;
+	}
+	
+	
+	@Override
+	protected void beforeEvaluation() {
+		//Evaluation threads are going to be used, so stop speculation
+		if(speculator != null) {
+			speculator.cancel();
+		}
+	}
+	
 	@Override
 	protected void evaluate(IIndividual ind) 
 	{
@@ -145,47 +323,50 @@ public class Eval extends MultipAbstractParallelEvaluator {
 		}
 		
 		//String key for tables
-		String s = gen.toString();
+		String s = sampleKeys.key(gen);
+		
+		//Member speculatively evaluated before
+		Member member = null;
+		if(speculator != null && !deterministic && !tableFitness.containsKey(s)) {
+			member = speculator.take(s);
+		}
 		
-		if(tableFitness.containsKey(s)) {
-			fitness = tableFitness.get(s);
+		cacheLookups.incrementAndGet();
+		//Looked up once, since members may be evicted meanwhile (service mode)
+		Double cached = tableFitness.get(s);
+		if(cached != null) {
+			cacheHits.incrementAndGet();
+			fitness = cached;
+		}
+		else if(deterministic) {
+			try {
+				fitness = stage(gen, s).fitness;
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		else if(member != null) {
+			//Move speculative result to the tables (its classifier is already a copy, as in the rest of cases)
+			fitness = member.fitness;
+			putCost(s, member);
+			tableFitness.put(s, fitness);
+			tableClassifiers.put(s, member.classifier);
+			putGenotype(s, gen);
+			member = null;
 		}
 		else {
 			try {
-				int subpop = gen.subpop;
-				//Get corresponding training data filtered with labels of genotype
-				DatasetTransformation dt = new DatasetTransformation();
-				MultiLabelInstances newData = dt.transformDataset(trainData[subpop], gen.genotype);
-	
-				//Build classifier
-				MultiLabelLearner mll = null;
-				mll = new LabelPowerset2(new J48());
-				((LabelPowerset2)mll).setSeed(1);
-				mll.build(newData);
-				
-				List<Measure> measures = new ArrayList<Measure>();
-				measures.add(new ExampleBasedFMeasure());			
-				MulanLP2Evaluator eval = new MulanLP2Evaluator();
-				Evaluation results;
-				
-				//Evaluate individual with same data or with validation
-				if(evalData == null) {
-					results = eval.evaluate(mll, newData, measures);
-				}
-				else {
-					MultiLabelInstances newVData =  dt.transformDataset(evalData, gen.genotype);
-					results = eval.evaluate(mll, newVData, measures);
-					newVData = null;
-				}
+				member = buildMember(gen);
 
 				//Get fitness and fill tables
-	     	  	fitness = results.getMeasures().get(0).getValue();
+	     	  	fitness = member.fitness;
+	     	  	putCost(s, member);
 	     	  	tableFitness.put(s, fitness);
-	     	  	tableClassifiers.put(s, mll.makeCopy());
+	     	  	tableClassifiers.put(s, member.classifier.makeCopy());
+	     	  	putGenotype(s, gen);
 	     	  	
-	     	  	dt = null;
-	     	  	newData = null;
-	     	  	mll = null;
+	     	  	member = null;
 			} catch (Exception e) {
 				e.printStackTrace();
 				System.exit(1);
@@ -196,5 +377,360 @@ public class Eval extends MultipAbstractParallelEvaluator {
 		ind.setFitness(new SimpleValueFitness(fitness));
 
 	}
+	
+	/**
+	 * Get the member of a given genotype, building it if it has not been built or staged before.
+	 * If other thread is building the same member, it waits for its result.
+	 * 
+	 * @param gen Genotype of the individual
+	 * @param s Key of the individual
+	 * @return Staged member
+	 * @throws Exception
+	 */
+	protected Member stage(MultipListGenotype gen, String s) throws Exception
+	{
+		Member member = staged.get(s);
+		if(member != null) {
+			return member;
+		}
+		
+		CompletableFuture<Member> future = new CompletableFuture<Member>();
+		CompletableFuture<Member> previous = inFlight.putIfAbsent(s, future);
+		if(previous != null) {
+			return previous.join();
+		}
+		
+		try {
+			//It may have been staged since last check
+			member = staged.get(s);
+			if(member == null && speculator != null) {
+				member = speculator.take(s);
+			}
+			if(member == null) {
+				member = buildMember(gen);
+				member = new Member(member.classifier.makeCopy(), member.fitness, member.cost);
+			}
+			
+			staged.put(s, member);
+			future.complete(member);
+			return member;
+		}
+		catch (Exception e) {
+			future.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			inFlight.remove(s);
+		}
+	}
+	
+	@Override
+	public void commit(List<IIndividual> inds) {
+		if(!deterministic) {
+			return;
+		}
+		
+		//Commit in the order of the list, so tables are filled in the same order whatever the number of threads
+		for(IIndividual ind : inds) {
+			String s = sampleKeys.key(((MultipListIndividual)ind).getGenotype());
+			Member member = staged.remove(s);
+			if(member != null && !tableFitness.containsKey(s)) {
+				putCost(s, member);
+				tableFitness.put(s, member.fitness);
+				tableClassifiers.put(s, member.classifier);
+				putGenotype(s, ((MultipListIndividual)ind).getGenotype());
+			}
+		}
+	}
+	
+	/**
+	 * Build the multi-label classifier of a given genotype and evaluate it.
+	 * Tables are not modified.
+	 * 
+	 * @param gen Genotype of the individual
+	 * @return Member with the built classifier and its fitness
+	 * @throws Exception
+	 */
+	protected Member buildMember(MultipListGenotype gen) throws Exception
+	{
+		return buildMember(gen, null);
+	}
+	
+	/**
+	 * Build the multi-label classifier of a given genotype and evaluate it, unless it is stopped after building it.
+	 * Tables are not modified.
+	 * 
+	 * @param gen Genotype of the individual
+	 * @param stop Checked after building the classifier; if true, it is not evaluated (null to never stop)
+	 * @return Member with the built classifier and its fitness, or null if it was stopped
+	 * @throws Exception
+	 */
+	protected Member buildMember(MultipListGenotype gen, BooleanSupplier stop) throws Exception
+	{
+		int subpop = gen.subpop;
+		//Get corresponding training data filtered with labels of genotype
+		DatasetTransformation dt = new DatasetTransformation();
+		MultiLabelInstances newData = dt.transformDataset(trainData[subpop], gen.genotype);
+
+		//Build classifier
+		MultiLabelLearner mll = null;
+		mll = new LabelPowerset2(new J48());
+		((LabelPowerset2)mll).setSeed(1);
+		//Ties cannot depend on the order of predictions if they are made by several threads (deterministic mode or shards);
+		//	then, the fitness is the same whether the instances are predicted in shards or not
+		((LabelPowerset2)mll).setInstanceSeededTies(deterministic || shardSize > 0);
+		mll.build(newData);
+		if(stop != null && stop.getAsBoolean()) {
+			return null;
+		}
+		
+		//Evaluation data: same data or validation
+		MultiLabelInstances newVData = newData;
+		if(evalData != null) {
+			newVData = dt.transformDataset(evalData, gen.genotype);
+		}
+		
+		double fitness;
+		long start = System.nanoTime();
+		if(shardSize > 0) {
+			fitness = shardedFMeasure(mll, newVData);
+		}
+		else {
+			List<Measure> measures = new ArrayList<Measure>();
+			measures.add(new ExampleBasedFMeasure());			
+			MulanLP2Evaluator eval = new MulanLP2Evaluator();
+			Evaluation results = eval.evaluate(mll, newVData, measures);
+			fitness = results.getMeasures().get(0).getValue();
+		}
+		
+		double [] cost = null;
+		if(tableCost != null) {
+			cost = memberCost(mll, (System.nanoTime() - start) / Math.max(1.0, newVData.getNumInstances()));
+		}
+		
+		dt = null;
+		newData = null;
+		newVData = null;
+		
+		return new Member(mll, fitness, cost);
+	}
+	
+	/**
+	 * Get the inference cost of a built member: number of nodes and depth of its tree, and average time to predict an instance.
+	 * Members whose data only have one labelset have no tree, so their cost is only given by the time.
+	 * 
+	 * @param mll Built classifier
+	 * @param predictionTime Average time to predict an instance in the evaluation (ns)
+	 * @return Cost of the member
+	 * @throws Exception
+	 */
+	protected double[] memberCost(MultiLabelLearner mll, double predictionTime) throws Exception
+	{
+		double [] cost = new double[3];
+		cost[COST_TIME] = predictionTime;
+		
+		if(!((LabelPowerset2) mll).isUnary()) {
+			J48 tree = (J48) ((LabelPowerset2) mll).getBaseClassifier();
+			cost[COST_NODES] = tree.measureTreeSize();
+			cost[COST_DEPTH] = J48Structure.depth(tree);
+		}
+		
+		return cost;
+	}
+	
+	/**
+	 * Store the cost of a member in the table (if costs are measured)
+	 * 
+	 * @param s Key of the individual
+	 * @param member Member
+	 */
+	protected void putCost(String s, Member member) {
+		if(tableCost != null && member.cost != null) {
+			tableCost.put(s, member.cost);
+		}
+	}
+	
+	/**
+	 * Store the genotype of a member in the archive (if it is kept)
+	 * 
+	 * @param s Key of the individual
+	 * @param gen Genotype of the individual
+	 */
+	protected void putGenotype(String s, MultipListGenotype gen) {
+		if(tableGenotypes != null) {
+			tableGenotypes.putIfAbsent(s, gen);
+		}
+	}
+	
+	/**
+	 * Compute the example-based F-measure of a classifier, splitting the instances in shards of fixed size.
+	 * If there are fewer evaluations pending than threads, shards are predicted in parallel; if not, in this thread.
+	 * Evaluations of a batch are counted as pending before any of them starts, so the first ones do not see idle threads.
+	 * Partial sums of each shard are merged in order, so the result does not depend on how shards were run.
+	 * 
+	 * @param mll Multi-label classifier
+	 * @param data Data to evaluate the classifier
+	 * @return Example-based F-measure
+	 * @throws Exception
+	 */
+	protected double shardedFMeasure(MultiLabelLearner mll, MultiLabelInstances data) throws Exception
+	{
+		int nShards = (data.getNumInstances() + shardSize - 1) / shardSize;
+		double [] sums = new double[nShards];
+		int [] counts = new int[nShards];
+		
+		if(nShards > 1 && pendingEvaluations.get() < numThreads) {
+			CompletableFuture<?> [] futures = new CompletableFuture<?>[nShards];
+			for(int s=0; s<nShards; s++) {
+				final int shard = s;
+				futures[s] = CompletableFuture.runAsync(() -> {
+					try {
+						predictShard(mll, data, shard, sums, counts);
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				}, getShardExecutor());
+			}
+			CompletableFuture.allOf(futures).join();
+		}
+		else {
+			for(int s=0; s<nShards; s++) {
+				predictShard(mll, data, s, sums, counts);
+			}
+		}
+		
+		double sum = 0;
+		int count = 0;
+		for(int s=0; s<nShards; s++) {
+			sum += sums[s];
+			count += counts[s];
+		}
+		
+		return sum / count;
+	}
+	
+	/**
+	 * Predict the instances of a shard and store the sum of their F-measure and the number of instances.
+	 * As in Mulan evaluator, instances with missing labels are skipped, and labels are hidden to the classifier.
+	 * 
+	 * @param mll Multi-label classifier
+	 * @param data Data to evaluate the classifier
+	 * @param shard Index of the shard
+	 * @param sums Sum of F-measure of each shard
+	 * @param counts Number of instances evaluated of each shard
+	 * @throws Exception
+	 */
+	protected void predictShard(MultiLabelLearner mll, MultiLabelInstances data, int shard, double [] sums, int [] counts) throws Exception
+	{
+		Instances instances = data.getDataSet();
+		int [] labelIndices = data.getLabelIndices();
+		int end = Math.min(data.getNumInstances(), (shard + 1) * shardSize);
+		
+		for(int i=shard*shardSize; i<end; i++) {
+			Instance instance = instances.instance(i);
+			if(data.hasMissingLabels(instance)) {
+				continue;
+			}
+			
+			Instance labelsMissing = instance.copy();
+			labelsMissing.setDataset(instance.dataset());
+			for(int l : labelIndices) {
+				labelsMissing.setMissing(l);
+			}
+			boolean [] bipartition = mll.makePrediction(labelsMissing).getBipartition();
+			
+			double tp = 0, fp = 0, fn = 0;
+			for(int j=0; j<labelIndices.length; j++) {
+				boolean truth = instance.attribute(labelIndices[j]).value((int) instance.value(labelIndices[j])).equals("1");
+				if(bipartition[j] && truth) {
+					tp++;
+				}
+				else if(bipartition[j]) {
+					fp++;
+				}
+				else if(truth) {
+					fn++;
+				}
+			}
+			
+			sums[shard] += InformationRetrievalMeasures.fMeasure(tp, fp, fn, 1);
+			counts[shard]++;
+		}
+	}
+	
+	/**
+	 * Get the executor to predict shards, creating it if needed
+	 * 
+	 * @return Executor
+	 */
+	protected synchronized ExecutorService getShardExecutor()
+	{
+		if(shardExecutor == null) {
+			shardExecutor = Executors.newFixedThreadPool(numThreads, r -> {
+				Thread t = new Thread(r, "prediction-shard");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		
+		return shardExecutor;
+	}
+	
+	@Override
+	public void shutdown()
+	{
+		super.shutdown();
+		if(shardExecutor != null) {
+			shardExecutor.shutdown();
+			shardExecutor = null;
+		}
+	}
+	
+	/**
+	 * Class storing a built member (classifier), its fitness and its inference cost
+	 * 
+	 * @author Jose M. Moyano
+	 *
+	 */
+	public static class Member
+	{
+		/**
+		 * Built classifier
+		 */
+		MultiLabelLearner classifier;
+		
+		/**
+		 * Fitness of the classifier
+		 */
+		double fitness;
+		
+		/**
+		 * Inference cost of the classifier (null if not measured)
+		 */
+		double [] cost;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param classifier Built classifier
+		 * @param fitness Fitness of the classifier
+		 */
+		public Member(MultiLabelLearner classifier, double fitness) {
+			this(classifier, fitness, null);
+		}
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param classifier Built classifier
+		 * @param fitness Fitness of the classifier
+		 * @param cost Inference cost of the classifier (null if not measured)
+		 */
+		public Member(MultiLabelLearner classifier, double fitness, double [] cost) {
+			this.classifier = classifier;
+			this.fitness = fitness;
+			this.cost = cost;
+		}
+	}
 
 }
@@ -196,6 +196,7 @@ public class Listener implements IAlgorithmListener, IConfigure {
 	@Override
 	public void algorithmFinished(AlgorithmEvent event) {
 		endTime = System.currentTimeMillis();
+		doFinalPopulationReport((Alg) event.getAlgorithm());
 		doDataReport((Alg) event.getAlgorithm());
 		doClassificationReport((Alg) event.getAlgorithm());
 		
@@ -242,9 +243,6 @@ public class Listener implements IAlgorithmListener, IConfigure {
 		{
 			int numSubpop = ((MultiPopulationAlgorithm)algorithm).getNumSubpop();
 			
-			// Population individuals
-			List<List<IIndividual>> inds = ((MultiPopulationAlgorithm) algorithm).getMultiInhabitants();
-			
 			String reportFilename = String.format("Iteration_%d.rep", generation);
 				
 			try {
@@ -279,18 +277,7 @@ public class Listener implements IAlgorithmListener, IConfigure {
 					e3.printStackTrace();
 				}
 					
-				StringBuffer buffer = new StringBuffer();
-					
-				// Prints individuals
-				for(int i=0; i<inds.get(0).size(); i++) {
-					for(int p=0; p<numSubpop; p++) {
-						List<IIndividual> currInds = ((Alg)algorithm).bettersSelector.select(inds.get(p), inds.get(p).size());
-						buffer.append((MultipListIndividual)currInds.get(i) + "; " + ((SimpleValueFitness)currInds.get(i).getFitness()).getValue() + "; "); 
-					}
-					buffer.append(System.getProperty("line.separator"));
-				}
-
-				reportWriter.append(buffer.toString());
+				reportWriter.append(populationReport((Alg)algorithm));
 				reportWriter.close();
 				
 				List<MultipListIndividual> bests = ((Alg)algorithm).bestIndividuals();
@@ -304,7 +291,9 @@ public class Listener implements IAlgorithmListener, IConfigure {
 					avgIndWriter[p].close();
 				}
 				
-				iterEnsembleWriter.append(((Alg)algorithm).getCurrentEnsembleFitness() + "; ");
+				//Ensembles rejected by their estimate are marked, since they were not evaluated on the full data
+				double estimate = ((Alg)algorithm).getCurrentEnsembleEstimate();
+				iterEnsembleWriter.append((Double.isNaN(estimate) ? "" + ((Alg)algorithm).getCurrentEnsembleFitness() : "~" + estimate) + "; ");
 				iterEnsembleWriter.close();
 			} 
 			catch (IOException e) {
@@ -313,6 +302,61 @@ public class Listener implements IAlgorithmListener, IConfigure {
 		}
 	}
 	
+	/**
+	 * Report of the individuals of all subpopulations and their fitness.
+	 * Each row includes one individual of each subpopulation, sorted by fitness.
+	 * 
+	 * @param algorithm Algorithm
+	 * @return Report
+	 */
+	protected String populationReport(Alg algorithm)
+	{
+		int numSubpop = algorithm.getNumSubpop();
+		
+		// Population individuals
+		List<List<IIndividual>> inds = algorithm.getMultiInhabitants();
+		
+		// Sort each subpopulation by fitness once
+		List<List<IIndividual>> sorted = new ArrayList<List<IIndividual>>(numSubpop);
+		for(int p=0; p<numSubpop; p++) {
+			sorted.add(algorithm.bettersSelector.select(inds.get(p), inds.get(p).size()));
+		}
+		
+		StringBuffer buffer = new StringBuffer();
+		
+		// Prints individuals
+		for(int i=0; i<inds.get(0).size(); i++) {
+			for(int p=0; p<numSubpop; p++) {
+				List<IIndividual> currInds = sorted.get(p);
+				buffer.append((MultipListIndividual)currInds.get(i) + "; " + ((SimpleValueFitness)currInds.get(i).getFitness()).getValue() + "; "); 
+			}
+			buffer.append(System.getProperty("line.separator"));
+		}
+		
+		return buffer.toString();
+	}
+	
+	/**
+	 * Report the final population if it was not reported in the last iteration,
+	 *  so the report directory always includes it (e.g., to warm-start another run)
+	 * 
+	 * @param algorithm Algorithm
+	 */
+	protected void doFinalPopulationReport(Alg algorithm)
+	{
+		int generation = algorithm.getGeneration();
+		if (generation % reportFrequency != 0) {
+			try {
+				FileWriter reportWriter = new FileWriter(new File(reportDirectory, String.format("Iteration_%d.rep", generation)));
+				reportWriter.append(populationReport(algorithm));
+				reportWriter.close();
+			}
+			catch (IOException e) {
+				throw new RuntimeException("Error writing report file");
+			}
+		}
+	}
+	
 	protected void closeReportFiles(Alg algorithm) {
 		try {
 			int numSubpop = algorithm.getNumSubpop();
@@ -491,6 +535,7 @@ public class Listener implements IAlgorithmListener, IConfigure {
 			file.write("\nNumber of attributes: " + (dataset.getDataSet().numAttributes() - dataset.getNumLabels()));
 			file.write("\nNumber of labels: " + dataset.getNumLabels());
 			file.write("\nRun Time (s): " + (((double) (endTime-initTime)) / 1000.0));
+			file.write("\nTermination: " + algorithm.getTerminationReason() + " at generation " + algorithm.getTerminationGeneration());
 //			file.write("\nEvaluation Time (s): " + (algorithm.getEvaluator().getEvaluationTime() / 1000.0));
 			file.write(System.getProperty("line.separator"));
 			
@@ -1,9 +1,12 @@
 package coeaglet.algorithm;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.jclec.IIndividual;
 import net.sf.jclec.base.AbstractEvaluator;
@@ -26,6 +29,26 @@ public abstract class MultipAbstractParallelEvaluator extends AbstractEvaluator
 
 	public long executionTime = 0;
 	
+	/**
+	 * Number of threads used to evaluate individuals
+	 */
+	protected int numThreads = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Number of evaluations submitted and not finished yet
+	 */
+	protected final AtomicInteger pendingEvaluations = new AtomicInteger(0);
+	
+	/**
+	 * Number of evaluations performed so far; it replaces numberOfEvaluations, as several threads may evaluate at the same time
+	 */
+	protected final AtomicInteger evaluations = new AtomicInteger(0);
+	
+	/**
+	 * Thread pool for asynchronous evaluations; it is created the first time it is needed
+	 */
+	protected transient ExecutorService asyncExecutor;
+	
 	/**
 	 * Empty constructor.
 	 */
@@ -53,14 +76,18 @@ public abstract class MultipAbstractParallelEvaluator extends AbstractEvaluator
 	{
 		long time = System.currentTimeMillis();
 		
-		ExecutorService threadExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		beforeEvaluation();
+		
+		ExecutorService threadExecutor = Executors.newFixedThreadPool(numThreads);
 		
+		//The whole batch is pending before the first evaluation starts
+		pendingEvaluations.addAndGet(countToEvaluate(inds));
 		for (IIndividual ind : inds)
 		{
 			if (ind.getFitness() == null)
 			{
 				threadExecutor.execute(new evaluationThread(ind));
-				numberOfEvaluations++;
+				evaluations.incrementAndGet();
 			}
 		}
 		
@@ -75,6 +102,8 @@ public abstract class MultipAbstractParallelEvaluator extends AbstractEvaluator
 		{
 			System.out.println("Threadpool prematurely terminated due to interruption in thread that created pool");
 		}
+		
+		commit(inds);
 
 		executionTime += System.currentTimeMillis() - time;
 	}
@@ -83,15 +112,21 @@ public abstract class MultipAbstractParallelEvaluator extends AbstractEvaluator
 	{
 		long time = System.currentTimeMillis();
 		
-		ExecutorService threadExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		beforeEvaluation();
 		
+		ExecutorService threadExecutor = Executors.newFixedThreadPool(numThreads);
+		
+		//The whole batch is pending before the first evaluation starts
+		for(List<IIndividual> subpop : bset) {
+			pendingEvaluations.addAndGet(countToEvaluate(subpop));
+		}
 		for(List<IIndividual> subpop : bset) {
 			for (IIndividual ind : subpop)
 			{
 				if (ind.getFitness() == null)
 				{
 					threadExecutor.execute(new evaluationThread(ind));
-					numberOfEvaluations++;
+					evaluations.incrementAndGet();
 				}
 			}
 		}
@@ -107,10 +142,183 @@ public abstract class MultipAbstractParallelEvaluator extends AbstractEvaluator
 		{
 			System.out.println("Threadpool prematurely terminated due to interruption in thread that created pool");
 		}
+		
+		for(List<IIndividual> subpop : bset) {
+			commit(subpop);
+		}
 
 		executionTime += System.currentTimeMillis() - time;
 	}
 	
+	/**
+	 * Asynchronously evaluate an individual (if its fitness is null).
+	 * 
+	 * @param ind Individual to evaluate
+	 * @return Future completed with the individual once it is evaluated
+	 */
+	public CompletableFuture<IIndividual> evaluateAsync(IIndividual ind)
+	{
+		if (ind.getFitness() != null) {
+			return CompletableFuture.completedFuture(ind);
+		}
+		
+		pendingEvaluations.incrementAndGet();
+		return submitAsync(ind);
+	}
+	
+	/**
+	 * Submit the asynchronous evaluation of an individual already counted as pending
+	 * 
+	 * @param ind Individual to evaluate
+	 * @return Future completed with the individual once it is evaluated
+	 */
+	protected CompletableFuture<IIndividual> submitAsync(IIndividual ind)
+	{
+		//Several islands may submit evaluations at the same time
+		evaluations.incrementAndGet();
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				evaluate(ind);
+			}
+			finally {
+				pendingEvaluations.decrementAndGet();
+			}
+			return ind;
+		}, getAsyncExecutor());
+	}
+	
+	/**
+	 * Asynchronously evaluate a list of individuals (those with null fitness).
+	 * 
+	 * @param inds List of individuals
+	 * @return Future completed once all individuals of the list are evaluated
+	 */
+	public CompletableFuture<Void> evaluateAsync(List<IIndividual> inds)
+	{
+		beforeEvaluation();
+		
+		//The whole list is pending before the first evaluation starts
+		pendingEvaluations.addAndGet(countToEvaluate(inds));
+		List<CompletableFuture<IIndividual>> futures = new ArrayList<CompletableFuture<IIndividual>>(inds.size());
+		for (IIndividual ind : inds) {
+			futures.add((ind.getFitness() == null) ? submitAsync(ind) : CompletableFuture.completedFuture(ind));
+		}
+		
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+	
+	/**
+	 * Commit the results of the evaluation of the given individuals, in the order of the list.
+	 * It is called once all of them are evaluated; when evaluating asynchronously, it should be called by the caller.
+	 * By default, it does nothing.
+	 * 
+	 * @param inds List of individuals
+	 */
+	public void commit(List<IIndividual> inds)
+	{
+		//Do nothing
+	}
+	
+	/**
+	 * Set the number of evaluations performed so far (e.g., when a run is resumed)
+	 * 
+	 * @param numberOfEvaluations Number of evaluations
+	 */
+	public void setNumberOfEvaluations(int numberOfEvaluations)
+	{
+		evaluations.set(numberOfEvaluations);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNumberOfEvaluations()
+	{
+		return evaluations.get();
+	}
+	
+	/**
+	 * Set the number of threads used to evaluate individuals
+	 * 
+	 * @param numThreads Number of threads
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * Get the number of threads used to evaluate individuals
+	 * 
+	 * @return Number of threads
+	 */
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+	
+	/**
+	 * Stop the thread pool used for asynchronous evaluations (if any)
+	 */
+	public void shutdown()
+	{
+		if (asyncExecutor != null) {
+			asyncExecutor.shutdown();
+			asyncExecutor = null;
+		}
+	}
+	
+	/////////////////////////////////////////////////////////////////
+	// -------------------------------------------- Protected methods
+	/////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Called before each evaluation phase starts using the threads.
+	 * By default, it does nothing.
+	 */
+	protected void beforeEvaluation()
+	{
+		//Do nothing
+	}
+	
+	/**
+	 * Count the individuals to evaluate (those with null fitness)
+	 * 
+	 * @param inds List of individuals
+	 * @return Number of individuals to evaluate
+	 */
+	protected int countToEvaluate(List<IIndividual> inds)
+	{
+		int n = 0;
+		for (IIndividual ind : inds) {
+			if (ind.getFitness() == null) {
+				n++;
+			}
+		}
+		
+		return n;
+	}
+	
+	/**
+	 * Get the thread pool for asynchronous evaluations, creating it if needed.
+	 * Threads are daemon, so they do not prevent the program to finish.
+	 * 
+	 * @return Thread pool
+	 */
+	protected synchronized ExecutorService getAsyncExecutor()
+	{
+		if (asyncExecutor == null) {
+			asyncExecutor = Executors.newFixedThreadPool(numThreads, r -> {
+				Thread t = new Thread(r, "async-evaluation");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		
+		return asyncExecutor;
+	}
+	
 	/////////////////////////////////////////////////////////////////
 	// -------------------------------------------- Evaluation Thread
 	/////////////////////////////////////////////////////////////////
@@ -126,7 +334,12 @@ public abstract class MultipAbstractParallelEvaluator extends AbstractEvaluator
 	    
 	    public void run()
 	    {
-	    	evaluate(ind);
+	    	try {
+	    		evaluate(ind);
+	    	}
+	    	finally {
+	    		pendingEvaluations.decrementAndGet();
+	    	}
 	    }
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package coeaglet.algorithm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import coeaglet.utils.StreamRandGen;
+import net.sf.jclec.listind.MultipListGenotype;
+
+/**
+ * Keys of members in the tables of fitness, classifiers and costs.
+ * By default, the key of a member is its genotype, including its subpopulation.
+ * If subpopulations with the same sample are given, the key uses the first subpopulation with the same sample (its representative),
+ *  so the same labels in any of these subpopulations share their classifier and fitness.
+ * Samples are the same if they include the same instances of the training data, whatever their order.
+ * Each run has its own keys (see Alg.getSampleKeys), shared by the components that access its tables.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class SampleKeys implements Serializable {
+
+	/**
+	 * Serialization constant
+	 */
+	private static final long serialVersionUID = 4622081617284451023L;
+
+	/**
+	 * Representative subpopulation of each subpopulation (null if keys use their own subpopulation)
+	 */
+	volatile int [] representatives = null;
+
+
+	/**
+	 * Get the key of a member
+	 *
+	 * @param gen Genotype of the member
+	 * @return Key in the tables
+	 */
+	public String key(MultipListGenotype gen)
+	{
+		int [] r = representatives;
+		if(r == null || gen.subpop < 0 || gen.subpop >= r.length || r[gen.subpop] == gen.subpop) {
+			return gen.toString();
+		}
+
+		//Same string than the genotype, "[ subpop; labels]", with the representative subpopulation
+		return "[ " + r[gen.subpop] + gen.toString().substring(2 + Integer.toString(gen.subpop).length());
+	}
+
+	/**
+	 * Set the samples of the subpopulations, so subpopulations with the same sample share their keys
+	 *
+	 * @param sampleIndexes Indexes of the instances sampled for each subpopulation (null to use the own subpopulation in keys)
+	 * @return Representative subpopulation of each subpopulation (null if sampleIndexes is null)
+	 */
+	public int[] setSamples(int [][] sampleIndexes)
+	{
+		representatives = (sampleIndexes != null) ? representatives(sampleIndexes) : null;
+		return representatives;
+	}
+
+	/**
+	 * Get the representative of each subpopulation, i.e., the first subpopulation with the same sample
+	 *
+	 * @param sampleIndexes Indexes of the instances sampled for each subpopulation
+	 * @return Representative subpopulation of each subpopulation
+	 */
+	public static int[] representatives(int [][] sampleIndexes)
+	{
+		int [] r = new int[sampleIndexes.length];
+		int [][] sorted = new int[sampleIndexes.length][];
+		Map<Long, Integer> first = new HashMap<Long, Integer>();
+
+		for(int p=0; p<sampleIndexes.length; p++) {
+			sorted[p] = sampleIndexes[p].clone();
+			Arrays.sort(sorted[p]);
+
+			//Fingerprints are checked against the instances, so a collision never merges different samples
+			Integer q = first.putIfAbsent(fingerprint(sorted[p]), p);
+			r[p] = (q != null && Arrays.equals(sorted[q], sorted[p])) ? q : p;
+		}
+
+		return r;
+	}
+
+	/**
+	 * Fingerprint of a sample
+	 *
+	 * @param sortedIndexes Indexes of the sampled instances, sorted
+	 * @return Fingerprint
+	 */
+	static long fingerprint(int [] sortedIndexes)
+	{
+		long h = StreamRandGen.mix(sortedIndexes.length);
+		for(int i : sortedIndexes) {
+			h = StreamRandGen.mix(h ^ i);
+		}
+
+		return h;
+	}
+}
@@ -0,0 +1,319 @@
+package coeaglet.algorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.listind.MultipListGenotype;
+import net.sf.jclec.listind.MultipListIndividual;
+import net.sf.jclec.util.random.IRandGen;
+
+/**
+ * Class implementing the speculative evaluation of individuals.
+ * While the evaluation threads are idle (selection, update of subpopulations, ensemble building, etc.),
+ *  individuals that are likely to be evaluated in the next phases are built and evaluated at low priority.
+ * Results are kept apart, and they are only moved to the tables of the evaluator when the individual is actually evaluated.
+ * Pending speculative evaluations are cancelled as soon as the main evaluation phase starts.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class SpeculativeEvaluator {
+
+	/**
+	 * Evaluator used to build and evaluate the members
+	 */
+	Eval eval;
+
+	/**
+	 * Executor with low priority threads
+	 */
+	ExecutorService executor;
+
+	/**
+	 * Speculative evaluations not finished yet
+	 */
+	ConcurrentHashMap<String, Future<?>> pending = new ConcurrentHashMap<String, Future<?>>();
+
+	/**
+	 * Members already speculatively evaluated and not used yet
+	 */
+	ConcurrentHashMap<String, Eval.Member> results = new ConcurrentHashMap<String, Eval.Member>();
+
+	/**
+	 * Max number of speculative evaluations submitted at each round
+	 */
+	int budget;
+
+	/**
+	 * Number of speculative evaluations submitted in the current round
+	 */
+	int submitted;
+
+	/**
+	 * Number of speculative evaluations finished since last report
+	 */
+	AtomicInteger nSpeculated = new AtomicInteger(0);
+
+	/**
+	 * Number of speculative evaluations used since last report
+	 */
+	AtomicInteger nHits = new AtomicInteger(0);
+
+	/**
+	 * Version of the training data; results of evaluations started with other version are discarded
+	 */
+	AtomicInteger dataVersion = new AtomicInteger(0);
+
+	/**
+	 * Number of speculative evaluations discarded without being used since last report
+	 */
+	AtomicInteger nDiscarded = new AtomicInteger(0);
+
+	/**
+	 * Round of speculation; it changes when speculation is cancelled, so evaluations of previous rounds stop and discard their results
+	 */
+	AtomicInteger round = new AtomicInteger(0);
+
+	/**
+	 * Random numbers generator. It is only used for speculation, so the rest of the evolution is not affected.
+	 */
+	IRandGen randgen;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param eval Evaluator
+	 * @param budget Max number of speculative evaluations at each round
+	 * @param randgen Random numbers generator
+	 */
+	public SpeculativeEvaluator(Eval eval, int budget, IRandGen randgen)
+	{
+		this.eval = eval;
+		this.budget = budget;
+		this.randgen = randgen;
+
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+			Thread t = new Thread(r, "speculative-evaluation");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+	}
+
+	/**
+	 * Start a new round of speculation.
+	 * Results of previous rounds that have not been used are discarded.
+	 */
+	public void startRound() {
+		nDiscarded.addAndGet(results.size());
+		results.clear();
+		submitted = 0;
+	}
+
+	/**
+	 * Submit the speculative evaluation of a given genotype.
+	 * It is not submitted if it was already evaluated, is being evaluated or the budget is exhausted.
+	 *
+	 * @param gen Genotype
+	 * @return True if submitted and false otherwise
+	 */
+	public boolean speculate(MultipListGenotype gen) {
+		if(submitted >= budget) {
+			return false;
+		}
+
+		String s = eval.getSampleKeys().key(gen);
+		if(eval.getTableFitness().containsKey(s) || pending.containsKey(s) || results.containsKey(s)) {
+			return false;
+		}
+
+		submitted++;
+		int version = dataVersion.get();
+		int taskRound = round.get();
+		BooleanSupplier stale = () -> version != dataVersion.get() || taskRound != round.get();
+		FutureTask<Void> task = new FutureTask<Void>(() -> {
+			try {
+				//Cancelled speculation stops as soon as possible, so it does not compete with the main evaluation
+				if(stale.getAsBoolean()) {
+					return;
+				}
+				Eval.Member member = eval.buildMember(gen, stale);
+				if(member == null || stale.getAsBoolean()) {
+					nDiscarded.incrementAndGet();
+					return;
+				}
+				
+				//The classifier is copied here, as the evaluator does with the members it builds
+				member = new Eval.Member(member.classifier.makeCopy(), member.fitness, member.cost);
+				results.put(s, member);
+				nSpeculated.incrementAndGet();
+				//It may have been cancelled meanwhile
+				if(stale.getAsBoolean() && results.remove(s, member)) {
+					nDiscarded.incrementAndGet();
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			finally {
+				pending.remove(s);
+			}
+		}, null);
+		
+		//Register as pending before it may finish
+		pending.put(s, task);
+		executor.execute(task);
+
+		return true;
+	}
+
+	/**
+	 * Speculate mutation neighbours of the individuals in the subpopulations.
+	 * Each neighbour differs in one label from the original individual.
+	 * Better individuals of each subpopulation are considered first, since they are more likely to be parents.
+	 *
+	 * @param bset Subpopulations
+	 * @param nLabels Number of labels
+	 */
+	public void speculateNeighbours(List<List<IIndividual>> bset, int nLabels) {
+		//Sort each subpopulation by fitness
+		List<List<IIndividual>> sorted = new ArrayList<List<IIndividual>>(bset.size());
+		int maxSize = 0;
+		for(List<IIndividual> subpop : bset) {
+			List<IIndividual> list = new ArrayList<IIndividual>(subpop);
+			Collections.sort(list, Comparator.comparingDouble((IIndividual ind) -> ((SimpleValueFitness)ind.getFitness()).getValue()).reversed());
+			sorted.add(list);
+			maxSize = Math.max(maxSize, list.size());
+		}
+
+		//Round-robin over subpopulations, starting with best individuals
+		for(int i=0; i<maxSize && submitted < budget; i++) {
+			for(int p=0; p<sorted.size() && submitted < budget; p++) {
+				if(i < sorted.get(p).size()) {
+					speculate(neighbour(((MultipListIndividual)sorted.get(p).get(i)).getGenotype(), nLabels));
+				}
+			}
+		}
+
+		sorted = null;
+	}
+
+	/**
+	 * Speculate the copies of the given individuals to the rest of subpopulations.
+	 *
+	 * @param inds Individuals that are candidates to be exchanged
+	 * @param numSubpop Number of subpopulations
+	 */
+	public void speculateExchange(List<? extends IIndividual> inds, int numSubpop) {
+		for(IIndividual ind : inds) {
+			MultipListGenotype gen = ((MultipListIndividual)ind).getGenotype();
+			for(int r=0; r<numSubpop && submitted < budget; r++) {
+				if(r != gen.subpop) {
+					speculate(MultipListGenotype.of(r, gen.genotype));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a random neighbour of the genotype, changing one of its labels
+	 *
+	 * @param gen Genotype
+	 * @param nLabels Number of labels
+	 * @return Neighbour genotype
+	 */
+	protected MultipListGenotype neighbour(MultipListGenotype gen, int nLabels) {
+		ArrayList<Integer> list = new ArrayList<Integer>(gen.genotype);
+
+		int r1, r2;
+		r1 = randgen.choose(0, list.size());
+		do {
+			r2 = randgen.choose(0, nLabels);
+		}while(list.contains(r2));
+
+		list.set(r1, r2);
+		Collections.sort(list);
+
+		return MultipListGenotype.of(gen.subpop, list);
+	}
+
+	/**
+	 * Cancel the speculative evaluations.
+	 * Those that have not started yet are removed; those already running stop after building their classifier and discard their results.
+	 */
+	public void cancel() {
+		round.incrementAndGet();
+		pending.entrySet().removeIf(e -> e.getValue().cancel(false));
+	}
+
+	/**
+	 * Discard all speculative results, since the training data has changed.
+	 * Evaluations already running finish, but their results are not kept.
+	 */
+	public void invalidate() {
+		dataVersion.incrementAndGet();
+		cancel();
+		results.clear();
+		submitted = 0;
+	}
+
+	/**
+	 * Take the speculative result for a given key (if any)
+	 *
+	 * @param key Key of the individual
+	 * @return Member or null if it was not speculatively evaluated
+	 */
+	public Eval.Member take(String key) {
+		Eval.Member member = results.remove(key);
+		if(member != null) {
+			nHits.incrementAndGet();
+		}
+		return member;
+	}
+
+	/**
+	 * Get the number of speculative evaluations finished since last call to resetHitRate
+	 *
+	 * @return Number of speculative evaluations
+	 */
+	public int getNumSpeculated() {
+		return nSpeculated.get();
+	}
+
+	/**
+	 * Get the hit rate since last call, and reset the counters.
+	 * Hit rate is the ratio of speculative evaluations that were used among those used or discarded.
+	 *
+	 * @return Hit rate
+	 */
+	public double resetHitRate() {
+		nSpeculated.set(0);
+		int hits = nHits.getAndSet(0);
+		int discarded = nDiscarded.getAndSet(0);
+
+		if(hits + discarded == 0) {
+			return 0;
+		}
+
+		return (hits * 1.0) / (hits + discarded);
+	}
+
+	/**
+	 * Stop the speculative evaluator
+	 */
+	public void shutdown() {
+		cancel();
+		executor.shutdownNow();
+	}
+}
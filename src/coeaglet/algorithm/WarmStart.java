@@ -0,0 +1,210 @@
+package coeaglet.algorithm;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import mulan.classifier.MultiLabelLearner;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.listind.MultipListGenotype;
+import net.sf.jclec.listind.MultipListIndividual;
+
+/**
+ * Individuals of a previous run, used to warm-start the populations of a new run.
+ * They are read from its checkpoint (see Checkpoint) or from its report directory (see Listener).
+ * Reports only include the individuals, while checkpoints also include the data samples,
+ *  the fitness and (optionally) the classifiers, so these can be reused if both runs use the same data.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class WarmStart {
+
+	/**
+	 * Pattern of an individual in reports: [ subpop; label, label, ...]
+	 */
+	static final Pattern INDIVIDUAL = Pattern.compile("\\[ (\\d+); ([\\d, ]+)\\]");
+
+	/**
+	 * Pattern of the file names of population reports
+	 */
+	static final Pattern POPULATION_REPORT = Pattern.compile("Iteration_(\\d+)\\.rep");
+
+	/**
+	 * Members of the best ensemble of the previous run
+	 */
+	List<IIndividual> ensemble = new ArrayList<IIndividual>();
+
+	/**
+	 * Individuals of each subpopulation of the previous run
+	 */
+	List<List<IIndividual>> subpops = new ArrayList<List<IIndividual>>();
+
+	/**
+	 * Fingerprint of the training data of the previous run
+	 */
+	long dataFingerprint;
+
+	/**
+	 * Indexes of the instances sampled for each subpopulation (null if unknown)
+	 */
+	int [][] sampleIndexes = null;
+
+	/**
+	 * Fitness of individuals of the previous run
+	 */
+	Hashtable<String, Double> tableFitness = new Hashtable<String, Double>();
+
+	/**
+	 * Classifiers of the previous run
+	 */
+	Hashtable<String, MultiLabelLearner> tableClassifiers = new Hashtable<String, MultiLabelLearner>();
+
+	/**
+	 * Genotypes of the classifiers of the previous run
+	 */
+	Hashtable<String, MultipListGenotype> tableGenotypes = new Hashtable<String, MultipListGenotype>();
+
+
+	/**
+	 * Read the previous run from its checkpoint
+	 *
+	 * @param file Checkpoint file
+	 * @return Previous run
+	 * @throws IOException
+	 */
+	public static WarmStart fromCheckpoint(File file) throws IOException
+	{
+		WarmStart ws = new WarmStart();
+
+		//Only the first part of the checkpoint is needed (see Alg.saveCheckpoint)
+		DataInputStream in = Checkpoint.open(file);
+		try {
+			int numSubpop = in.readInt();
+			in.readInt(); //Subpopulation size
+			in.readBoolean(); //Deterministic mode
+			ws.dataFingerprint = in.readLong();
+			in.readInt(); //Number of instances
+			in.readInt(); //Generation
+			in.readInt(); //Number of evaluations
+
+			ws.sampleIndexes = new int[numSubpop][];
+			for(int p=0; p<numSubpop; p++) {
+				ws.sampleIndexes[p] = Checkpoint.readInts(in);
+			}
+			for(int p=0; p<numSubpop; p++) {
+				ws.subpops.add(Checkpoint.readIndividuals(in));
+			}
+
+			Checkpoint.readFitnessTable(in, ws.tableFitness);
+			Checkpoint.readClassifierTable(in, ws.tableClassifiers, ws.tableGenotypes);
+
+			in.readDouble(); //Fitness of best ensemble
+			in.readDouble(); //Fitness of current ensemble
+			ws.ensemble = Checkpoint.readIndividuals(in);
+		}
+		finally {
+			in.close();
+		}
+
+		return ws;
+	}
+
+	/**
+	 * Read the previous run from its report directory: the last population reported
+	 *  and the members of the final ensemble. Fitness in reports is not used.
+	 *
+	 * @param dir Report directory
+	 * @return Previous run
+	 * @throws IOException
+	 */
+	public static WarmStart fromReports(File dir) throws IOException
+	{
+		WarmStart ws = new WarmStart();
+
+		//Last population reported
+		File last = null;
+		int lastGeneration = -1;
+		File [] files = dir.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				Matcher m = POPULATION_REPORT.matcher(file.getName());
+				if(m.matches() && Integer.parseInt(m.group(1)) > lastGeneration) {
+					lastGeneration = Integer.parseInt(m.group(1));
+					last = file;
+				}
+			}
+		}
+		if(last == null) {
+			throw new IOException("No population reported in " + dir);
+		}
+
+		for(String line : Files.readAllLines(last.toPath())) {
+			for(MultipListIndividual ind : parseIndividuals(line)) {
+				int p = ind.getSubpop();
+				while(ws.subpops.size() <= p) {
+					ws.subpops.add(new ArrayList<IIndividual>());
+				}
+				ws.subpops.get(p).add(ind);
+			}
+		}
+
+		//Members of the final ensemble, listed after the results in the train report
+		File trainReport = new File(dir, "TrainClassificationReport.txt");
+		if(trainReport.exists()) {
+			boolean inEnsemble = false;
+			for(String line : Files.readAllLines(trainReport.toPath())) {
+				if(inEnsemble) {
+					ws.ensemble.addAll(parseIndividuals(line));
+				}
+				else {
+					inEnsemble = line.startsWith("Ensemble of classifiers");
+				}
+			}
+		}
+
+		return ws;
+	}
+
+	/**
+	 * Parse the individuals included in a line of a report
+	 *
+	 * @param line Line
+	 * @return Individuals, without fitness
+	 */
+	protected static List<MultipListIndividual> parseIndividuals(String line)
+	{
+		List<MultipListIndividual> inds = new ArrayList<MultipListIndividual>();
+
+		Matcher m = INDIVIDUAL.matcher(line);
+		while(m.find()) {
+			ArrayList<Integer> labels = new ArrayList<Integer>();
+			for(String l : m.group(2).split(",")) {
+				labels.add(Integer.parseInt(l.trim()));
+			}
+			inds.add(new MultipListIndividual(MultipListGenotype.of(Integer.parseInt(m.group(1)), labels)));
+		}
+
+		return inds;
+	}
+
+	/**
+	 * Check if the previous run used the same data as the current one,
+	 *  so the fitness and classifiers of its individuals are still valid
+	 *
+	 * @param dataFingerprint Fingerprint of current training data
+	 * @param sampleIndexes Instances sampled for each subpopulation in current run
+	 * @return True if both runs used the same data
+	 */
+	public boolean sameData(long dataFingerprint, int [][] sampleIndexes)
+	{
+		return this.sampleIndexes != null && this.dataFingerprint == dataFingerprint && Arrays.deepEquals(this.sampleIndexes, sampleIndexes);
+	}
+}
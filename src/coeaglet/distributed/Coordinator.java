@@ -0,0 +1,371 @@
+package coeaglet.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.configuration.Configuration;
+
+import coeaglet.algorithm.Checkpoint;
+import coeaglet.algorithm.Ensemble;
+import coeaglet.algorithm.EnsembleSelection;
+import coeaglet.utils.DatasetTransformation;
+import coeaglet.utils.RandStreams;
+import coeaglet.utils.Utils;
+import mulan.classifier.MultiLabelLearner;
+import mulan.classifier.transformation.LabelPowerset2;
+import mulan.data.MultiLabelInstances;
+import mulan.evaluation.MulanEnsembleEvaluator;
+import mulan.evaluation.measure.ExampleBasedFMeasure;
+import mulan.evaluation.measure.Measure;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.listind.MultipListGenotype;
+import net.sf.jclec.listind.MultipListIndividual;
+import net.sf.jclec.util.random.IRandGen;
+import weka.classifiers.trees.J48;
+
+/**
+ * Coordinator of the distributed island model.
+ * At each communication, it receives the individuals of all workers, builds the ensemble with them,
+ *  and sends members of the best ensemble as migrants to other subpopulations (as in exchangeBestEnsemble communication).
+ * Workers are always attended in the same order, so results do not depend on their timing.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class Coordinator {
+
+	/**
+	 * Port to listen
+	 */
+	int port;
+
+	/**
+	 * Number of workers
+	 */
+	int nWorkers;
+
+	/**
+	 * Full training dataset
+	 */
+	MultiLabelInstances fullTrainData;
+
+	/**
+	 * Test dataset
+	 */
+	MultiLabelInstances testData;
+
+	/**
+	 * Number of subpopulations over all workers
+	 */
+	int numSubpop;
+
+	/**
+	 * Number of classifiers in the ensemble
+	 */
+	int nClassifiers;
+
+	/**
+	 * Beta value to build the ensemble
+	 */
+	double betaEnsembleSelection;
+
+	/**
+	 * Parameter for the exponential function for the exchange of migrants
+	 */
+	double omega;
+
+	/**
+	 * Generator of random numbers
+	 */
+	IRandGen randgen;
+
+	/**
+	 * Worker owning each subpopulation
+	 */
+	int [] owner;
+
+	/**
+	 * Indexes of the instances sampled by the worker for each subpopulation
+	 */
+	int [][] sampleIndexes;
+
+	/**
+	 * Training data of each subpopulation, built the first time a model has to be built for it
+	 */
+	MultiLabelInstances [] trainData;
+
+	/**
+	 * Table including all classifiers received or built
+	 */
+	Hashtable<String, MultiLabelLearner> tableClassifiers = new Hashtable<String, MultiLabelLearner>();
+
+	/**
+	 * Best ensemble so far
+	 */
+	Ensemble bestEnsemble = null;
+
+	/**
+	 * Fitness of the best ensemble
+	 */
+	double bestEnsembleFitness = -1;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param port Port to listen
+	 * @param nWorkers Number of workers
+	 * @param configuration Configuration of the algorithm
+	 * @throws Exception
+	 */
+	public Coordinator(int port, int nWorkers, Configuration configuration) throws Exception
+	{
+		this.port = port;
+		this.nWorkers = nWorkers;
+
+		numSubpop = configuration.getInt("number-subpop");
+		nClassifiers = configuration.getInt("number-classifiers");
+		betaEnsembleSelection = configuration.getDouble("beta-ensemble-selection");
+		omega = configuration.getDouble("omega", 2);
+		randgen = new RandStreams(configuration.getLong("rand-gen-factory[@seed]", 0)).stream(RandStreams.MAIN, 0);
+
+		fullTrainData = new MultiLabelInstances(configuration.getString("dataset.train-dataset"), configuration.getString("dataset.xml"));
+		testData = new MultiLabelInstances(configuration.getString("dataset.test-dataset"), configuration.getString("dataset.xml"));
+	}
+
+	/**
+	 * Getter for the best ensemble
+	 *
+	 * @return Best ensemble
+	 */
+	public Ensemble getEnsemble() {
+		return bestEnsemble;
+	}
+
+	/**
+	 * Wait for all workers and coordinate them until they finish
+	 *
+	 * @throws Exception
+	 */
+	public void run() throws Exception
+	{
+		DataInputStream [] in = new DataInputStream[nWorkers];
+		DataOutputStream [] out = new DataOutputStream[nWorkers];
+		Socket [] sockets = new Socket[nWorkers];
+		owner = new int[numSubpop];
+		Arrays.fill(owner, -1);
+		sampleIndexes = new int[numSubpop][];
+		trainData = new MultiLabelInstances[numSubpop];
+
+		ServerSocket server = new ServerSocket(port, nWorkers, InetAddress.getLoopbackAddress());
+		for(int i=0; i<nWorkers; i++) {
+			Socket socket = server.accept();
+			DataInputStream wIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			if(wIn.readByte() != Protocol.HELLO) {
+				throw new IOException("Unexpected message from worker");
+			}
+			int w = wIn.readInt();
+			int first = wIn.readInt();
+			int n = wIn.readInt();
+			if(w < 0 || w >= nWorkers || sockets[w] != null) {
+				throw new IOException("Invalid or repeated worker id: " + w);
+			}
+			if(n < 1 || first < 0 || first + n > numSubpop) {
+				throw new IOException("Invalid subpopulations of worker " + w + ": " + n + " from " + first);
+			}
+			for(int p=first; p<first+n; p++) {
+				if(owner[p] >= 0) {
+					throw new IOException("Subpopulation " + p + " is owned by workers " + owner[p] + " and " + w);
+				}
+				owner[p] = w;
+				sampleIndexes[p] = Checkpoint.readInts(wIn);
+				if(sampleIndexes[p] == null || Arrays.stream(sampleIndexes[p]).anyMatch(index -> index < 0 || index >= fullTrainData.getNumInstances())) {
+					throw new IOException("Invalid sample of subpopulation " + p);
+				}
+			}
+
+			sockets[w] = socket;
+			in[w] = wIn;
+			out[w] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+		server.close();
+		for(int p=0; p<numSubpop; p++) {
+			if(owner[p] < 0) {
+				throw new IOException("Subpopulation " + p + " is not owned by any worker");
+			}
+		}
+
+		boolean finished = false;
+		while(!finished) {
+			//Receive candidates of all workers
+			List<IIndividual> candidates = new ArrayList<IIndividual>();
+			int generation = 0;
+			for(int w=0; w<nWorkers; w++) {
+				if(in[w].readByte() != Protocol.CANDIDATES) {
+					throw new IOException("Unexpected message from worker " + w);
+				}
+				generation = in[w].readInt();
+				finished |= in[w].readBoolean();
+				for(Protocol.Summary s : Protocol.readSummaries(in[w])) {
+					if(s.subpop < 0 || s.subpop >= numSubpop || owner[s.subpop] != w) {
+						throw new IOException("Worker " + w + " sent an individual of subpopulation " + s.subpop);
+					}
+					if(s.labels.stream().anyMatch(l -> l >= fullTrainData.getNumLabels())) {
+						throw new IOException("Worker " + w + " sent an individual with unknown labels: " + s.labels);
+					}
+					MultipListIndividual ind = s.toIndividual(s.subpop);
+					String key = ind.getGenotype().toString();
+					if(s.model != null && !tableClassifiers.containsKey(key)) {
+						tableClassifiers.put(key, Protocol.deserialize(s.model));
+					}
+					candidates.add(ind);
+				}
+			}
+
+			updateEnsemble(candidates, generation);
+
+			//Reply to workers
+			if(finished) {
+				for(int w=0; w<nWorkers; w++) {
+					out[w].writeByte(Protocol.STOP);
+					out[w].flush();
+				}
+			}
+			else {
+				List<List<Protocol.Summary>> migrants = selectMigrants();
+				for(int w=0; w<nWorkers; w++) {
+					out[w].writeByte(Protocol.MIGRANTS);
+					Protocol.writeSummaries(out[w], migrants.get(w));
+					out[w].flush();
+				}
+			}
+		}
+
+		for(int w=0; w<nWorkers; w++) {
+			sockets[w].close();
+		}
+
+		System.out.println("FINAL FITNESS: " + bestEnsembleFitness);
+		System.out.println("TEST FITNESS: " + evaluate(bestEnsemble, testData));
+	}
+
+	/**
+	 * Build the ensemble from the candidates and replace the best ensemble if it is improved
+	 *
+	 * @param candidates Individuals of all workers
+	 * @param generation Generation of the workers
+	 * @throws Exception
+	 */
+	protected void updateEnsemble(List<IIndividual> candidates, int generation) throws Exception
+	{
+		//Add individuals of the best ensemble
+		if(bestEnsemble != null) {
+			Set<IIndividual> members = new HashSet<IIndividual>(candidates);
+			for(IIndividual ind : bestEnsemble.getInds()) {
+				if(members.add(ind)) {
+					candidates.add(ind.copy());
+				}
+			}
+		}
+
+		EnsembleSelection eSel = new EnsembleSelection(candidates, nClassifiers, fullTrainData.getNumLabels(), betaEnsembleSelection);
+		eSel.setRandgen(randgen);
+		eSel.selectEnsemble();
+
+		//Members whose model was not received are built with the sample of their worker, so they are the same models
+		for(IIndividual ind : eSel.getEnsemble()) {
+			MultipListGenotype gen = ((MultipListIndividual)ind).getGenotype();
+			String key = gen.toString();
+			if(!tableClassifiers.containsKey(key)) {
+				if(trainData[gen.subpop] == null) {
+					trainData[gen.subpop] = Utils.sampleData(fullTrainData, sampleIndexes[gen.subpop]);
+				}
+				DatasetTransformation dt = new DatasetTransformation();
+				LabelPowerset2 mll = new LabelPowerset2(new J48());
+				mll.setSeed(1);
+				mll.build(dt.transformDataset(trainData[gen.subpop], gen.genotype));
+				tableClassifiers.put(key, mll);
+			}
+		}
+
+		LabelPowerset2 learner = new LabelPowerset2(new J48());
+		learner.setSeed(1);
+		Ensemble ensemble = new Ensemble(eSel.getEnsemble(), learner);
+		ensemble.setTableClassifiers(tableClassifiers);
+		ensemble.build(fullTrainData);
+
+		double fitness = evaluate(ensemble, fullTrainData);
+		System.out.println("Fitness iter " + generation + ": " + fitness);
+		if(fitness > bestEnsembleFitness) {
+			System.out.println("\tNew best fitness!");
+			bestEnsemble = ensemble;
+			bestEnsembleFitness = fitness;
+		}
+	}
+
+	/**
+	 * Select members of the best ensemble to be sent to other subpopulations.
+	 * Better members are more likely to be sent.
+	 *
+	 * @return List of migrants for each worker
+	 */
+	protected List<List<Protocol.Summary>> selectMigrants()
+	{
+		List<List<Protocol.Summary>> migrants = new ArrayList<List<Protocol.Summary>>(nWorkers);
+		for(int w=0; w<nWorkers; w++) {
+			migrants.add(new ArrayList<Protocol.Summary>());
+		}
+
+		//There is no other subpopulation to send migrants
+		if(numSubpop < 2) {
+			return migrants;
+		}
+
+		List<MultipListIndividual> inds = bestEnsemble.getInds();
+		for(int i=0; i<inds.size(); i++) {
+			double prob = Math.pow(((1.0*nClassifiers - i) / nClassifiers), omega);
+			if(randgen.coin(prob)) {
+				MultipListIndividual ind = inds.get(i);
+				int r;
+				do {
+					r = randgen.choose(0, numSubpop);
+				}while(r == ind.getSubpop());
+
+				migrants.get(owner[r]).add(new Protocol.Summary(r, ind.getGenotype().genotype, -1, null));
+			}
+		}
+
+		return migrants;
+	}
+
+	/**
+	 * Evaluate an ensemble with example-based F-measure
+	 *
+	 * @param ensemble Ensemble
+	 * @param data Data to evaluate
+	 * @return Fitness
+	 * @throws Exception
+	 */
+	protected double evaluate(Ensemble ensemble, MultiLabelInstances data) throws Exception
+	{
+		ensemble.resetSeed();
+
+		List<Measure> measures = new ArrayList<Measure>();
+		measures.add(new ExampleBasedFMeasure());
+		MulanEnsembleEvaluator eval = new MulanEnsembleEvaluator();
+
+		return eval.evaluate(ensemble, data, measures).getMeasures().get(0).getValue();
+	}
+}
@@ -0,0 +1,93 @@
+package coeaglet.distributed;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.configuration.XMLConfiguration;
+
+import net.sf.jclec.ExperimentBuilder;
+
+/**
+ * Launcher of the distributed island model in a single machine.
+ * For each experiment of the configuration file, it runs the coordinator in this process
+ *  and each worker in its own JVM, all of them communicating over localhost.
+ *
+ * Usage: coeaglet.distributed.LocalLauncher configFile nWorkers [port]
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class LocalLauncher {
+
+	/**
+	 * Default port of the coordinator
+	 */
+	static final int DEFAULT_PORT = 5005;
+
+
+	/**
+	 * Main method
+	 *
+	 * @param args Configuration file, number of workers and (optionally) port
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length < 2) {
+			System.out.println("Usage: coeaglet.distributed.LocalLauncher <configuration file> <number of workers> [port]");
+			System.exit(1);
+		}
+
+		int nWorkers = Integer.parseInt(args[1]);
+		int port = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+
+		ExperimentBuilder builder = new ExperimentBuilder();
+		for(String experiment : builder.buildExperiment(args[0])) {
+			System.out.println("Algorithm started");
+			launch(experiment, nWorkers, port);
+			System.out.println("Algorithm finished");
+		}
+	}
+
+	/**
+	 * Run an experiment with the coordinator and the given number of workers
+	 *
+	 * @param jobFilename Configuration file of the experiment
+	 * @param nWorkers Number of workers
+	 * @param port Port of the coordinator
+	 * @throws Exception
+	 */
+	public static void launch(String jobFilename, int nWorkers, int port) throws Exception
+	{
+		XMLConfiguration conf = new XMLConfiguration(new File(jobFilename));
+		Coordinator coordinator = new Coordinator(port, nWorkers, conf.subset("process"));
+
+		//Workers connect once the coordinator is listening (they retry if not yet)
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Process> workers = new ArrayList<Process>(nWorkers);
+		for(int w=0; w<nWorkers; w++) {
+			ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName(),
+					jobFilename, "localhost", String.valueOf(port), String.valueOf(w), String.valueOf(nWorkers));
+			pb.inheritIO();
+			workers.add(pb.start());
+		}
+
+		try {
+			coordinator.run();
+		}
+		catch (Exception e) {
+			//Workers would wait for the coordinator forever
+			for(Process worker : workers) {
+				worker.destroy();
+			}
+			throw e;
+		}
+
+		for(Process worker : workers) {
+			if(worker.waitFor() != 0) {
+				System.out.println("Worker finished with exit code " + worker.exitValue());
+			}
+		}
+	}
+}
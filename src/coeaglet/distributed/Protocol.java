@@ -0,0 +1,217 @@
+package coeaglet.distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import mulan.classifier.MultiLabelLearner;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.listind.MultipListGenotype;
+import net.sf.jclec.listind.MultipListIndividual;
+
+/**
+ * Protocol between the coordinator and the workers of the distributed island model.
+ *
+ * Each message starts with its type (byte). Then:
+ * <ul>
+ * <li>HELLO: worker id (int), first subpopulation (int), number of subpopulations (int),
+ *  and for each subpopulation, the number of sampled instances (int) followed by their indexes (int each)</li>
+ * <li>CANDIDATES: generation (int), finished (boolean), list of summaries</li>
+ * <li>MIGRANTS: list of summaries</li>
+ * <li>STOP: nothing</li>
+ * </ul>
+ * A list of summaries is its size (int) followed by the summaries.
+ * Each summary is the global subpopulation (int), the number of labels (int) and the labels (int each),
+ * the fitness (double) and the length of the serialized model (int, 0 if not sent) followed by its bytes.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class Protocol {
+
+	/**
+	 * Worker presents itself
+	 */
+	public static final byte HELLO = 1;
+
+	/**
+	 * Worker sends candidates to the ensemble
+	 */
+	public static final byte CANDIDATES = 2;
+
+	/**
+	 * Coordinator sends migrants to the worker
+	 */
+	public static final byte MIGRANTS = 3;
+
+	/**
+	 * Coordinator asks worker to stop
+	 */
+	public static final byte STOP = 4;
+
+	/**
+	 * Max number of labels of a summary, to detect corrupted streams
+	 */
+	static final int MAX_LABELS = 1 << 16;
+
+
+	/**
+	 * Summary of an individual: genotype, fitness and (optionally) its model
+	 *
+	 * @author Jose M. Moyano
+	 *
+	 */
+	public static class Summary
+	{
+		/**
+		 * Global index of subpopulation
+		 */
+		public int subpop;
+
+		/**
+		 * Labels of the individual
+		 */
+		public ArrayList<Integer> labels;
+
+		/**
+		 * Fitness of the individual (-1 if unknown)
+		 */
+		public double fitness;
+
+		/**
+		 * Serialized model (null if not sent)
+		 */
+		public byte [] model;
+
+		/**
+		 * Constructor
+		 *
+		 * @param subpop Global index of subpopulation
+		 * @param labels Labels of the individual
+		 * @param fitness Fitness of the individual
+		 * @param model Serialized model or null
+		 */
+		public Summary(int subpop, ArrayList<Integer> labels, double fitness, byte [] model) {
+			this.subpop = subpop;
+			this.labels = labels;
+			this.fitness = fitness;
+			this.model = model;
+		}
+
+		/**
+		 * Create an individual from the summary
+		 *
+		 * @param subpop Index of subpopulation of the individual
+		 * @return Individual
+		 */
+		public MultipListIndividual toIndividual(int subpop) {
+			MultipListIndividual ind = new MultipListIndividual(MultipListGenotype.of(subpop, new ArrayList<Integer>(labels)));
+			if(fitness >= 0) {
+				ind.setFitness(new SimpleValueFitness(fitness));
+			}
+			return ind;
+		}
+	}
+
+	/**
+	 * Write a list of summaries
+	 *
+	 * @param out Output stream
+	 * @param summaries List of summaries
+	 * @throws IOException
+	 */
+	public static void writeSummaries(DataOutputStream out, List<Summary> summaries) throws IOException {
+		out.writeInt(summaries.size());
+		for(Summary s : summaries) {
+			out.writeInt(s.subpop);
+			out.writeInt(s.labels.size());
+			for(int l : s.labels) {
+				out.writeInt(l);
+			}
+			out.writeDouble(s.fitness);
+			if(s.model == null) {
+				out.writeInt(0);
+			}
+			else {
+				out.writeInt(s.model.length);
+				out.write(s.model);
+			}
+		}
+	}
+
+	/**
+	 * Read a list of summaries
+	 *
+	 * @param in Input stream
+	 * @return List of summaries
+	 * @throws IOException
+	 */
+	public static List<Summary> readSummaries(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		List<Summary> summaries = new ArrayList<Summary>(n);
+		for(int i=0; i<n; i++) {
+			int subpop = in.readInt();
+			int k = in.readInt();
+			if(k < 1 || k > MAX_LABELS) {
+				throw new IOException("Invalid number of labels in summary: " + k);
+			}
+			ArrayList<Integer> labels = new ArrayList<Integer>(k);
+			for(int j=0; j<k; j++) {
+				int l = in.readInt();
+				if(l < 0) {
+					throw new IOException("Invalid label in summary: " + l);
+				}
+				labels.add(l);
+			}
+			double fitness = in.readDouble();
+			byte [] model = null;
+			int length = in.readInt();
+			if(length < 0) {
+				throw new IOException("Invalid length of model in summary: " + length);
+			}
+			if(length > 0) {
+				model = new byte[length];
+				in.readFully(model);
+			}
+			summaries.add(new Summary(subpop, labels, fitness, model));
+		}
+
+		return summaries;
+	}
+
+	/**
+	 * Serialize a model
+	 *
+	 * @param model Multi-label learner
+	 * @return Bytes of the serialized model
+	 * @throws IOException
+	 */
+	public static byte[] serialize(MultiLabelLearner model) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(model);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserialize a model
+	 *
+	 * @param bytes Bytes of the serialized model
+	 * @return Multi-label learner
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public static MultiLabelLearner deserialize(byte [] bytes) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		MultiLabelLearner model = (MultiLabelLearner) in.readObject();
+		in.close();
+		return model;
+	}
+}
@@ -0,0 +1,275 @@
+package coeaglet.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.XMLConfiguration;
+
+import coeaglet.algorithm.Alg;
+import coeaglet.algorithm.Checkpoint;
+import mulan.classifier.MultiLabelLearner;
+import net.sf.jclec.AlgorithmEvent;
+import net.sf.jclec.IAlgorithmListener;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.listind.MultipListIndividual;
+
+/**
+ * Worker of the distributed island model.
+ * It runs the algorithm over a group of the subpopulations in its own process, and every ngenerations-comm generations
+ *  it sends its individuals to the coordinator as candidates for the ensemble and receives migrants from it.
+ *
+ * Usage: coeaglet.distributed.Worker configFile host port workerId nWorkers
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class Worker implements IAlgorithmListener {
+
+	/**
+	 * Identifier of the worker
+	 */
+	int workerId;
+
+	/**
+	 * Global index of the first subpopulation of the worker
+	 */
+	int firstSubpop;
+
+	/**
+	 * Number of subpopulations of the worker
+	 */
+	int nSubpops;
+
+	/**
+	 * Number of generations between communications
+	 */
+	int generationsComm;
+
+	/**
+	 * Indicates if models are sent to the coordinator
+	 */
+	boolean sendModels;
+
+	/**
+	 * Indicates if the coordinator asked to stop communicating
+	 */
+	boolean stopped = false;
+
+	/**
+	 * Algorithm
+	 */
+	Alg alg;
+
+	/**
+	 * Input stream from coordinator
+	 */
+	DataInputStream in;
+
+	/**
+	 * Output stream to coordinator
+	 */
+	DataOutputStream out;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param workerId Identifier of the worker
+	 * @param nWorkers Number of workers
+	 * @param configuration Configuration of the algorithm (it is adapted to the subpopulations of the worker)
+	 */
+	public Worker(int workerId, int nWorkers, Configuration configuration)
+	{
+		this.workerId = workerId;
+
+		//Subpopulations of this worker
+		int totalSubpop = configuration.getInt("number-subpop");
+		if(nWorkers < 1 || nWorkers > totalSubpop) {
+			throw new IllegalArgumentException("The number of workers (" + nWorkers + ") must be between 1 and the number of subpopulations (" + totalSubpop + ")");
+		}
+		firstSubpop = (workerId * totalSubpop) / nWorkers;
+		nSubpops = ((workerId + 1) * totalSubpop) / nWorkers - firstSubpop;
+
+		int populationSize = configuration.getInt("population-size");
+		configuration.setProperty("number-subpop", nSubpops);
+		configuration.setProperty("population-size", (populationSize * nSubpops) / totalSubpop);
+		
+		//Exchanges within the worker need at least two subpopulations; migration between workers is done by the coordinator anyway
+		if(nSubpops < 2) {
+			configuration.setProperty("communication", "no");
+		}
+
+		//Each worker samples its own data
+		configuration.setProperty("rand-gen-factory[@seed]", configuration.getInt("rand-gen-factory[@seed]", 0) + workerId);
+
+		//Reports of each worker are kept apart
+		if(configuration.containsKey("listener.report-dir-name")) {
+			configuration.setProperty("listener.report-dir-name", configuration.getString("listener.report-dir-name") + "-worker" + workerId);
+		}
+
+		generationsComm = configuration.getInt("ngenerations-comm");
+		sendModels = configuration.getBoolean("distributed[@send-models]", false);
+
+		alg = new Alg();
+		alg.configure(configuration);
+		alg.addListener(this);
+	}
+
+	/**
+	 * Connect to the coordinator and run the algorithm
+	 *
+	 * @param host Host of the coordinator
+	 * @param port Port of the coordinator
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run(String host, int port) throws IOException, InterruptedException
+	{
+		Socket socket = connect(host, port);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		out.writeByte(Protocol.HELLO);
+		out.writeInt(workerId);
+		out.writeInt(firstSubpop);
+		out.writeInt(nSubpops);
+		for(int p=0; p<nSubpops; p++) {
+			Checkpoint.writeInts(out, alg.getSampleIndexes()[p]);
+		}
+		out.flush();
+
+		alg.execute();
+
+		socket.close();
+	}
+
+	/**
+	 * Connect to the coordinator, retrying for a while in case it is not listening yet
+	 *
+	 * @param host Host of the coordinator
+	 * @param port Port of the coordinator
+	 * @return Socket
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	protected Socket connect(String host, int port) throws IOException, InterruptedException
+	{
+		for(int i=0; ; i++) {
+			try {
+				return new Socket(host, port);
+			}
+			catch (ConnectException e) {
+				if(i >= 100) {
+					throw e;
+				}
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	/**
+	 * Send the individuals to the coordinator and integrate the migrants received
+	 *
+	 * @param generation Current generation
+	 * @param finished Indicates if the algorithm has finished
+	 */
+	protected void exchange(int generation, boolean finished)
+	{
+		if(stopped) {
+			return;
+		}
+
+		try {
+			List<Protocol.Summary> summaries = new ArrayList<Protocol.Summary>();
+			for(int p=0; p<nSubpops; p++) {
+				for(IIndividual ind : alg.getInhabitants(p)) {
+					MultipListIndividual mInd = (MultipListIndividual) ind;
+					byte [] model = null;
+					if(sendModels) {
+						MultiLabelLearner learner = alg.getTableClassifiers().get(alg.getSampleKeys().key(mInd.getGenotype()));
+						if(learner != null) {
+							model = Protocol.serialize(learner);
+						}
+					}
+					summaries.add(new Protocol.Summary(firstSubpop + p, mInd.getGenotype().genotype, ((SimpleValueFitness)mInd.getFitness()).getValue(), model));
+				}
+			}
+
+			out.writeByte(Protocol.CANDIDATES);
+			out.writeInt(generation);
+			out.writeBoolean(finished);
+			Protocol.writeSummaries(out, summaries);
+			out.flush();
+
+			byte type = in.readByte();
+			if(type == Protocol.MIGRANTS) {
+				//Migrants are evaluated again with the data of this worker
+				List<MultipListIndividual> migrants = new ArrayList<MultipListIndividual>();
+				for(Protocol.Summary s : Protocol.readSummaries(in)) {
+					s.fitness = -1;
+					migrants.add(s.toIndividual(s.subpop - firstSubpop));
+				}
+				System.out.println(migrants.size() + " migrants received.");
+				alg.addMigrants(migrants);
+			}
+			else {
+				stopped = true;
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Communication with coordinator failed", e);
+		}
+	}
+
+	@Override
+	public void algorithmStarted(AlgorithmEvent event) {
+		//Do nothing
+	}
+
+	@Override
+	public void iterationCompleted(AlgorithmEvent event) {
+		int generation = alg.getGeneration();
+		//Once finished (at max generations or earlier), the last exchange is done when the algorithm finishes
+		if((generation % generationsComm) == 0 && alg.getTerminationReason() == null) {
+			exchange(generation, false);
+		}
+	}
+
+	@Override
+	public void algorithmFinished(AlgorithmEvent event) {
+		exchange(alg.getGeneration(), true);
+	}
+
+	@Override
+	public void algorithmTerminated(AlgorithmEvent event) {
+		//Do nothing
+	}
+
+	/**
+	 * Main method
+	 *
+	 * @param args Configuration file, host, port, worker id and number of workers
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length < 5) {
+			System.out.println("Usage: coeaglet.distributed.Worker <configuration file> <host> <port> <worker id> <number of workers>");
+			System.exit(1);
+		}
+
+		XMLConfiguration conf = new XMLConfiguration(new File(args[0]));
+		Worker worker = new Worker(Integer.parseInt(args[3]), Integer.parseInt(args[4]), conf.subset("process"));
+		worker.run(args[1], Integer.parseInt(args[2]));
+	}
+}
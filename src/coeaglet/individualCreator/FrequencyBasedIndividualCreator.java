@@ -3,7 +3,9 @@ package coeaglet.individualCreator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.DoubleStream;
 
 import coeaglet.utils.Utils;
@@ -121,6 +123,8 @@ public class FrequencyBasedIndividualCreator extends MultipListCreator {
 		}
 		
 		//Create individuals
+		//	Created ones are also indexed to check repeated individuals in constant time
+		Set<IIndividual> created = new HashSet<IIndividual>(numberOfIndividuals);
 		ArrayList<Integer> list = new ArrayList<Integer>(k);
 		int index;
 		double [] probCopy;
@@ -148,8 +152,8 @@ public class FrequencyBasedIndividualCreator extends MultipListCreator {
 			Collections.sort(list);
 			
 			//Add individual to the list if it still does not exist
-			MultipListIndividual newInd = new MultipListIndividual(new MultipListGenotype(subpop, new ArrayList<Integer>(list)));
-			if(!Utils.contains(inds, newInd))
+			MultipListIndividual newInd = new MultipListIndividual(MultipListGenotype.of(subpop, new ArrayList<Integer>(list)));
+			if(created.add(newInd))
 			{	
 				inds.add(newInd);
 			}
@@ -165,7 +169,7 @@ public class FrequencyBasedIndividualCreator extends MultipListCreator {
 				//Get an individual including the label that most appear in the population
 				IIndividual maxLabelInd = getMaxLabelIndividual(inds, labelAppearances, aMin);
 				int p = ((MultipListIndividual)maxLabelInd).getGenotype().subpop;
-				ArrayList<Integer> gen = ((MultipListIndividual)maxLabelInd).getGenotype().genotype;
+				ArrayList<Integer> gen = new ArrayList<Integer>(((MultipListIndividual)maxLabelInd).getGenotype().genotype);
 				
 				//Get index of max label
 				int maxIndex = 0;
@@ -184,7 +188,7 @@ public class FrequencyBasedIndividualCreator extends MultipListCreator {
 				
 				//Remove old individual and add new one to subpopulation
 				inds.remove(maxLabelInd);
-				inds.add(new MultipListIndividual(new MultipListGenotype(p, gen)));
+				inds.add(new MultipListIndividual(MultipListGenotype.of(p, gen)));
 			}
 		}
 		
@@ -83,7 +83,7 @@ public class Mutator extends MultipListMutator {
 		gen.set(r1, r2);
 		Collections.sort(gen);
 		
-		sonsBuffer.add(species.createIndividual(new MultipListGenotype(mutant.getGenotype().subpop, gen)));
+		sonsBuffer.add(species.createIndividual(MultipListGenotype.of(mutant.getGenotype().subpop, gen)));
 	}
 	
 	@Override
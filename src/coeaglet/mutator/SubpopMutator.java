@@ -90,7 +90,7 @@ public class SubpopMutator extends MultipListMutator {
 			r = randgen.choose(0, nSubpops);
 		}while(r == currentSubpop);
 		
-		MultipListIndividual mutInd = new MultipListIndividual(new MultipListGenotype(r, gen));
+		MultipListIndividual mutInd = new MultipListIndividual(MultipListGenotype.of(r, gen));
 		
 		return mutInd;
 	}
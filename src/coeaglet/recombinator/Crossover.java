@@ -124,8 +124,8 @@ public class Crossover extends MultipListRecombinator {
 			Collections.sort(newSet2);
 					
 			//Create new individuals with new sets
-			MultipListIndividual s1 = new MultipListIndividual(new MultipListGenotype(p1.getGenotype().subpop, newSet1));
-			MultipListIndividual s2 = new MultipListIndividual(new MultipListGenotype(p2.getGenotype().subpop, newSet2));
+			MultipListIndividual s1 = new MultipListIndividual(MultipListGenotype.of(p1.getGenotype().subpop, newSet1));
+			MultipListIndividual s2 = new MultipListIndividual(MultipListGenotype.of(p2.getGenotype().subpop, newSet2));
 			
 			newSet1 = null;
 			newSet2 = null;
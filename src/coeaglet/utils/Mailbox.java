@@ -0,0 +1,92 @@
+package coeaglet.utils;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded mailbox that does not use locks.
+ * Several threads may send items, and one thread (the owner) takes them.
+ * When the mailbox is full, new items are dropped.
+ *
+ * @author Jose M. Moyano
+ *
+ * @param <T> Type of items
+ */
+public class Mailbox<T> {
+
+	/**
+	 * Items not taken yet
+	 */
+	ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+
+	/**
+	 * Number of items in the mailbox (including those being sent)
+	 */
+	AtomicInteger size = new AtomicInteger(0);
+
+	/**
+	 * Number of items dropped because the mailbox was full
+	 */
+	AtomicInteger dropped = new AtomicInteger(0);
+
+	/**
+	 * Max number of items
+	 */
+	int capacity;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity Max number of items
+	 */
+	public Mailbox(int capacity)
+	{
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Send an item to the mailbox
+	 *
+	 * @param item Item
+	 * @return True if it was stored and false if it was dropped
+	 */
+	public boolean offer(T item) {
+		if(size.incrementAndGet() > capacity) {
+			size.decrementAndGet();
+			dropped.incrementAndGet();
+			return false;
+		}
+
+		queue.offer(item);
+		return true;
+	}
+
+	/**
+	 * Take all items in the mailbox
+	 *
+	 * @param c Collection where items are added
+	 * @return Number of items taken
+	 */
+	public int drainTo(Collection<? super T> c) {
+		int n = 0;
+		T item;
+		while((item = queue.poll()) != null) {
+			size.decrementAndGet();
+			c.add(item);
+			n++;
+		}
+
+		return n;
+	}
+
+	/**
+	 * Get the number of items dropped so far
+	 *
+	 * @return Number of dropped items
+	 */
+	public int getDropped() {
+		return dropped.get();
+	}
+}
@@ -0,0 +1,93 @@
+package coeaglet.utils;
+
+import java.io.Serializable;
+
+/**
+ * Class deriving independent streams of random numbers from a single seed.
+ * Each stream is identified by its purpose and a list of indexes (e.g., subpopulation),
+ *  so the numbers it gives do not depend on how many other streams exist or in which order they are used.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class RandStreams implements Serializable {
+
+	/**
+	 * Serialization constant
+	 */
+	private static final long serialVersionUID = 2961571738364180915L;
+
+	/**
+	 * Stream of the main thread of the algorithm
+	 */
+	public static final int MAIN = 0;
+
+	/**
+	 * Streams of each subpopulation
+	 */
+	public static final int SUBPOP = 1;
+
+	/**
+	 * Streams given to the operators and other components when they are contextualized
+	 */
+	public static final int CONTEXT = 2;
+
+	/**
+	 * Streams for sampling data
+	 */
+	public static final int SAMPLE = 3;
+
+	/**
+	 * Seed
+	 */
+	long seed;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param seed Seed from which all streams are derived
+	 */
+	public RandStreams(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Getter for seed
+	 *
+	 * @return Seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Get the stream for a given purpose and indexes.
+	 * The same purpose and indexes always give a new generator with the same sequence.
+	 *
+	 * @param purpose Purpose of the stream
+	 * @param indexes Indexes identifying the stream within the purpose
+	 * @return Random numbers generator
+	 */
+	public StreamRandGen stream(int purpose, int... indexes) {
+		return new StreamRandGen(derive(purpose, indexes));
+	}
+
+	/**
+	 * Derive the initial state of a stream
+	 *
+	 * @param purpose Purpose of the stream
+	 * @param indexes Indexes identifying the stream within the purpose
+	 * @return Initial state
+	 */
+	public long derive(int purpose, int... indexes) {
+		long s = StreamRandGen.mix(seed + StreamRandGen.GAMMA);
+		s = StreamRandGen.mix(s + (purpose + 1) * StreamRandGen.GAMMA);
+		for(int index : indexes) {
+			s = StreamRandGen.mix(s + (index + 1) * StreamRandGen.GAMMA);
+		}
+
+		return s;
+	}
+}
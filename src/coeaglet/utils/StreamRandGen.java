@@ -0,0 +1,93 @@
+package coeaglet.utils;
+
+import net.sf.jclec.util.random.AbstractRandGen;
+
+/**
+ * Random numbers generator based on SplitMix64.
+ * Its whole state is a single long value, so independent streams can be cheaply derived from a seed
+ *  (see RandStreams), and the state can be stored and restored.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class StreamRandGen extends AbstractRandGen {
+
+	/**
+	 * Serialization constant
+	 */
+	private static final long serialVersionUID = -4409284530147583561L;
+
+	/**
+	 * Increment of the state at each step
+	 */
+	static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Current state
+	 */
+	long state;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param seed Initial state
+	 */
+	public StreamRandGen(long seed)
+	{
+		super();
+		this.state = seed;
+	}
+
+	/**
+	 * Getter for the state
+	 *
+	 * @return Current state
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Setter for the state
+	 *
+	 * @param state New state
+	 */
+	public void setState(long state) {
+		this.state = state;
+		BMoutput = null;
+	}
+
+	/**
+	 * Get next random long value
+	 *
+	 * @return Random long
+	 */
+	public long nextLong() {
+		state += GAMMA;
+		return mix(state);
+	}
+
+	@Override
+	public double raw() {
+		//Uniform in (0, 1), as the rest of generators
+		double r;
+		do {
+			r = (nextLong() >>> 11) * 0x1.0p-53;
+		}while(r == 0);
+
+		return r;
+	}
+
+	/**
+	 * Mixing function of SplitMix64
+	 *
+	 * @param z Value to mix
+	 * @return Mixed value
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
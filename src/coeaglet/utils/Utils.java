@@ -1,7 +1,10 @@
 package coeaglet.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.stream.DoubleStream;
 
 import mulan.data.InvalidDataFormatException;
@@ -41,6 +44,20 @@ public class Utils {
 		no, exchangeBestEnsemble, exchangeSubpop, operators,
 	};
 	
+	/**
+	 * Reasons to terminate the evolution
+	 *	maxGenerations: Max number of generations reached
+	 *	maxEvaluations: Max number of evaluations reached
+	 *	stagnation: Best ensemble not improved in a number of communications
+	 *	cacheHits: Most of the offspring were already evaluated before
+	 *	diversity: Individuals of subpopulations are too similar
+	 *	timeBudget: Time budget is about to be exceeded
+	 *	shutdown: Process was asked to terminate
+	 */
+	public enum TerminationReason{
+		maxGenerations, maxEvaluations, stagnation, cacheHits, diversity, timeBudget, shutdown,
+	};
+	
 	/**
 	 * Partition data into train and validation sets
 	 * 
@@ -49,32 +66,145 @@ public class Utils {
 	 * @return Sampled dataset
 	 */
 	public static MultiLabelInstances sampleData(MultiLabelInstances mlData, double ratio, IRandGen randgen){
-		MultiLabelInstances newMLData = null;
-		Instances data, newData;
+		return sampleData(mlData, sampleIndexes(mlData.getNumInstances(), ratio, randgen));
+	}
+	
+	/**
+	 * Select the indexes of the instances to sample
+	 * 
+	 * @param nInstances Number of instances of the full data
+	 * @param ratio Ratio of instances to sample
+	 * @param randgen Random numbers generator
+	 * @return Indexes of sampled instances, in order of selection
+	 */
+	public static int[] sampleIndexes(int nInstances, double ratio, IRandGen randgen){
+		//Number of instances to keep
+		int limit = (int)Math.round(nInstances * ratio); 
 		
-		//Create new empty dataset
-		data = mlData.getDataSet();
-		newData = new Instances(mlData.getDataSet());
-		newData.removeAll(newData);
+		return sampleIndexes(0, nInstances, limit, randgen);
+	}
+	
+	/**
+	 * Select a given number of indexes in a range of instances
+	 * 
+	 * @param from First index of the range (inclusive)
+	 * @param to Last index of the range (exclusive)
+	 * @param count Number of instances to sample
+	 * @param randgen Random numbers generator
+	 * @return Indexes of sampled instances, in order of selection
+	 */
+	public static int[] sampleIndexes(int from, int to, int count, IRandGen randgen){
+		int nInstances = to - from;
 		
 		//Get shuffle array of indexes
-		int [] indexes = new int[mlData.getNumInstances()];
-		for(int i=0; i<mlData.getNumInstances(); i++) {
-			indexes[i] = i;
+		int [] indexes = new int[nInstances];
+		for(int i=0; i<nInstances; i++) {
+			indexes[i] = from + i;
 		}
 		int r, aux;
-		for(int i=0; i<mlData.getNumInstances(); i++) {
-			r = randgen.choose(mlData.getNumInstances());
+		//A single instance is not shuffled (choose(n) cannot give any index then)
+		for(int i=0; i<nInstances && nInstances > 1; i++) {
+			r = randgen.choose(nInstances);
 			aux = indexes[i];
 			indexes[i] = indexes[r];
 			indexes[r] = aux;
 		}
 		
-		//Number of instances to keep
-		int limit = (int)Math.round(mlData.getNumInstances() * ratio); 
-
-		//Add corresponding random instances to new data
-		for(int i=0; i<limit; i++) {
+		int [] sampled = new int[count];
+		System.arraycopy(indexes, 0, sampled, 0, count);
+		
+		return sampled;
+	}
+	
+	/**
+	 * Extend a sample with instances appended to the full data.
+	 * New instances are sampled so the whole sample keeps the sampling ratio over all instances;
+	 *  previous indexes are kept in the same order, followed by the new ones.
+	 * 
+	 * @param sampled Indexes of the previous sample
+	 * @param nOld Number of instances when the previous sample was selected
+	 * @param nInstances Current number of instances of the full data
+	 * @param ratio Ratio of instances to sample
+	 * @param randgen Random numbers generator
+	 * @return Indexes of the extended sample
+	 */
+	public static int[] appendSampleIndexes(int [] sampled, int nOld, int nInstances, double ratio, IRandGen randgen){
+		int count = (int)Math.round(nInstances * ratio) - sampled.length;
+		count = Math.max(0, Math.min(count, nInstances - nOld));
+		
+		int [] added = sampleIndexes(nOld, nInstances, count, randgen);
+		int [] extended = Arrays.copyOf(sampled, sampled.length + count);
+		System.arraycopy(added, 0, extended, sampled.length, count);
+		
+		return extended;
+	}
+	
+	/**
+	 * Select the indexes of a sample stratified by labelset.
+	 * Instances are grouped by labelset and shuffled within each group; then, one out of each 1/ratio instances is 
+	 *  selected going through all groups, so each labelset keeps its proportion (up to one instance).
+	 * 
+	 * @param mlData Multi-label data
+	 * @param ratio Ratio of instances to sample
+	 * @param randgen Random numbers generator
+	 * @return Indexes of sampled instances
+	 */
+	public static int[] stratifiedSampleIndexes(MultiLabelInstances mlData, double ratio, IRandGen randgen){
+		Instances data = mlData.getDataSet();
+		int [] labelIndices = mlData.getLabelIndices();
+		
+		//Group instances by labelset; groups are sorted so the sample only depends on the generator
+		TreeMap<String, List<Integer>> groups = new TreeMap<String, List<Integer>>();
+		for(int i=0; i<data.numInstances(); i++) {
+			char [] labelset = new char[labelIndices.length];
+			for(int j=0; j<labelIndices.length; j++) {
+				labelset[j] = (data.get(i).value(labelIndices[j]) == 1) ? '1' : '0';
+			}
+			groups.computeIfAbsent(new String(labelset), key -> new ArrayList<Integer>()).add(i);
+		}
+		
+		//Systematic sampling over the shuffled groups, with random start
+		List<Integer> sampled = new ArrayList<Integer>();
+		double start = randgen.uniform(0, 1);
+		int pos = 0;
+		for(List<Integer> group : groups.values()) {
+			for(int i=group.size()-1; i>0; i--) {
+				Collections.swap(group, i, randgen.choose(0, i+1));
+			}
+			for(Integer index : group) {
+				if(Math.floor((pos + 1) * ratio + start) > Math.floor(pos * ratio + start)) {
+					sampled.add(index);
+				}
+				pos++;
+			}
+		}
+		
+		int [] indexes = new int[sampled.size()];
+		for(int i=0; i<indexes.length; i++) {
+			indexes[i] = sampled.get(i);
+		}
+		
+		return indexes;
+	}
+	
+	/**
+	 * Create a dataset with given instances of the full data
+	 * 
+	 * @param mlData Full data
+	 * @param indexes Indexes of instances to include
+	 * @return Sampled dataset
+	 */
+	public static MultiLabelInstances sampleData(MultiLabelInstances mlData, int [] indexes){
+		MultiLabelInstances newMLData = null;
+		Instances data, newData;
+		
+		//Create new empty dataset
+		data = mlData.getDataSet();
+		newData = new Instances(mlData.getDataSet());
+		newData.removeAll(newData);
+		
+		//Add corresponding instances to new data
+		for(int i=0; i<indexes.length; i++) {
 			newData.add(data.get(indexes[i]));
 		}
 		
@@ -90,6 +220,38 @@ public class Utils {
 		return newMLData;
 	}
 	
+	/**
+	 * Fingerprint of a dataset, given by its dimensions and the values of all its instances.
+	 * Two runs with the same fingerprint used the same data, so their fitness and models can be shared.
+	 * 
+	 * @param mlData Multi-label data
+	 * @return Fingerprint
+	 */
+	public static long fingerprint(MultiLabelInstances mlData){
+		return fingerprint(mlData, mlData.getNumInstances());
+	}
+	
+	/**
+	 * Fingerprint of the first instances of a dataset.
+	 * If it matches the fingerprint of a previous dataset with nInstances, new instances were only appended to it.
+	 * 
+	 * @param mlData Multi-label data
+	 * @param nInstances Number of instances considered
+	 * @return Fingerprint
+	 */
+	public static long fingerprint(MultiLabelInstances mlData, int nInstances){
+		Instances data = mlData.getDataSet();
+		long h = StreamRandGen.mix(data.numAttributes() * 31L + mlData.getNumLabels());
+		for(int i=0; i<nInstances; i++) {
+			Instance instance = data.get(i);
+			for(int j=0; j<data.numAttributes(); j++) {
+				h = StreamRandGen.mix(h ^ Double.doubleToLongBits(instance.value(j)));
+			}
+		}
+		
+		return h;
+	}
+	
 	/**
 	 * Get index of maximum in array. If several maximums, return a random one
 	 * 
@@ -167,7 +329,6 @@ public class Utils {
 		
 		return false;
 	}
-
 	
 	/**
 	 * Get appearances of each label in dataset
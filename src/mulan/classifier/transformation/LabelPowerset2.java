@@ -76,6 +76,16 @@ public class LabelPowerset2 extends TransformationBasedMultiLabelLearner {
      * Random number generator for randomly solving tied predictions
      */
     protected Random Rand;
+    /**
+     * Seed for solving tied predictions
+     */
+    protected int seed = 1;
+    /**
+     * Whether ties are solved with a random number generator seeded with the
+     * seed and the values of each instance, instead of a shared one. Then,
+     * predictions do not depend on the order nor the threads making them
+     */
+    protected boolean instanceSeededTies = false;
 
     /**
      * Conststructor that initializes the learner with a base classifier
@@ -102,9 +112,28 @@ public class LabelPowerset2 extends TransformationBasedMultiLabelLearner {
      * @param s the seed
      */
     public void setSeed(int s) {
+        seed = s;
         Rand = new Random(s);
     }
 
+    /**
+     * Sets whether ties are solved with a generator seeded for each instance
+     *
+     * @param value true to seed the generator for each instance
+     */
+    public void setInstanceSeededTies(boolean value) {
+        instanceSeededTies = value;
+    }
+
+    /**
+     * Checks whether the training data only had one labelset, so no base classifier was built
+     *
+     * @return true if the transformed data has a unary class
+     */
+    public boolean isUnary() {
+        return transformation.getTransformedFormat().classAttribute().numValues() == 1;
+    }
+
     /**
      * The threshold for obtaining the bipartition from probabilities
      * 
@@ -157,17 +186,21 @@ public class LabelPowerset2 extends TransformationBasedMultiLabelLearner {
             confidences = labelSet.toDoubleArray();
         } else {
             double[] distribution = null;
+            Random rand = Rand;
             try {
                 //debug("old instance:" + instance.toString());
                 Instance transformedInstance;
                 transformedInstance = transformation.transformInstance(instance, labelIndices);
                 distribution = baseClassifier.distributionForInstance(transformedInstance);
+                if (instanceSeededTies) {
+                    rand = new Random(31L * seed + instanceHash(transformedInstance));
+                }
                 //debug(Arrays.toString(distribution));
             } catch (Exception ex) {
                 Logger.getLogger(LabelPowerset2.class.getName()).log(Level.SEVERE, null, ex);
             }
             //System.out.println(Arrays.toString(distribution));
-            int classIndex = Util2.RandomIndexOfMax(distribution, Rand);
+            int classIndex = Util2.RandomIndexOfMax(distribution, rand);
             //debug("" + classIndex);
             String strClass = (transformation.getTransformedFormat().classAttribute()).value(classIndex);
             LabelSet labelSet = null;
@@ -225,4 +258,21 @@ public class LabelPowerset2 extends TransformationBasedMultiLabelLearner {
         MultiLabelOutput mlo = new MultiLabelOutput(bipartition, confidences);
         return mlo;
     }
-}
\ No newline at end of file
+
+    /**
+     * Hash of the feature values of a transformed instance (class is excluded)
+     *
+     * @param instance the transformed instance
+     * @return hash of the instance
+     */
+    protected int instanceHash(Instance instance) {
+        int hash = 1;
+        for (int i = 0; i < instance.numAttributes(); i++) {
+            if (i != instance.classIndex()) {
+                long bits = Double.doubleToLongBits(instance.value(i));
+                hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+            }
+        }
+        return hash;
+    }
+}
@@ -15,12 +15,16 @@ public class RunExperiment
 {
 	/** Usage message error */
 	
-	private static final String USAGE_MES = "\tnet.sf.jclec.RunExperiment <experiment file>\t\t(Execute experiment)";
+	private static final String USAGE_MES = "\tnet.sf.jclec.RunExperiment <experiment file> [-resume]\t\t(Execute experiment, resuming runs from their checkpoints if -resume)";
+	
+	/** Indicates if runs are resumed from their checkpoints */
+	
+	private static boolean resume = false;
 	
 	/**
 	 * Main method
 	 * 
-	 * @param args Configuration File
+	 * @param args Configuration File and, optionally, -resume
 	 */
 	
 	public static void main(String[] args) 
@@ -31,6 +35,8 @@ public class RunExperiment
 		}
 		// First arg must be a filename
 		else {
+			resume = (args.length > 1 && args[1].equals("-resume"));
+			
 			ExperimentBuilder builder = new ExperimentBuilder();
 			
 			System.out.println("Initializing job");
@@ -64,6 +70,10 @@ public class RunExperiment
 				XMLConfiguration jobConf = new XMLConfiguration(jobFile);
 				// Process header
 				String header = "process";
+				// Resume from checkpoint (if it exists)
+				if (resume) {
+					jobConf.setProperty(header+".checkpoint[@resume]", true);
+				}
 				// Create and configure algorithms
 				String aname = jobConf.getString(header+"[@algorithm-type]");
 				Class<IAlgorithm> aclass = (Class<IAlgorithm>) Class.forName(aname);
@@ -1,13 +1,20 @@
 package net.sf.jclec.algorithm;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.sf.jclec.algorithm.PopulationAlgorithm;
 import net.sf.jclec.listind.MultipListCreator;
+import net.sf.jclec.listind.MultipListIndividual;
+import net.sf.jclec.listind.MultipListStore;
 import net.sf.jclec.util.random.IRandGen;
 import net.sf.jclec.IIndividual;
 
+import coeaglet.utils.RandStreams;
+import coeaglet.utils.StreamRandGen;
+
 import org.apache.commons.lang.builder.EqualsBuilder;
 
 import org.apache.commons.configuration.Configuration;
@@ -50,8 +57,23 @@ public abstract class MultiPopulationAlgorithm extends PopulationAlgorithm
 	/** Individuals to replace */
 	protected transient List<List<IIndividual>> rset;
 	
+	/** Individuals of each subpopulation, to check in constant time if an individual is in its subpopulation; kept along with bset */
+	protected transient List<Set<IIndividual>> bindex;
+	
+	/** Structure-of-arrays store of each subpopulation, kept across generations */
+	protected transient MultipListStore [] stores;
+	
 	/** Random number generator */
 	protected IRandGen randgen;
+	
+	/** Independent random streams derived from the seed (only in deterministic mode) */
+	protected RandStreams streams;
+	
+	/** Random number generator of each subpopulation (only in deterministic, island and asynchronous modes) */
+	protected IRandGen [] subpopRandgen;
+	
+	/** Streams given to contextualized components, in order of creation (only in deterministic mode) */
+	protected List<StreamRandGen> contextStreams = new ArrayList<StreamRandGen>();
 
 	/////////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
@@ -92,6 +114,26 @@ public abstract class MultiPopulationAlgorithm extends PopulationAlgorithm
 		return bset.get(p);
 	}
 
+	/**
+	 * Get a structure-of-arrays store with the individuals of a given subpopulation.
+	 * The store of each subpopulation is kept and filled again at each call, so its arrays are reused across generations;
+	 * it is only valid until the next call for the same subpopulation, and later changes in the subpopulation are not reflected.
+	 * 
+	 * @param p Index of subpopulation
+	 * @return Store with the subpopulation; positions are those in the subpopulation
+	 */
+	public MultipListStore getStore(int p) 
+	{
+		if (stores == null || stores.length != numSubpop) {
+			stores = new MultipListStore[numSubpop];
+		}
+		if (stores[p] == null) {
+			stores[p] = new MultipListStore(0, subpopSize);
+		}
+		
+		return stores[p].fill(bset.get(p));
+	}
+
 	/**
 	 * Set subspopulations
 	 * 
@@ -100,6 +142,7 @@ public abstract class MultiPopulationAlgorithm extends PopulationAlgorithm
 	public final void setMultiInhabitants(List<List<IIndividual>> inhabitants)
 	{
 		this.bset = inhabitants;
+		reindex();
 	}
 	
 	/**
@@ -110,7 +153,58 @@ public abstract class MultiPopulationAlgorithm extends PopulationAlgorithm
 	 */
 	public final void setInhabitants(List<IIndividual> inhabitants, int p)
 	{
-		this.bset.set(p, inhabitants);
+		setSubpop(p, inhabitants);
+	}
+	
+	/**
+	 * Index the individuals of all subpopulations again, after bset is replaced as a whole
+	 */
+	protected void reindex()
+	{
+		bindex = new ArrayList<Set<IIndividual>>(bset.size());
+		for (List<IIndividual> pop : bset) {
+			bindex.add(new HashSet<IIndividual>(pop));
+		}
+	}
+	
+	/**
+	 * Replace the individuals of a given subpopulation, updating its index
+	 * 
+	 * @param p Index of subpopulation
+	 * @param inds New individuals of the subpopulation
+	 */
+	protected void setSubpop(int p, List<IIndividual> inds)
+	{
+		bset.set(p, inds);
+		bindex.set(p, new HashSet<IIndividual>(inds));
+	}
+	
+	/**
+	 * Add an individual to its subpopulation, unless it is already there
+	 * 
+	 * @param ind Individual
+	 * @return True if it was added
+	 */
+	protected boolean addToSubpop(IIndividual ind)
+	{
+		int p = ((MultipListIndividual) ind).getSubpop();
+		if (bindex.get(p).add(ind)) {
+			bset.get(p).add(ind);
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Check in constant time if an individual is in its subpopulation
+	 * 
+	 * @param ind Individual
+	 * @return True if it is in its subpopulation
+	 */
+	protected boolean isInSubpop(IIndividual ind)
+	{
+		return bindex.get(((MultipListIndividual) ind).getSubpop()).contains(ind);
 	}
 
 	/**
@@ -156,6 +250,11 @@ public abstract class MultiPopulationAlgorithm extends PopulationAlgorithm
 	 * <code>provider: IProvider (complex)</code></p>
 	 * Individuals provider
 	 * </li>
+	 * <li>
+	 * <code>deterministic: boolean</code></p>
+	 * If true, all random numbers come from independent streams derived from the seed, 
+	 * so results do not depend on the number of threads (default false)
+	 * </li>
 	 * </ul>
 	 */
 	public void configure(Configuration configuration)
@@ -169,7 +268,45 @@ public abstract class MultiPopulationAlgorithm extends PopulationAlgorithm
 		
 		generationsComm = configuration.getInt("ngenerations-comm");
 		
-		randgen = randGenFactory.createRandGen();
+		if (configuration.getBoolean("deterministic", false)) {
+			// From here on, contextualized components also get derived streams
+			streams = new RandStreams(configuration.getLong("rand-gen-factory[@seed]", 0));
+			randgen = streams.stream(RandStreams.MAIN, 0);
+			subpopRandgen = new IRandGen[numSubpop];
+			for (int p=0; p<numSubpop; p++) {
+				subpopRandgen[p] = streams.stream(RandStreams.SUBPOP, p);
+			}
+		}
+		else {
+			randgen = randGenFactory.createRandGen();
+		}
+	}
+	
+	/**
+	 * Indicates if the algorithm runs in deterministic mode
+	 * 
+	 * @return True if random numbers come from streams derived from the seed
+	 */
+	public final boolean isDeterministic()
+	{
+		return streams != null;
+	}
+	
+	/**
+	 * Create a random numbers generator for a contextualized component.
+	 * In deterministic mode, streams are numbered in order of creation, which is fixed by the configuration
+	 * and does not depend on the threads.
+	 */
+	@Override
+	public IRandGen createRandGen()
+	{
+		if (streams != null) {
+			StreamRandGen stream = streams.stream(RandStreams.CONTEXT, contextStreams.size());
+			contextStreams.add(stream);
+			return stream;
+		}
+		
+		return super.createRandGen();
 	}
 	
 	
@@ -233,6 +370,7 @@ public abstract class MultiPopulationAlgorithm extends PopulationAlgorithm
 			// Evaluate individuals
 			evaluator.evaluate(bset.get(p));
 		}
+		reindex();
 
 		// Do Control
 		doControl();
@@ -10,14 +10,29 @@ import net.sf.jclec.base.FilteredMutator;
 import net.sf.jclec.base.FilteredRecombinator;
 import net.sf.jclec.listind.MultipListGenotype;
 import net.sf.jclec.listind.MultipListIndividual;
+import net.sf.jclec.selector.BettersSelector;
+import net.sf.jclec.util.random.IRandGen;
 import net.sf.jclec.algorithm.MultiPopulationAlgorithm;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 
 import coeaglet.algorithm.MultipAbstractParallelEvaluator;
+import coeaglet.utils.Mailbox;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
@@ -53,6 +68,84 @@ public class MultiSG extends MultiPopulationAlgorithm
 	/** Individuals recombinator */
 	protected FilteredRecombinator recombinator;
 	
+	/** Indicates if each subpopulation is updated as soon as its offspring are evaluated */
+	protected boolean pipelined;
+	
+	/** Subpopulations with offspring already evaluated, in order of completion (pipelined mode) */
+	protected transient BlockingQueue<Integer> evaluatedSubpops;
+	
+	/** Evaluation of the offspring of each subpopulation, checked before updating it (pipelined mode) */
+	protected transient List<CompletableFuture<Void>> subpopEvaluations;
+	
+	/** Parents selector of each subpopulation (only in deterministic, island and asynchronous modes) */
+	protected ISelector [] subpopParentsSelector;
+	
+	/** Recombinator of each subpopulation (only in deterministic, island and asynchronous modes) */
+	protected FilteredRecombinator [] subpopRecombinator;
+	
+	/** Mutator of each subpopulation (only in deterministic, island and asynchronous modes) */
+	protected FilteredMutator [] subpopMutator;
+	
+	/** Indicates if the generation of each subpopulation (island) runs as a concurrent task */
+	protected boolean islands;
+	
+	/** Executor of the islands */
+	protected transient ExecutorService islandExecutor;
+	
+	/** Indicates if subpopulations evolve asynchronously in steady-state mode */
+	protected boolean asynchronous;
+	
+	/** Number of evaluations between consecutive snapshots (asynchronous mode) */
+	protected int snapshotEvaluations;
+	
+	/** Number of offspring generated at each steady-state step (asynchronous mode) */
+	protected int steadyStateOffspring;
+	
+	/** Max number of migrants waiting in each mailbox (asynchronous mode) */
+	protected int mailboxCapacity;
+	
+	/** Live subpopulation of each island; each one is only accessed by its island (asynchronous mode) */
+	protected transient List<List<IIndividual>> islandPops;
+	
+	/** Last snapshot published by each island (asynchronous mode) */
+	protected transient AtomicReferenceArray<List<IIndividual>> islandSnapshots;
+	
+	/** Mailbox of migrants of each island (asynchronous mode) */
+	protected transient List<Mailbox<IIndividual>> mailboxes;
+	
+	/** Task of each island (asynchronous mode) */
+	protected transient CompletableFuture<?> [] islandTasks;
+	
+	/** Indicates if the islands must keep running (asynchronous mode) */
+	protected transient volatile boolean islandsRunning;
+	
+	/** Number of evaluations at which next snapshot is taken (asynchronous mode) */
+	protected transient volatile int nextSnapshot;
+	
+	/** Monitor notified by the islands when the next snapshot is due or any of them finishes (asynchronous mode) */
+	protected transient Object snapshotMonitor;
+	
+	/** Time at which islands started (asynchronous mode) */
+	protected transient long asyncStartTime;
+	
+	/** Number of evaluations when islands started (asynchronous mode) */
+	protected transient int asyncStartEvaluations;
+	
+	/** Number of offspring of each subpopulation at each generation (if null, subpopulation size for all) */
+	protected int [] offspringQuota;
+	
+	/** Indicates if offspring already evaluated or repeated are mutated again until a new genotype is obtained */
+	protected boolean tabuVariation;
+	
+	/** Max number of extra mutations to obtain a new genotype for an offspring (tabu-aware variation) */
+	protected int tabuAttempts;
+	
+	/** Number of offspring generated since the ratio of fresh offspring was last obtained (tabu-aware variation) */
+	protected transient AtomicInteger offspringCount = new AtomicInteger();
+	
+	/** Number of those offspring never evaluated before (tabu-aware variation) */
+	protected transient AtomicInteger freshOffspringCount = new AtomicInteger();
+	
 	/////////////////////////////////////////////////////////////////
 	// ------------------------------------------------- Constructors
 	/////////////////////////////////////////////////////////////////
@@ -119,6 +212,39 @@ public class MultiSG extends MultiPopulationAlgorithm
 		this.recombinator.setDecorated(recombinator);
 	}
 	
+	/**
+	 * Access to parents selector of a given subpopulation
+	 * 
+	 * @param p Index of subpopulation
+	 * @return Parents selector
+	 */
+	public ISelector getParentsSelector(int p) 
+	{
+		return (subpopParentsSelector != null) ? subpopParentsSelector[p] : parentsSelector;
+	}
+	
+	/**
+	 * Access to parents recombinator of a given subpopulation
+	 * 
+	 * @param p Index of subpopulation
+	 * @return Filtered recombinator
+	 */
+	public FilteredRecombinator getRecombinator(int p) 
+	{
+		return (subpopRecombinator != null) ? subpopRecombinator[p] : recombinator;
+	}
+	
+	/**
+	 * Access to the number of offspring generated for a given subpopulation at each generation
+	 * 
+	 * @param p Index of subpopulation
+	 * @return Number of offspring
+	 */
+	public int getOffspringQuota(int p) 
+	{
+		return (offspringQuota != null) ? offspringQuota[p] : subpopSize;
+	}
+	
 	/**
 	 * Access to recombination probability
 	 * 
@@ -165,6 +291,17 @@ public class MultiSG extends MultiPopulationAlgorithm
 		this.mutator.setDecorated(mutator);
 	}
 	
+	/**
+	 * Access to individuals mutator of a given subpopulation
+	 * 
+	 * @param p Index of subpopulation
+	 * @return Filtered mutator
+	 */
+	public FilteredMutator getMutator(int p) 
+	{
+		return (subpopMutator != null) ? subpopMutator[p] : mutator;
+	}
+	
 	/**
 	 * Access to mutation probability
 	 * 
@@ -240,7 +377,44 @@ public class MultiSG extends MultiPopulationAlgorithm
 	 * 		</li>
 	 * 		</ul> 
 	 * </li>
+	 * <li>
+	 * <code>pipelined-evaluation: boolean</code></p>
+	 * If true, each subpopulation is updated as soon as its offspring are evaluated (default false)
+	 * </li>
+	 * <li>
+	 * <code>number-threads: int</code></p>
+	 * Number of threads to evaluate individuals (default, number of available processors)
+	 * </li>
+	 * <li>
+	 * <code>island-execution: boolean</code></p>
+	 * If true, selection, generation, evaluation and update of each subpopulation run as a concurrent task, 
+	 * synchronized only before control and communication (default false)
+	 * </li>
+	 * <li>
+	 * <code>asynchronous-islands: (complex)</code>
+	 * 		<ul>
+	 * 		<li>
+	 * 		<code>asynchronous-islands[@enabled] boolean</code></p>
+	 * 		If true, each subpopulation evolves in steady-state mode at its own pace, 
+	 * 		and each generation is a snapshot of all subpopulations, followed by control and communication (default false)
+	 * 		</li><li>
+	 * 		<code>asynchronous-islands[@snapshot-evaluations] int</code></p>
+	 * 		Number of evaluations between snapshots (default, population size)
+	 * 		</li><li>
+	 * 		<code>asynchronous-islands[@offspring] int</code></p>
+	 * 		Number of offspring at each steady-state step (default 2)
+	 * 		</li><li>
+	 * 		<code>asynchronous-islands[@mailbox-capacity] int</code></p>
+	 * 		Max number of migrants waiting for each island (default, subpopulation size)
+	 * 		</li>
+	 * 		</ul> 
+	 * </li>
 	 * </ul>
+	 * 
+	 * In deterministic and island modes, each subpopulation has its own instance of each operator, 
+	 * so each one has its own stream of random numbers.
+	 * In island mode, results are committed once all islands finish the generation, so tabu-aware variation 
+	 * is reproducible in deterministic mode; it is not with asynchronous islands, so that combination is rejected.
 	 */
 	@SuppressWarnings("unchecked")
 	public void configure(Configuration configuration)
@@ -341,7 +515,85 @@ public class MultiSG extends MultiPopulationAlgorithm
 		// Mutation probability 
 		double mutProb = configuration.getDouble("mutator[@mut-prob]");
 		setMutationProb(mutProb);
-	}	
+		// Pipelined evaluation
+		pipelined = configuration.getBoolean("pipelined-evaluation", false);
+		// Number of threads
+		int numThreads = configuration.getInt("number-threads", Runtime.getRuntime().availableProcessors());
+		((MultipAbstractParallelEvaluator)evaluator).setNumThreads(numThreads);
+		// Tabu-aware variation
+		tabuVariation = configuration.getBoolean("tabu-variation[@enabled]", false);
+		tabuAttempts = configuration.getInt("tabu-variation[@attempts]", 5);
+		// Island execution
+		islands = configuration.getBoolean("island-execution", false);
+		// Asynchronous islands; communication is performed at each snapshot
+		asynchronous = configuration.getBoolean("asynchronous-islands[@enabled]", false);
+		if (asynchronous) {
+			snapshotEvaluations = configuration.getInt("asynchronous-islands[@snapshot-evaluations]", populationSize);
+			steadyStateOffspring = configuration.getInt("asynchronous-islands[@offspring]", 2);
+			mailboxCapacity = configuration.getInt("asynchronous-islands[@mailbox-capacity]", populationSize / numSubpop);
+			if (generationsComm != 1) {
+				System.out.println("Asynchronous islands communicate at each snapshot; ngenerations-comm is set to 1 (it was " + generationsComm + ")");
+			}
+			generationsComm = 1;
+			// Islands read the tables while others commit, at a pace that depends on the threads
+			if (tabuVariation && isDeterministic()) {
+				throw new ConfigurationRuntimeException("Tabu-aware variation is not reproducible with asynchronous islands in deterministic mode");
+			}
+		}
+		if ((islands || asynchronous) && subpopRandgen == null) {
+			subpopRandgen = new IRandGen[numSubpop];
+			for (int p=0; p<numSubpop; p++) {
+				subpopRandgen[p] = randGenFactory.createRandGen();
+			}
+		}
+		// Operators of each subpopulation
+		if (isDeterministic() || islands || asynchronous) {
+			subpopParentsSelector = new ISelector[numSubpop];
+			subpopRecombinator = new FilteredRecombinator[numSubpop];
+			subpopMutator = new FilteredMutator[numSubpop];
+			for (int p=0; p<numSubpop; p++) {
+				subpopParentsSelector[p] = newOperator(configuration, "parents-selector");
+				subpopParentsSelector[p].contextualize(this);
+				
+				subpopRecombinator[p] = new FilteredRecombinator(this);
+				subpopRecombinator[p].setDecorated(this.<IRecombinator>newOperator(configuration, "recombinator"));
+				subpopRecombinator[p].setRecProb(recProb);
+				
+				subpopMutator[p] = new FilteredMutator(this);
+				subpopMutator[p].setDecorated(this.<IMutator>newOperator(configuration, "mutator"));
+				subpopMutator[p].setMutProb(mutProb);
+			}
+		}
+	}
+	
+	/**
+	 * Create and configure a new instance of an operator
+	 * 
+	 * @param configuration Configuration
+	 * @param key Key of the operator in the configuration
+	 * @return New operator
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T newOperator(Configuration configuration, String key)
+	{
+		String classname = configuration.getString(key + "[@type]");
+		try {
+			T operator = (T) Class.forName(classname).getDeclaredConstructor().newInstance();
+			if (operator instanceof IConfigure) {
+				((IConfigure) operator).configure(configuration.subset(key));
+			}
+			return operator;
+		}
+		catch (ClassNotFoundException e) {
+			throw new ConfigurationRuntimeException("Illegal " + key + " classname");
+		} 
+		catch (InstantiationException | NoSuchMethodException | InvocationTargetException e) {
+			throw new ConfigurationRuntimeException("Problems creating an instance of " + key + " " + classname, e);
+		} 
+		catch (IllegalAccessException e) {
+			throw new ConfigurationRuntimeException("Problems creating an instance of " + key, e);
+		}
+	}
 	
 	// java.lang.Object methods
 
@@ -372,67 +624,529 @@ public class MultiSG extends MultiPopulationAlgorithm
 	// -------------------------------------------- Protected methods
 	/////////////////////////////////////////////////////////////////
 	
+	@Override
+	protected void doIterate()
+	{
+		if (asynchronous) {
+			doAsyncIteration();
+			return;
+		}
+		if (!islands) {
+			super.doIterate();
+			return;
+		}
+		
+		generation++;
+		pset = emptySubpopSets();
+		cset = emptySubpopSets();
+		rset = emptySubpopSets();
+		// Each island performs its whole generation as a task
+		CompletableFuture<?> [] futures = new CompletableFuture<?>[numSubpop];
+		for (int p=0; p<numSubpop; p++) {
+			final int island = p;
+			futures[p] = CompletableFuture.runAsync(() -> doIsland(island), getIslandExecutor());
+		}
+		// Synchronization point before control and communication
+		CompletableFuture.allOf(futures).join();
+		// Results are committed in the order of subpopulations once all islands finish, so during
+		// the generation every island sees the tables of the previous one, whatever the threads
+		MultipAbstractParallelEvaluator eval = (MultipAbstractParallelEvaluator)evaluator;
+		for (int p=0; p<numSubpop; p++) {
+			eval.commit(cset.get(p));
+		}
+		afterUpdate();
+		// Do control
+		doControl();
+	}
+	
+	/**
+	 * Perform a whole generation over a given subpopulation (island mode)
+	 * 
+	 * @param p Index of subpopulation
+	 */
+	protected void doIsland(int p)
+	{
+		MultipAbstractParallelEvaluator eval = (MultipAbstractParallelEvaluator)evaluator;
+		
+		doSelection(p);
+		if (stopRequested()) {
+			cset.set(p, new ArrayList<IIndividual>());
+		}
+		else {
+			doGeneration(p);
+		}
+		eval.evaluateAsync(cset.get(p)).join();
+		doReplacement(p);
+		doUpdate(p);
+	}
+	
+	/**
+	 * Iteration in asynchronous mode.
+	 * Islands evolve on their own; here, it waits until enough evaluations are performed 
+	 * and then takes a snapshot of all subpopulations to control and communicate them.
+	 * Individuals added to any subpopulation in the communication are sent to the islands as migrants.
+	 */
+	protected void doAsyncIteration()
+	{
+		if (islandTasks == null) {
+			startAsyncIslands();
+		}
+		
+		// Wait for the next snapshot; islands notify when it is due, or when any of them fails
+		synchronized (snapshotMonitor) {
+			while (evaluator.getNumberOfEvaluations() < nextSnapshot && !stopRequested()) {
+				for (CompletableFuture<?> task : islandTasks) {
+					if (task.isCompletedExceptionally()) {
+						task.join();
+					}
+				}
+				try {
+					snapshotMonitor.wait();
+				}
+				catch (InterruptedException e) {
+					throw new IllegalStateException("Interrupted while waiting for islands", e);
+				}
+			}
+		}
+		nextSnapshot += snapshotEvaluations;
+		
+		generation++;
+		bset = new ArrayList<List<IIndividual>>(numSubpop);
+		Set<IIndividual> before = new HashSet<IIndividual>();
+		for (int p=0; p<numSubpop; p++) {
+			bset.add(new ArrayList<IIndividual>(islandSnapshots.get(p)));
+			before.addAll(islandSnapshots.get(p));
+		}
+		reindex();
+		
+		// Do control
+		doControl();
+		
+		if (state == FINISHED) {
+			stopAsyncIslands();
+			return;
+		}
+		
+		// Send migrants
+		int dropped = 0;
+		for (int p=0; p<numSubpop; p++) {
+			for (IIndividual ind : bset.get(p)) {
+				if (!before.contains(ind) && !mailboxes.get(p).offer(ind.copy())) {
+					dropped++;
+				}
+			}
+		}
+		if (dropped > 0) {
+			System.out.println("Migrants dropped by full mailboxes: " + dropped);
+		}
+	}
+	
+	/**
+	 * Start the asynchronous islands from current subpopulations
+	 */
+	protected void startAsyncIslands()
+	{
+		islandPops = new ArrayList<List<IIndividual>>(numSubpop);
+		islandSnapshots = new AtomicReferenceArray<List<IIndividual>>(numSubpop);
+		mailboxes = new ArrayList<Mailbox<IIndividual>>(numSubpop);
+		for (int p=0; p<numSubpop; p++) {
+			islandPops.add(new ArrayList<IIndividual>(bset.get(p)));
+			islandSnapshots.set(p, Collections.unmodifiableList(new ArrayList<IIndividual>(bset.get(p))));
+			mailboxes.add(new Mailbox<IIndividual>(mailboxCapacity));
+		}
+		
+		nextSnapshot = evaluator.getNumberOfEvaluations() + snapshotEvaluations;
+		snapshotMonitor = new Object();
+		asyncStartTime = System.currentTimeMillis();
+		asyncStartEvaluations = evaluator.getNumberOfEvaluations();
+		
+		islandsRunning = true;
+		islandTasks = new CompletableFuture<?>[numSubpop];
+		for (int p=0; p<numSubpop; p++) {
+			final int island = p;
+			islandTasks[p] = CompletableFuture.runAsync(() -> doAsyncIsland(island), getIslandExecutor());
+			islandTasks[p].whenComplete((r, e) -> notifySnapshot());
+		}
+	}
+	
+	/**
+	 * Stop the asynchronous islands (if running), waiting for their current step to finish
+	 */
+	protected void stopAsyncIslands()
+	{
+		if (islandTasks != null) {
+			islandsRunning = false;
+			CompletableFuture.allOf(islandTasks).join();
+			islandTasks = null;
+		}
+	}
+	
+	/**
+	 * Evolve a given subpopulation in steady-state mode until the islands are stopped.
+	 * At each step, a few offspring are generated and evaluated together with the migrants received, 
+	 * and then the subpopulation is updated and a snapshot of it is published.
+	 * 
+	 * @param p Index of subpopulation
+	 */
+	protected void doAsyncIsland(int p)
+	{
+		MultipAbstractParallelEvaluator eval = (MultipAbstractParallelEvaluator)evaluator;
+		List<IIndividual> pop = islandPops.get(p);
+		
+		while (islandsRunning) {
+			List<IIndividual> offspring = breed(p, getParentsSelector(p).select(pop, steadyStateOffspring));
+			mailboxes.get(p).drainTo(offspring);
+			
+			eval.evaluateAsync(offspring).join();
+			eval.commit(offspring);
+			
+			pop = steadyStateUpdate(p, pop, offspring);
+			islandPops.set(p, pop);
+			islandSnapshots.set(p, Collections.unmodifiableList(new ArrayList<IIndividual>(pop)));
+			
+			if (evaluator.getNumberOfEvaluations() >= nextSnapshot) {
+				notifySnapshot();
+			}
+		}
+	}
+	
+	/**
+	 * Wake up the algorithm waiting for the next snapshot (asynchronous mode)
+	 */
+	protected void notifySnapshot()
+	{
+		Object monitor = snapshotMonitor;
+		if (monitor != null) {
+			synchronized (monitor) {
+				monitor.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Check if the evolution has been asked to stop as soon as possible.
+	 * Then, subpopulations not generated yet in the current generation get no offspring, 
+	 * and the next snapshot is taken without waiting (asynchronous mode).
+	 * By default, it is never asked.
+	 * 
+	 * @return True if the evolution should stop
+	 */
+	protected boolean stopRequested()
+	{
+		return false;
+	}
+	
+	/**
+	 * Update a subpopulation with evaluated offspring in steady-state mode.
+	 * By default, best individuals are kept.
+	 * 
+	 * @param p Index of subpopulation
+	 * @param pop Current subpopulation
+	 * @param offspring Evaluated offspring (and migrants)
+	 * @return New subpopulation
+	 */
+	protected List<IIndividual> steadyStateUpdate(int p, List<IIndividual> pop, List<IIndividual> offspring)
+	{
+		List<IIndividual> all = new ArrayList<IIndividual>(pop);
+		all.addAll(offspring);
+		
+		return new BettersSelector(this).select(all, pop.size());
+	}
+	
+	/**
+	 * Get the number of evaluations per second since asynchronous islands started
+	 * 
+	 * @return Evaluations per second
+	 */
+	public double getEvaluationsPerSecond()
+	{
+		double seconds = (System.currentTimeMillis() - asyncStartTime) / 1000.0;
+		if (seconds <= 0) {
+			return 0;
+		}
+		
+		return (evaluator.getNumberOfEvaluations() - asyncStartEvaluations) / seconds;
+	}
+	
+	/**
+	 * Get the executor to run the islands, creating it if needed
+	 * 
+	 * @return Executor
+	 */
+	protected synchronized ExecutorService getIslandExecutor()
+	{
+		if (islandExecutor == null) {
+			islandExecutor = Executors.newFixedThreadPool(numSubpop, r -> {
+				Thread t = new Thread(r, "island");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		
+		return islandExecutor;
+	}
+	
+	/**
+	 * Stop the executor of the islands (if any)
+	 */
+	protected void shutdownIslands()
+	{
+		if (islandExecutor != null) {
+			islandExecutor.shutdown();
+			islandExecutor = null;
+		}
+	}
+	
+	/**
+	 * Create a list with an empty position for each subpopulation
+	 * 
+	 * @return List of size numSubpop
+	 */
+	protected List<List<IIndividual>> emptySubpopSets()
+	{
+		return new ArrayList<List<IIndividual>>(Collections.<List<IIndividual>>nCopies(numSubpop, null));
+	}
+	
 	@Override
 	protected void doSelection() 
 	{
-		pset = new ArrayList<List<IIndividual>>(numSubpop);
+		pset = emptySubpopSets();
 
 		for(int p=0; p<numSubpop; p++) {
-			pset.add(p, parentsSelector.select(bset.get(p), subpopSize));
+			doSelection(p);
 		}
 	}
+	
+	/**
+	 * Select parents of a given subpopulation
+	 * 
+	 * @param p Index of subpopulation
+	 */
+	protected void doSelection(int p) 
+	{
+		pset.set(p, getParentsSelector(p).select(bset.get(p), getOffspringQuota(p)));
+	}
 
 	@Override
 	protected void doGeneration() 
 	{
-		cset = new ArrayList<List<IIndividual>>(numSubpop);
+		cset = emptySubpopSets();
+		evaluatedSubpops = new LinkedBlockingQueue<Integer>(numSubpop);
+		subpopEvaluations = new ArrayList<CompletableFuture<Void>>(Collections.nCopies(numSubpop, (CompletableFuture<Void>)null));
 		for(int i=0; i<numSubpop; i++) {
-			// Recombine parents
-			cset.add(i, recombinator.recombine(pset.get(i)));
-			
-			// Add non-recombined inds. 
-			// These individuals are references to existent individuals 
-			// (elements of bset) so we make a copy of them
-			for (IIndividual ind : recombinator.getSterile()) 
-				cset.get(i).add(ind.copy());
-			
-			// Mutate filtered inds
-			cset.set(i, mutator.mutate(cset.get(i)));
-			
-			// Add non-mutated inds. 
-			// These individuals don't have to be copied, because there
-			// are original individuals (not references)
-			for (IIndividual ind : mutator.getSterile()) {
-				cset.get(i).add(ind);
+			// Once a stop is requested, remaining subpopulations are not evaluated again
+			if (stopRequested()) {
+				cset.set(i, new ArrayList<IIndividual>());
+			}
+			else {
+				doGeneration(i);
 			}
 			// Evaluate all new individuals
 			//evaluator.evaluate(cset.get(i));	
+			
+			// In pipelined mode, start evaluating while the rest of subpops are generated
+			if (pipelined) {
+				final int p = i;
+				//The subpopulation is notified even if its evaluation failed; the failure is raised when it is updated
+				CompletableFuture<Void> evaluation = ((MultipAbstractParallelEvaluator)evaluator).evaluateAsync(cset.get(i));
+				subpopEvaluations.set(p, evaluation);
+				evaluation.whenComplete((r, e) -> evaluatedSubpops.add(p));
+			}
 		}
-		((MultipAbstractParallelEvaluator)evaluator).evaluateMultip(cset);
-
 		
+		if (!pipelined) {
+			((MultipAbstractParallelEvaluator)evaluator).evaluateMultip(cset);
+		}
+	}
+	
+	/**
+	 * Generate offspring of a given subpopulation (they are not evaluated)
+	 * 
+	 * @param i Index of subpopulation
+	 */
+	protected void doGeneration(int i) 
+	{
+		cset.set(i, breed(i, pset.get(i)));
+	}
+	
+	/**
+	 * Recombine and mutate parents of a given subpopulation
+	 * 
+	 * @param i Index of subpopulation
+	 * @param parents Parents
+	 * @return Offspring (not evaluated)
+	 */
+	protected List<IIndividual> breed(int i, List<IIndividual> parents) 
+	{
+		FilteredRecombinator recombinator = getRecombinator(i);
+		FilteredMutator mutator = getMutator(i);
+		
+		// Recombine parents
+		List<IIndividual> offspring = recombinator.recombine(parents);
+		
+		// Add non-recombined inds. 
+		// These individuals are references to existent individuals 
+		// (elements of bset) so we make a copy of them
+		for (IIndividual ind : recombinator.getSterile()) 
+			offspring.add(ind.copy());
+		
+		// Mutate filtered inds
+		offspring = mutator.mutate(offspring);
+		
+		// Add non-mutated inds. 
+		// These individuals don't have to be copied, because there
+		// are original individuals (not references)
+		for (IIndividual ind : mutator.getSterile()) {
+			offspring.add(ind);
+		}
+		
+		// Avoid spending evaluations in genotypes already known
+		if (tabuVariation) {
+			offspring = refreshOffspring(i, offspring);
+		}
+		
+		return offspring;
+	}
+	
+	/**
+	 * Mutate again the offspring whose genotype was already evaluated or is repeated among the offspring,
+	 * up to tabuAttempts times, until a new genotype is obtained.
+	 * If no new genotype is found, the last one is kept, so the number of offspring does not change.
+	 * 
+	 * @param p Index of subpopulation
+	 * @param offspring Offspring
+	 * @return Offspring with new genotypes where possible
+	 */
+	protected List<IIndividual> refreshOffspring(int p, List<IIndividual> offspring) 
+	{
+		IMutator mutator = getMutator(p).getDecorated();
+		Set<IIndividual> generated = new HashSet<IIndividual>();
+		List<IIndividual> refreshed = new ArrayList<IIndividual>(offspring.size());
+		int fresh = 0;
+		
+		for (IIndividual ind : offspring) {
+			IIndividual candidate = ind;
+			for (int a=0; a<tabuAttempts && (isEvaluated(candidate) || generated.contains(candidate)); a++) {
+				candidate = mutator.mutate(Collections.singletonList(candidate)).get(0);
+			}
+			
+			if (generated.add(candidate) && !isEvaluated(candidate)) {
+				fresh++;
+			}
+			refreshed.add(candidate);
+		}
+		
+		offspringCount.addAndGet(offspring.size());
+		freshOffspringCount.addAndGet(fresh);
+		
+		return refreshed;
+	}
+	
+	/**
+	 * Check if an individual with the same genotype was already evaluated.
+	 * By default, there is no memory of evaluated individuals, so only repeated offspring are avoided.
+	 * 
+	 * @param ind Individual
+	 * @return True if it was already evaluated
+	 */
+	protected boolean isEvaluated(IIndividual ind) 
+	{
+		return false;
+	}
+	
+	/**
+	 * Get the ratio of offspring never evaluated before, since last call (tabu-aware variation)
+	 * 
+	 * @return Ratio of fresh offspring (1 if no offspring was generated)
+	 */
+	public double resetFreshOffspringRatio() 
+	{
+		int n = offspringCount.getAndSet(0);
+		int fresh = freshOffspringCount.getAndSet(0);
+		
+		return (n > 0) ? (1.0 * fresh) / n : 1;
+	}
+	
+	/**
+	 * Get the next subpopulation to update.
+	 * In pipelined mode, it waits until the offspring of any subpopulation not updated yet are evaluated.
+	 * If not, subpopulations are updated in order.
+	 * 
+	 * @param i Number of subpopulations already updated in this generation
+	 * @return Index of subpopulation to update
+	 */
+	protected int nextSubpopToUpdate(int i)
+	{
+		if (!pipelined) {
+			return i;
+		}
+		
+		try {
+			int p = evaluatedSubpops.take();
+			// Rethrow any exception of its evaluation
+			subpopEvaluations.get(p).join();
+			// Results of the subpopulation become visible now, whichever thread computed them
+			((MultipAbstractParallelEvaluator)evaluator).commit(cset.get(p));
+			return p;
+		}
+		catch (InterruptedException e) {
+			throw new IllegalStateException("Interrupted while waiting for evaluations", e);
+		}
+		catch (CompletionException e) {
+			throw new IllegalStateException("Evaluation of offspring failed", e.getCause());
+		}
 	}
 
 	@Override
 	protected void doReplacement() 
 	{
-		rset = new ArrayList<List<IIndividual>>(numSubpop);
+		rset = emptySubpopSets();
 		for(int p=0; p<numSubpop; p++) {
-			rset.add(p, bset.get(p));
+			doReplacement(p);
 		}
 	}
+	
+	/**
+	 * Select individuals to replace in a given subpopulation
+	 * 
+	 * @param p Index of subpopulation
+	 */
+	protected void doReplacement(int p) 
+	{
+		rset.set(p, bset.get(p));
+	}
 
 	@Override
 	protected void doUpdate() 
 	{
-		for(int p=0; p<numSubpop; p++) {
-			bset.get(p).clear();
-			bset.get(p).addAll(cset.get(p));
-
-			pset.get(p).clear();
-			rset.get(p).clear();
-			cset.get(p).clear();
+		for(int i=0; i<numSubpop; i++) {
+			doUpdate(nextSubpopToUpdate(i));
 		}
+		
+		afterUpdate();
+	}
+	
+	/**
+	 * Update a given subpopulation
+	 * 
+	 * @param p Index of subpopulation
+	 */
+	protected void doUpdate(int p) 
+	{
+		setSubpop(p, new ArrayList<IIndividual>(cset.get(p)));
+
+		pset.get(p).clear();
+		rset.get(p).clear();
+		cset.get(p).clear();
+	}
+	
+	/**
+	 * Called once all subpopulations have been updated in a generation.
+	 * By default, it does nothing.
+	 */
+	protected void afterUpdate() 
+	{
+		//Do nothing
 	}
 	
 	@Override
@@ -445,8 +1159,9 @@ public class MultiSG extends MultiPopulationAlgorithm
 				r = randgen.choose(0, numSubpop);
 			}while(r == best.getGenotype().subpop);
 			
-			best.setGenotype(new MultipListGenotype(r, best.getGenotype().genotype));
+			best.setGenotype(MultipListGenotype.of(r, best.getGenotype().genotype));
 			bset.get(r).add(best);
+			bindex.get(r).add(best);
 		}
 	}
 }
@@ -59,28 +59,31 @@ public class MultiSGE extends MultiSG
 	 * new population.
 	 */
 	@Override
-	protected void doUpdate() 
+	protected void doUpdate(int p) 
 	{
+		// Selectors keep state, so each island uses its own ones
+		BettersSelector bettersSelector = islands ? new BettersSelector(this) : this.bettersSelector;
+		WorsesSelector worsesSelector = islands ? new WorsesSelector(this) : this.worsesSelector;
+		
 		IIndividual bestb=null, bestc=null;
-		for(int p=0; p<numSubpop; p++) {
-			bestb = bettersSelector.select(bset.get(p), 1).get(0);
-			bestc = bettersSelector.select(cset.get(p), 1).get(0);
-			
-			// If best individual in b set (bestb) is better that best 
-			// individual in c set (bestc), remove worst individual in 
-			// c set (worstc) and add bestb to c set
-			if (evaluator.getComparator().compare(bestb.getFitness(), bestc.getFitness()) == 1) {
-				IIndividual worstc = worsesSelector.select(cset.get(p), 1).get(0);
-				cset.get(p).remove(worstc);
-				cset.get(p).add(bestb);
-			}
-			bset.set(p, new ArrayList<>(cset.get(p)));
-			//Order individuals
-			bset.set(p, bettersSelector.select(bset.get(p), bset.get(p).size()));
-			
-			pset.get(p).clear();
-			rset.get(p).clear();
-			cset.get(p).clear();
+		
+		bestb = bettersSelector.select(bset.get(p), 1).get(0);
+		bestc = bettersSelector.select(cset.get(p), 1).get(0);
+		
+		// If best individual in b set (bestb) is better that best 
+		// individual in c set (bestc), remove worst individual in 
+		// c set (worstc) and add bestb to c set
+		if (evaluator.getComparator().compare(bestb.getFitness(), bestc.getFitness()) == 1) {
+			IIndividual worstc = worsesSelector.select(cset.get(p), 1).get(0);
+			cset.get(p).remove(worstc);
+			cset.get(p).add(bestb);
 		}
+		bset.set(p, new ArrayList<>(cset.get(p)));
+		//Order individuals
+		setSubpop(p, bettersSelector.select(bset.get(p), bset.get(p).size()));
+		
+		pset.get(p).clear();
+		rset.get(p).clear();
+		cset.get(p).clear();
 	}
 }
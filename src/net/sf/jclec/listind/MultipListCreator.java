@@ -179,6 +179,6 @@ public class MultipListCreator extends AbstractCreator
 		
 		Collections.sort(list);
 		
-		return new MultipListGenotype(subpop, list);
+		return MultipListGenotype.of(subpop, list);
 	}
 }
@@ -1,42 +1,103 @@
 package net.sf.jclec.listind;
 
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Class implementing a genotype of individual composed by a index of subpop and a list of ints.
  * 
+ * Genotypes are immutable: operators create new lists and obtain their genotype with of(),
+ *  which returns the canonical (interned) instance for each subpopulation and list.
+ *  Thus, copies of individuals share their genotype, and equal interned genotypes are usually compared by identity.
+ *  Equality is always given by the content, so genotypes created with the constructors (which are not interned) are equal to interned ones.
+ *  Interning is weak: a canonical genotype is dropped once no individual references it, so genotypes of finished runs are not kept.
+ *  Deserialized genotypes are interned again, so serialized ensembles and individuals share genotypes with the running ones.
+ * 
  * @author Jose M. Moyano
  * @author Sebastian Ventura
  */
-public class MultipListGenotype {
+public class MultipListGenotype implements Serializable {
+	
+	/**
+	 * Serialization constant
+	 */
+	private static final long serialVersionUID = -2864926531740913258L;
+	
+	/**
+	 * Canonical genotypes that are still referenced; each one is weakly referenced by itself
+	 */
+	static final Map<MultipListGenotype, WeakReference<MultipListGenotype>> interned = new WeakHashMap<MultipListGenotype, WeakReference<MultipListGenotype>>();
 	
 	/**
 	 * Index of subpopulation
 	 */
-	public int subpop;
+	public final int subpop;
+	
+	/**
+	 * Genotype of the individual as a list; it must not be modified
+	 */
+	public final ArrayList<Integer> genotype;
 	
 	/**
-	 * Genotype of the individual as a list
+	 * Hash code, computed only once
 	 */
-	public ArrayList<Integer> genotype;
+	final int hash;
+	
+	/**
+	 * String of the genotype, built the first time it is required
+	 */
+	transient String string = null;
 
 	/**
 	 * Empty constructor
 	 */
 	public MultipListGenotype() {
-		subpop = -1;
-		genotype = new ArrayList<Integer>();
+		this(-1, new ArrayList<Integer>());
 	}
 	
 	/**
 	 * Constructor with parameters
 	 * 
 	 * @param subpop Index of subpopulation
-	 * @param genotype Genotype of individual
+	 * @param genotype Genotype of individual; it must not be modified afterwards
 	 */
 	public MultipListGenotype(int subpop, ArrayList<Integer> genotype) {
 		this.subpop = subpop;
 		this.genotype = genotype;
+		this.hash = 31 * genotype.hashCode() + subpop;
+	}
+	
+	/**
+	 * Get the canonical genotype for a subpopulation and list of labels, creating it the first time.
+	 * The list is kept by the genotype (if it is new), so it must not be modified afterwards.
+	 * 
+	 * @param subpop Index of subpopulation
+	 * @param genotype Genotype of individual
+	 * @return Interned genotype
+	 */
+	public static MultipListGenotype of(int subpop, ArrayList<Integer> genotype) {
+		MultipListGenotype key = new MultipListGenotype(subpop, genotype);
+		synchronized(interned) {
+			WeakReference<MultipListGenotype> ref = interned.get(key);
+			MultipListGenotype canonical = (ref != null) ? ref.get() : null;
+			if(canonical == null) {
+				canonical = key;
+				interned.put(canonical, new WeakReference<MultipListGenotype>(canonical));
+			}
+			return canonical;
+		}
+	}
+	
+	/**
+	 * Replace a deserialized genotype by its canonical instance
+	 * 
+	 * @return Interned genotype
+	 */
+	protected Object readResolve() {
+		return of(subpop, genotype);
 	}
 	
 	/**
@@ -61,27 +122,52 @@ public class MultipListGenotype {
 	 * Convert the MultipListGenotype into a string
 	 */
 	public String toString() {
-		String s = "[ " + subpop + "; ";
-		
-		for(Integer g : genotype) {
-			s += g +", ";
+		String s = string;
+		if(s == null) {
+			StringBuilder sb = new StringBuilder("[ ").append(subpop);
+			for(int i=0; i<genotype.size(); i++) {
+				sb.append((i == 0) ? "; " : ", ").append(genotype.get(i));
+			}
+			s = sb.append("]").toString();
+			string = s;
 		}
-		s = s.substring(0, s.length() - 2);
-		s += "]";
 		
 		return s;
 	}
 	
+	/**
+	 * Two genotypes are equal if they belong to the same subpopulation and have the same list.
+	 * Interned genotypes are usually the same object, so identity is checked first.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (other instanceof MultipListGenotype) {
+			MultipListGenotype gOther = (MultipListGenotype) other;
+			return this.hash == gOther.hash && this.subpop == gOther.subpop && this.genotype.equals(gOther.genotype);
+		}
+		else {
+			return false;
+		}
+	}
+	
+	/**
+	 * Hash code consistent with equals, so genotypes (and individuals) can be indexed in hash sets.
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
 	/**
 	 * Clones a given object of this class.
+	 * As genotypes are immutable, the object itself is returned.
 	 * 
 	 * @return Cloned object
 	 */
 	public MultipListGenotype clone() {
-		ArrayList<Integer> newGenotype = new ArrayList<Integer>();
-		for(Integer g : this.genotype) {
-			newGenotype.add(g);
-		}
-		return new MultipListGenotype(this.subpop, newGenotype);
+		return this;
 	}
 }
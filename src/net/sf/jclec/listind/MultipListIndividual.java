@@ -59,12 +59,12 @@ public class MultipListIndividual extends AbstractMultipListIndividual
 		
 	
 	/**
-	 * Sets the identifier of subpopulation
+	 * Sets the identifier of subpopulation (replacing the genotype, as it is immutable)
 	 * 
 	 * @param p Sub-population identifier
 	 */
 	public void setSubpop(int p) {
-		this.genotype.subpop = p;
+		setGenotype(MultipListGenotype.of(p, this.genotype.genotype));
 	}
 	
 	/**
@@ -88,12 +88,12 @@ public class MultipListIndividual extends AbstractMultipListIndividual
 	 */
 	public IIndividual copy() 
 	{
-		// Create new individuals, then return it
+		// Create new individual sharing the (immutable) genotype, then return it
 		if (fitness != null) {
-			return new MultipListIndividual(this.genotype.clone(), fitness.copy());			
+			return new MultipListIndividual(this.genotype, fitness.copy());			
 		}
 		else {
-			return new MultipListIndividual(this.genotype.clone());			
+			return new MultipListIndividual(this.genotype);			
 		}
 	}
 
@@ -106,13 +106,22 @@ public class MultipListIndividual extends AbstractMultipListIndividual
 	{
 		if (other instanceof MultipListIndividual) {
 			MultipListIndividual baother = (MultipListIndividual) other;
-			return this.genotype.toString().equals(baother.genotype.toString());
+			return this.genotype.equals(baother.genotype);
 		}
 		else {
 			return false;
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() 
+	{
+		return genotype.hashCode();
+	}
+	
 	@Override
 	public String toString() {
 		return new String(genotype.toString());
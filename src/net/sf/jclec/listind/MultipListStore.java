@@ -0,0 +1,294 @@
+package net.sf.jclec.listind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.fitness.SimpleValueFitness;
+
+/**
+ * Structure-of-arrays store of a population of MultipListIndividual with k labels each.
+ * Labels of all individuals are stored in a single array (n*k), along with an array of fitness
+ *  and an array with the position of each individual in the list it was filled from,
+ *  so loops over the population run over contiguous primitive arrays instead of individual objects.
+ * A store may be kept and filled again with the population at each generation; arrays are reused, 
+ *  so they are only allocated when the population grows.
+ * It offers adapters to obtain the individuals back as IIndividual.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class MultipListStore {
+
+	/**
+	 * Number of labels of each individual
+	 */
+	int k;
+
+	/**
+	 * Number of individuals
+	 */
+	int size;
+
+	/**
+	 * Labels of all individuals; labels of the i-th individual are in [i*k, (i+1)*k)
+	 */
+	int [] labels;
+
+	/**
+	 * Subpopulation of each individual
+	 */
+	int [] subpop;
+
+	/**
+	 * Fitness of each individual (NaN if not evaluated)
+	 */
+	double [] fitness;
+
+	/**
+	 * Position of each individual in the list it was filled from (-1 if none)
+	 */
+	int [] position;
+
+
+	/**
+	 * Constructor
+	 *
+	 * @param k Number of labels of each individual
+	 * @param capacity Initial capacity
+	 */
+	public MultipListStore(int k, int capacity)
+	{
+		this.k = k;
+		this.size = 0;
+		capacity = Math.max(capacity, 1);
+		labels = new int[capacity * k];
+		subpop = new int[capacity];
+		fitness = new double[capacity];
+		position = new int[capacity];
+	}
+
+	/**
+	 * Create a store with the given individuals.
+	 *
+	 * @param inds List of individuals (all of them with the same number of labels)
+	 * @return Store
+	 */
+	public static MultipListStore of(List<? extends IIndividual> inds)
+	{
+		return new MultipListStore(0, inds.size()).fill(inds);
+	}
+
+	/**
+	 * Replace the content of the store with the given individuals, reusing its arrays.
+	 * The position of each individual in the list is kept, so it can be obtained back without copying it.
+	 *
+	 * @param inds List of individuals (all of them with the same number of labels)
+	 * @return This store
+	 */
+	public MultipListStore fill(List<? extends IIndividual> inds)
+	{
+		int newK = inds.isEmpty() ? k : ((MultipListIndividual) inds.get(0)).getGenotype().genotype.size();
+		if(newK != k) {
+			k = newK;
+			labels = new int[fitness.length * k];
+		}
+
+		size = 0;
+		ensureCapacity(inds.size());
+		for(int i=0; i<inds.size(); i++) {
+			add((MultipListIndividual) inds.get(i), i);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Add an individual to the store
+	 *
+	 * @param ind Individual
+	 * @param pos Position of the individual in its list (-1 if none)
+	 * @return Index of the individual in the store
+	 */
+	public int add(MultipListIndividual ind, int pos)
+	{
+		MultipListGenotype gen = ind.getGenotype();
+		if(gen.genotype.size() != k) {
+			throw new IllegalArgumentException("All individuals in the store must have " + k + " labels");
+		}
+
+		ensureCapacity(size + 1);
+		for(int j=0; j<k; j++) {
+			labels[size*k + j] = gen.genotype.get(j);
+		}
+		subpop[size] = gen.subpop;
+		fitness[size] = (ind.getFitness() != null) ? ((SimpleValueFitness) ind.getFitness()).getValue() : Double.NaN;
+		position[size] = pos;
+
+		return size++;
+	}
+
+	/**
+	 * Grow the arrays if needed
+	 *
+	 * @param capacity Required capacity
+	 */
+	protected void ensureCapacity(int capacity)
+	{
+		if(capacity > fitness.length) {
+			int newCapacity = Math.max(capacity, 2 * fitness.length);
+			labels = Arrays.copyOf(labels, newCapacity * k);
+			subpop = Arrays.copyOf(subpop, newCapacity);
+			fitness = Arrays.copyOf(fitness, newCapacity);
+			position = Arrays.copyOf(position, newCapacity);
+		}
+	}
+
+	/**
+	 * Getter for the number of individuals
+	 *
+	 * @return Number of individuals
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Getter for the number of labels of each individual
+	 *
+	 * @return Number of labels
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * Get the j-th label of the i-th individual
+	 *
+	 * @param i Index of individual
+	 * @param j Index of label in the individual
+	 * @return Label
+	 */
+	public int getLabel(int i, int j) {
+		return labels[i*k + j];
+	}
+
+	/**
+	 * Getter for the array with labels of all individuals (n*k); it should not be modified
+	 *
+	 * @return Array of labels
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Get the subpopulation of the i-th individual
+	 *
+	 * @param i Index of individual
+	 * @return Subpopulation
+	 */
+	public int getSubpop(int i) {
+		return subpop[i];
+	}
+
+	/**
+	 * Get the fitness of the i-th individual
+	 *
+	 * @param i Index of individual
+	 * @return Fitness (NaN if not evaluated)
+	 */
+	public double getFitness(int i) {
+		return fitness[i];
+	}
+
+	/**
+	 * Set the fitness of the i-th individual
+	 *
+	 * @param i Index of individual
+	 * @param value Fitness
+	 */
+	public void setFitness(int i, double value) {
+		fitness[i] = value;
+	}
+
+	/**
+	 * Get the position of the i-th individual in the list it was filled from
+	 *
+	 * @param i Index of individual
+	 * @return Position (-1 if none)
+	 */
+	public int getPosition(int i) {
+		return position[i];
+	}
+
+	/**
+	 * Number of labels shared by two individuals
+	 *
+	 * @param i Index of first individual
+	 * @param j Index of second individual
+	 * @return Number of common labels
+	 */
+	public int commonLabels(int i, int j) {
+		int common = 0;
+		for(int a=i*k; a<(i+1)*k; a++) {
+			for(int b=j*k; b<(j+1)*k; b++) {
+				if(labels[a] == labels[b]) {
+					common++;
+					break;
+				}
+			}
+		}
+
+		return common;
+	}
+
+	/**
+	 * Average fitness of the individuals
+	 *
+	 * @return Average fitness
+	 */
+	public double avgFitness() {
+		double sum = 0;
+		for(int i=0; i<size; i++) {
+			sum += fitness[i];
+		}
+
+		return sum / size;
+	}
+
+	/**
+	 * Create the i-th individual as a MultipListIndividual (adapter to the IIndividual API)
+	 *
+	 * @param i Index of individual
+	 * @return New individual with its labels and fitness
+	 */
+	public MultipListIndividual toIndividual(int i) {
+		ArrayList<Integer> genotype = new ArrayList<Integer>(k);
+		for(int j=0; j<k; j++) {
+			genotype.add(labels[i*k + j]);
+		}
+
+		MultipListIndividual ind = new MultipListIndividual(MultipListGenotype.of(subpop[i], genotype));
+		if(!Double.isNaN(fitness[i])) {
+			ind.setFitness(new SimpleValueFitness(fitness[i]));
+		}
+
+		return ind;
+	}
+
+	/**
+	 * Create all individuals of the store (adapter to the IIndividual API)
+	 *
+	 * @return List of new individuals
+	 */
+	public List<IIndividual> toIndividuals() {
+		List<IIndividual> inds = new ArrayList<IIndividual>(size);
+		for(int i=0; i<size; i++) {
+			inds.add(toIndividual(i));
+		}
+
+		return inds;
+	}
+}
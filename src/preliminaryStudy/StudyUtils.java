@@ -3,7 +3,9 @@ package preliminaryStudy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.DoubleStream;
 
 import coeaglet.utils.Utils;
@@ -117,6 +119,8 @@ public class StudyUtils {
 		}
 		
 		//Create individuals
+		//	Created ones are also indexed to check repeated individuals in constant time
+		Set<IIndividual> created = new HashSet<IIndividual>(numberOfIndividuals);
 		ArrayList<Integer> list = new ArrayList<Integer>(k);
 		int index;
 		double [] probCopy;
@@ -144,8 +148,8 @@ public class StudyUtils {
 			Collections.sort(list);
 			
 			//Add individual to the list if it still does not exist
-			MultipListIndividual newInd = new MultipListIndividual(new MultipListGenotype(subpop, new ArrayList<Integer>(list)));
-			if(!contains(inds, newInd))
+			MultipListIndividual newInd = new MultipListIndividual(MultipListGenotype.of(subpop, new ArrayList<Integer>(list)));
+			if(created.add(newInd))
 			{	
 				inds.add(newInd);
 			}
@@ -160,7 +164,7 @@ public class StudyUtils {
 				//Get an individual including the label that most appear in the population
 				IIndividual maxLabelInd = getMaxLabelIndividual(inds, labelAppearances, aMin, randgen);
 				int p = ((MultipListIndividual)maxLabelInd).getGenotype().subpop;
-				ArrayList<Integer> gen = ((MultipListIndividual)maxLabelInd).getGenotype().genotype;
+				ArrayList<Integer> gen = new ArrayList<Integer>(((MultipListIndividual)maxLabelInd).getGenotype().genotype);
 				
 				//Get index of max label
 				int maxIndex = 0;
@@ -179,7 +183,7 @@ public class StudyUtils {
 				
 				//Remove old individual and add new one to subpopulation
 				inds.remove(maxLabelInd);
-				inds.add(new MultipListIndividual(new MultipListGenotype(p, gen)));
+				inds.add(new MultipListIndividual(MultipListGenotype.of(p, gen)));
 			}
 		}
 		
@@ -0,0 +1,44 @@
+package weka.classifiers.trees;
+
+import weka.classifiers.trees.j48.ClassifierTree;
+
+/**
+ * Access to the structure of a built J48 tree, which is not public in J48.
+ * It is in the package of J48 only to read its root.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class J48Structure {
+
+	/**
+	 * Get the depth of a built tree, i.e., the max number of conditions from the root to a leaf
+	 *
+	 * @param tree Built tree
+	 * @return Depth of the tree (0 if it only has a leaf)
+	 */
+	public static int depth(J48 tree)
+	{
+		return (tree.m_root != null) ? depth(tree.m_root) : 0;
+	}
+
+	/**
+	 * Get the depth of a node
+	 *
+	 * @param node Node of the tree
+	 * @return Depth of the subtree of the node
+	 */
+	static int depth(ClassifierTree node)
+	{
+		if(node.isLeaf()) {
+			return 0;
+		}
+
+		int max = 0;
+		for(ClassifierTree son : node.getSons()) {
+			max = Math.max(max, depth(son));
+		}
+
+		return max + 1;
+	}
+}
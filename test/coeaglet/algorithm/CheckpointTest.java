@@ -0,0 +1,149 @@
+package coeaglet.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sf.jclec.AlgorithmEvent;
+import net.sf.jclec.IAlgorithmListener;
+
+/**
+ * Tests of checkpoints: the state saved is restored, and a resumed run is the same as an uninterrupted one
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class CheckpointTest {
+
+	/**
+	 * Directory of checkpoints
+	 */
+	File dir;
+
+	/**
+	 * Checkpoint file looked for by the resumed runs
+	 */
+	File file;
+
+
+	/**
+	 * Create the directory of checkpoints
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		dir = TestUtils.tmpDir("checkpoints");
+		file = new File(dir, new File(TestUtils.TRAIN).getName() + "_10.ckpt");
+	}
+
+	/**
+	 * Delete the directory of checkpoints
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		TestUtils.delete(dir);
+	}
+
+	/**
+	 * Populations, generation and best ensemble are the same after saving and restoring a checkpoint
+	 */
+	@Test
+	public void saveAndRestore() throws Exception
+	{
+		Alg alg = new Alg();
+		alg.configure(TestUtils.configuration(2));
+		alg.execute();
+		alg.saveCheckpoint(file);
+
+		Alg restored = new Alg();
+		restored.configure(resumeConfiguration(2));
+		restored.doInit();
+
+		assertEquals(alg.getGeneration(), restored.getGeneration());
+		assertEquals(TestUtils.populations(alg), TestUtils.populations(restored));
+		assertEquals(alg.bestEnsembleFitness, restored.bestEnsembleFitness, 0);
+		assertEquals(alg.tableFitness, restored.tableFitness);
+	}
+
+	/**
+	 * In deterministic mode, a run resumed from the checkpoint of an intermediate generation ends as the uninterrupted run
+	 */
+	@Test
+	public void resumeExactly() throws Exception
+	{
+		Alg full = new Alg();
+		full.configure(TestUtils.configuration(4));
+		full.addListener(new IAlgorithmListener() {
+			@Override
+			public void algorithmStarted(AlgorithmEvent event) {
+				//Do nothing
+			}
+
+			@Override
+			public void iterationCompleted(AlgorithmEvent event) {
+				if(full.getGeneration() == 2) {
+					try {
+						full.saveCheckpoint(file);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			}
+
+			@Override
+			public void algorithmFinished(AlgorithmEvent event) {
+				//Do nothing
+			}
+
+			@Override
+			public void algorithmTerminated(AlgorithmEvent event) {
+				//Do nothing
+			}
+		});
+		full.execute();
+
+		Alg resumed = new Alg();
+		resumed.configure(resumeConfiguration(4));
+		resumed.execute();
+
+		assertEquals(full.getGeneration(), resumed.getGeneration());
+		assertEquals(TestUtils.populations(full), TestUtils.populations(resumed));
+		assertEquals(full.bestEnsembleFitness, resumed.bestEnsembleFitness, 0);
+	}
+
+	/**
+	 * Exact resume is rejected out of deterministic mode
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void exactResumeNeedsDeterministicMode() throws Exception
+	{
+		XMLConfiguration conf = resumeConfiguration(4);
+		conf.setProperty("deterministic", false);
+		conf.addProperty("checkpoint[@exact]", true);
+
+		new Alg().configure(conf);
+	}
+
+	/**
+	 * Configuration of a run resumed from the checkpoint file
+	 *
+	 * @param generations Max number of generations
+	 * @return Configuration
+	 */
+	private XMLConfiguration resumeConfiguration(int generations)
+	{
+		XMLConfiguration conf = TestUtils.configuration(generations);
+		conf.addProperty("checkpoint[@resume]", true);
+		conf.addProperty("checkpoint[@dir]", dir.getPath());
+
+		return conf;
+	}
+}
@@ -0,0 +1,72 @@
+package coeaglet.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import mulan.data.MultiLabelInstances;
+import net.sf.jclec.IIndividual;
+
+/**
+ * Tests of the incremental evaluation of ensembles
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class DeltaEnsembleEvalTest {
+
+	/**
+	 * Training data
+	 */
+	MultiLabelInstances data;
+
+	/**
+	 * Evaluator of members
+	 */
+	Eval eval;
+
+
+	/**
+	 * Load the data and create the evaluator
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		data = TestUtils.emotions();
+		eval = TestUtils.eval(data, 2, false, 4);
+	}
+
+	/**
+	 * A sequence of ensembles sharing members gets the same fitness than evaluating each of them with EnsembleEval
+	 */
+	@Test
+	public void sameFitnessThanEnsembleEval() throws Exception
+	{
+		int [][][] sequence = new int [][][] {
+			{{0, 0, 1, 2}, {0, 3, 4, 5}, {1, 0, 2, 4}},
+			//One member replaced
+			{{0, 0, 1, 2}, {0, 3, 4, 5}, {1, 1, 3, 5}},
+			//Repeated member
+			{{0, 0, 1, 2}, {0, 0, 1, 2}, {1, 1, 3, 5}},
+			//All members replaced
+			{{1, 0, 3}, {0, 1, 4}, {1, 2, 5}, {0, 0, 5}},
+			//Same multiset than the first one, in another order
+			{{1, 0, 2, 4}, {0, 0, 1, 2}, {0, 3, 4, 5}},
+		};
+
+		//Capacity lower than the number of members, so some votes are computed again from scratch
+		DeltaEnsembleEval delta = new DeltaEnsembleEval(data, 4, eval.getSampleKeys());
+		for(int [][] members : sequence) {
+			List<IIndividual> inds = TestUtils.individuals(members);
+			Ensemble ensemble = TestUtils.ensemble(eval, inds, data);
+
+			double expected = ensemble.fitness;
+			assertEquals(expected, delta.evaluate(ensemble), 1e-12);
+		}
+
+		eval.shutdown();
+	}
+}
@@ -0,0 +1,108 @@
+package coeaglet.algorithm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import mulan.data.MultiLabelInstances;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.fitness.SimpleValueFitness;
+
+/**
+ * Tests that results in deterministic mode do not depend on the number of threads
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class DeterministicThreadsTest {
+
+	/**
+	 * Training data
+	 */
+	MultiLabelInstances data;
+
+
+	/**
+	 * Load the data
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		data = TestUtils.emotions();
+	}
+
+	/**
+	 * Fitness, tables and cache hits are the same with one and several threads
+	 */
+	@Test
+	public void sameResultsWithAnyThreads() throws Exception
+	{
+		Result serial = run(1);
+		Result parallel = run(4);
+
+		assertArrayEquals(serial.fitness, parallel.fitness, 0);
+		assertEquals(serial.cacheHitRatio, parallel.cacheHitRatio, 0);
+		assertEquals(serial.tableFitness, parallel.tableFitness);
+	}
+
+	/**
+	 * Evaluate two generations of individuals, the second one repeating some of the first one
+	 *
+	 * @param numThreads Number of threads
+	 * @return Results of the evaluation
+	 */
+	private Result run(int numThreads) throws Exception
+	{
+		Eval eval = TestUtils.eval(data, 2, true, numThreads);
+
+		List<IIndividual> first = TestUtils.individuals(new int [][] {
+			{0, 0, 1, 2}, {0, 1, 3}, {1, 2, 4, 5}, {1, 0, 1, 2}, {0, 0, 1, 2}});
+		List<IIndividual> second = TestUtils.individuals(new int [][] {
+			{0, 1, 3}, {1, 3, 4}, {0, 2, 5}, {1, 2, 4, 5}, {1, 3, 4}});
+
+		eval.evaluate(first);
+		eval.resetCacheHitRatio();
+		eval.evaluate(second);
+
+		Result result = new Result();
+		List<IIndividual> all = new ArrayList<IIndividual>(first);
+		all.addAll(second);
+		result.fitness = new double[all.size()];
+		for(int i=0; i<all.size(); i++) {
+			result.fitness[i] = ((SimpleValueFitness) all.get(i).getFitness()).getValue();
+		}
+		result.cacheHitRatio = eval.resetCacheHitRatio();
+		result.tableFitness = new HashMap<String, Double>(eval.getTableFitness());
+
+		eval.shutdown();
+		return result;
+	}
+
+	/**
+	 * Results of an evaluation
+	 */
+	private static class Result {
+
+		/**
+		 * Fitness of each individual, in order
+		 */
+		double [] fitness;
+
+		/**
+		 * Ratio of cache hits in the last generation
+		 */
+		double cacheHitRatio;
+
+		/**
+		 * Fitness of each member in the table
+		 */
+		Map<String, Double> tableFitness;
+	}
+}
@@ -0,0 +1,110 @@
+package coeaglet.algorithm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mulan.data.MultiLabelInstances;
+import net.sf.jclec.IIndividual;
+
+/**
+ * Tests of the publication of ensembles in service mode
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class EnsemblePublisherTest {
+
+	/**
+	 * Training data
+	 */
+	MultiLabelInstances data;
+
+	/**
+	 * Model directory
+	 */
+	File modelDir;
+
+
+	/**
+	 * Load the data and create the model directory
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		data = TestUtils.emotions();
+		modelDir = TestUtils.tmpDir("models");
+	}
+
+	/**
+	 * Delete the model directory
+	 */
+	@After
+	public void tearDown() throws Exception
+	{
+		TestUtils.delete(modelDir);
+	}
+
+	/**
+	 * A published ensemble is written, swapped behind the handle, and reloaded with the same members and predictions
+	 */
+	@Test
+	public void publishAndReload() throws Exception
+	{
+		Eval eval = TestUtils.eval(data, 2, false, 2);
+		List<IIndividual> inds = TestUtils.individuals(new int [][] {{0, 0, 1, 2}, {0, 3, 4, 5}, {1, 0, 2, 4}, {1, 1, 3, 5}});
+		Ensemble ensemble = TestUtils.ensemble(eval, inds, data);
+
+		EnsemblePublisher publisher = new EnsemblePublisher(modelDir, null);
+		Ensemble copy = ensemble.detachedCopy();
+		copy.setFitness(ensemble.fitness);
+		int version = publisher.publish(copy, 7);
+		publisher.shutdown(60);
+
+		assertTrue("Handle", publisher.getHandle().isAvailable());
+		assertEquals(version, publisher.getHandle().getVersion());
+		List<String> latest = Files.readAllLines(new File(modelDir, "LATEST").toPath(), StandardCharsets.UTF_8);
+		assertEquals(Integer.toString(version), latest.get(0));
+		assertTrue("Generation", latest.contains("generation=7"));
+
+		Ensemble reloaded = EnsemblePublisher.readLatest(modelDir);
+		assertEquals(ensemble.fitness, reloaded.fitness, 0);
+		assertEquals(ensemble.getInds().size(), reloaded.getInds().size());
+		for(int i=0; i<ensemble.getInds().size(); i++) {
+			//Genotypes are interned again, so they are shared with the running ones
+			assertSame(ensemble.getInds().get(i).getGenotype(), reloaded.getInds().get(i).getGenotype());
+		}
+		assertArrayEquals("Predictions", ensemble.classify(data), reloaded.classify(data));
+	}
+
+	/**
+	 * Versions continue from those already in the model directory
+	 */
+	@Test
+	public void versionsContinue() throws Exception
+	{
+		Eval eval = TestUtils.eval(data, 1, false, 1);
+		Ensemble ensemble = TestUtils.ensemble(eval, TestUtils.individuals(new int [][] {{0, 0, 1, 2}, {0, 2, 3, 4}}), data);
+
+		EnsemblePublisher publisher = new EnsemblePublisher(modelDir, null);
+		publisher.publish(ensemble.detachedCopy(), 1);
+		publisher.shutdown(60);
+
+		EnsemblePublisher next = new EnsemblePublisher(modelDir, null);
+		int version = next.publish(ensemble.detachedCopy(), 2);
+		next.shutdown(60);
+
+		assertEquals(2, version);
+		assertEquals(2, next.getHandle().getVersion());
+	}
+}
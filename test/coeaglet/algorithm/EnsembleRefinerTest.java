@@ -0,0 +1,152 @@
+package coeaglet.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mulan.data.MultiLabelInstances;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.listind.MultipListIndividual;
+
+/**
+ * Tests that the scores of the local search over ensembles are the fitness given by an exact evaluation
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class EnsembleRefinerTest {
+
+	/**
+	 * Training data
+	 */
+	MultiLabelInstances data;
+
+	/**
+	 * Evaluator of members
+	 */
+	Eval eval;
+
+	/**
+	 * Members of the initial ensemble; removing any of them, all labels are still predicted
+	 */
+	List<MultipListIndividual> members;
+
+	/**
+	 * Candidates to enter the ensemble
+	 */
+	List<MultipListIndividual> candidates;
+
+
+	/**
+	 * Load the data and evaluate members and candidates
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		data = TestUtils.emotions();
+		eval = TestUtils.eval(data, 1, false, 4);
+
+		members = typed(TestUtils.individuals(new int [][] {{0, 0, 1, 2}, {0, 3, 4, 5}, {0, 0, 2, 4}, {0, 1, 3, 5}}));
+		candidates = typed(TestUtils.individuals(new int [][] {{0, 0, 1, 5}, {0, 2, 3, 4}}));
+
+		List<IIndividual> all = new ArrayList<IIndividual>(members);
+		all.addAll(candidates);
+		eval.evaluate(all);
+	}
+
+	/**
+	 * Stop the evaluator
+	 */
+	@After
+	public void tearDown()
+	{
+		eval.shutdown();
+	}
+
+	/**
+	 * The fitness of the initial ensemble and the score of every move are those of the ensemble after the move
+	 */
+	@Test
+	public void scoresAreExact() throws Exception
+	{
+		EnsembleRefiner refiner = newRefiner();
+		refiner.refine(members, candidates, 60, 0);
+		assertEquals(exactFitness(new ArrayList<IIndividual>(members)), refiner.getFitness(), 1e-12);
+
+		int pool = members.size() + candidates.size();
+		for(int r=-1; r<members.size(); r++) {
+			for(int a=-1; a<pool; a++) {
+				if((r < 0 && a < 0) || (a >= 0 && a < members.size())) {
+					continue;
+				}
+
+				List<IIndividual> moved = new ArrayList<IIndividual>();
+				for(int m=0; m<members.size(); m++) {
+					if(m != r) {
+						moved.add(members.get(m));
+					}
+				}
+				if(a >= 0) {
+					moved.add(candidates.get(a - members.size()));
+				}
+
+				assertEquals(exactFitness(moved), refiner.score(r, a), 1e-12);
+			}
+		}
+	}
+
+	/**
+	 * The fitness of the refined ensemble is that of an exact evaluation of its members
+	 */
+	@Test
+	public void refinedFitnessIsExact() throws Exception
+	{
+		EnsembleRefiner refiner = newRefiner();
+		List<IIndividual> refined = refiner.refine(members, candidates, 60, 10);
+
+		assertEquals(exactFitness(refined), refiner.getFitness(), 1e-12);
+	}
+
+	/**
+	 * Create a refiner as the algorithm does
+	 *
+	 * @return Refiner
+	 */
+	private EnsembleRefiner newRefiner()
+	{
+		DeltaEnsembleEval delta = new DeltaEnsembleEval(data, members.size() + candidates.size(), eval.getSampleKeys());
+		return new EnsembleRefiner(delta, eval.tableClassifiers, 5, 4);
+	}
+
+	/**
+	 * Fitness of an ensemble built and evaluated from scratch with EnsembleEval
+	 *
+	 * @param inds Members
+	 * @return Fitness
+	 */
+	private double exactFitness(List<IIndividual> inds) throws Exception
+	{
+		return TestUtils.ensemble(eval, inds, data).fitness;
+	}
+
+	/**
+	 * Cast a list of individuals
+	 *
+	 * @param inds Individuals
+	 * @return List of MultipListIndividual
+	 */
+	private static List<MultipListIndividual> typed(List<IIndividual> inds)
+	{
+		List<MultipListIndividual> list = new ArrayList<MultipListIndividual>(inds.size());
+		for(IIndividual ind : inds) {
+			list.add((MultipListIndividual) ind);
+		}
+
+		return list;
+	}
+}
@@ -0,0 +1,86 @@
+package coeaglet.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import coeaglet.utils.DatasetTransformation;
+import mulan.classifier.transformation.LabelPowerset2;
+import mulan.data.MultiLabelInstances;
+import mulan.evaluation.MulanLP2Evaluator;
+import mulan.evaluation.measure.ExampleBasedFMeasure;
+import mulan.evaluation.measure.Measure;
+import net.sf.jclec.listind.MultipListGenotype;
+import weka.classifiers.trees.J48;
+
+/**
+ * Tests of the F-measure of members predicted in shards
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class ShardedFMeasureTest {
+
+	/**
+	 * Training data
+	 */
+	MultiLabelInstances data;
+
+
+	/**
+	 * Load the data
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		data = TestUtils.emotions();
+	}
+
+	/**
+	 * The F-measure computed by shards is the example-based F-measure of Mulan, whatever the size of the shards
+	 */
+	@Test
+	public void sameAsMulan() throws Exception
+	{
+		for(List<Integer> labels : Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(1, 3, 5), Arrays.asList(0, 2, 3, 4))) {
+			MultiLabelInstances memberData = new DatasetTransformation().transformDataset(data, new ArrayList<Integer>(labels));
+			LabelPowerset2 mll = new LabelPowerset2(new J48());
+			mll.setSeed(1);
+			mll.setInstanceSeededTies(true);
+			mll.build(memberData);
+
+			List<Measure> measures = new ArrayList<Measure>();
+			measures.add(new ExampleBasedFMeasure());
+			double expected = new MulanLP2Evaluator().evaluate(mll, memberData, measures).getMeasures().get(0).getValue();
+
+			for(int shardSize : new int [] {1, 7, 50, memberData.getNumInstances() + 1}) {
+				Eval eval = TestUtils.eval(data, 1, false, 4);
+				eval.setShardSize(shardSize);
+				assertEquals("Labels " + labels + ", shards of " + shardSize, expected, eval.shardedFMeasure(mll, memberData), 1e-12);
+				eval.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Out of deterministic mode, the fitness of a member predicted in shards is the same as without shards with ties solved by instance
+	 */
+	@Test
+	public void fitnessUnchangedByShards() throws Exception
+	{
+		MultipListGenotype gen = TestUtils.genotype(0, 0, 2, 4);
+
+		Eval whole = TestUtils.eval(data, 1, true, 4);
+		Eval sharded = TestUtils.eval(data, 1, false, 4);
+		sharded.setShardSize(16);
+
+		assertEquals(whole.buildMember(gen).fitness, sharded.buildMember(gen).fitness, 1e-12);
+		whole.shutdown();
+		sharded.shutdown();
+	}
+}
@@ -0,0 +1,227 @@
+package coeaglet.algorithm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.commons.configuration.XMLConfiguration;
+
+import mulan.classifier.MultiLabelLearner;
+import mulan.classifier.transformation.LabelPowerset2;
+import mulan.data.MultiLabelInstances;
+import net.sf.jclec.IIndividual;
+import net.sf.jclec.fitness.SimpleValueFitness;
+import net.sf.jclec.listind.MultipListGenotype;
+import net.sf.jclec.listind.MultipListIndividual;
+import weka.classifiers.trees.J48;
+
+/**
+ * Utilities shared by the tests: data, evaluators and ensembles built as in the algorithm.
+ * Tests are run from the root of the repository, so the Emotions data are available.
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class TestUtils {
+
+	/**
+	 * Training data used in the tests
+	 */
+	static final String TRAIN = "data/Emotions/Emotions-train1.arff";
+
+	/**
+	 * Test data, only read by the algorithm
+	 */
+	static final String TEST = "data/Emotions/Emotions-test1.arff";
+
+	/**
+	 * XML file with the labels of the data
+	 */
+	static final String XML = "data/Emotions/Emotions.xml";
+
+
+	/**
+	 * Load the training data of the tests
+	 *
+	 * @return Multi-label data
+	 * @throws Exception
+	 */
+	public static MultiLabelInstances emotions() throws Exception
+	{
+		return new MultiLabelInstances(TRAIN, XML);
+	}
+
+	/**
+	 * Create an evaluator of members, as configured by the algorithm, with the same data for all subpopulations
+	 *
+	 * @param data Training data
+	 * @param nSubpop Number of subpopulations
+	 * @param deterministic Deterministic mode
+	 * @param numThreads Number of threads
+	 * @return Evaluator with empty tables
+	 */
+	public static Eval eval(MultiLabelInstances data, int nSubpop, boolean deterministic, int numThreads)
+	{
+		MultiLabelInstances [] trainData = new MultiLabelInstances[nSubpop];
+		Arrays.fill(trainData, data);
+
+		Eval eval = new Eval();
+		eval.setTrainData(trainData);
+		eval.setEvalData(data);
+		eval.setTableFitness(new Hashtable<String, Double>());
+		eval.setTableClassifiers(new Hashtable<String, MultiLabelLearner>());
+		eval.setTableGenotypes(new Hashtable<String, MultipListGenotype>());
+		eval.setSampleKeys(new SampleKeys());
+		eval.setDeterministic(deterministic);
+		eval.setNumThreads(numThreads);
+
+		return eval;
+	}
+
+	/**
+	 * Get an interned genotype
+	 *
+	 * @param subpop Subpopulation
+	 * @param labels Labels
+	 * @return Genotype
+	 */
+	public static MultipListGenotype genotype(int subpop, int... labels)
+	{
+		ArrayList<Integer> list = new ArrayList<Integer>(labels.length);
+		for(int l : labels) {
+			list.add(l);
+		}
+
+		return MultipListGenotype.of(subpop, list);
+	}
+
+	/**
+	 * Create individuals
+	 *
+	 * @param genotypes Each row includes the subpopulation and the labels of an individual
+	 * @return Individuals (not evaluated)
+	 */
+	public static List<IIndividual> individuals(int [][] genotypes)
+	{
+		List<IIndividual> inds = new ArrayList<IIndividual>(genotypes.length);
+		for(int [] g : genotypes) {
+			inds.add(new MultipListIndividual(genotype(g[0], Arrays.copyOfRange(g, 1, g.length))));
+		}
+
+		return inds;
+	}
+
+	/**
+	 * Evaluate the members and build and evaluate an ensemble with them
+	 *
+	 * @param eval Evaluator of members
+	 * @param inds Members
+	 * @param data Training data
+	 * @return Built ensemble, with its fitness
+	 * @throws Exception
+	 */
+	public static Ensemble ensemble(Eval eval, List<IIndividual> inds, MultiLabelInstances data) throws Exception
+	{
+		eval.evaluate(inds);
+		eval.commit(inds);
+
+		LabelPowerset2 learner = new LabelPowerset2(new J48());
+		learner.setSeed(1);
+		Ensemble ensemble = new Ensemble(inds, learner);
+		ensemble.setTableClassifiers(eval.tableClassifiers, eval.getSampleKeys());
+		ensemble.build(data);
+		ensemble.setFitness(new EnsembleEval(ensemble, data).evaluate());
+
+		return ensemble;
+	}
+
+	/**
+	 * Create a small configuration of the algorithm in deterministic mode, with two subpopulations
+	 *
+	 * @param generations Max number of generations
+	 * @return Configuration
+	 */
+	public static XMLConfiguration configuration(int generations)
+	{
+		XMLConfiguration conf = new XMLConfiguration();
+		conf.addProperty("rand-gen-factory[@type]", "net.sf.jclec.util.random.RanecuFactory");
+		conf.addProperty("rand-gen-factory[@seed]", 10);
+		conf.addProperty("evaluator[@type]", "coeaglet.algorithm.Eval");
+		conf.addProperty("provider[@type]", "coeaglet.individualCreator.FrequencyBasedIndividualCreator");
+		conf.addProperty("recombinator[@type]", "coeaglet.recombinator.Crossover");
+		conf.addProperty("recombinator[@rec-prob]", 0.7);
+		conf.addProperty("mutator[@type]", "coeaglet.mutator.Mutator");
+		conf.addProperty("mutator[@mut-prob]", 0.2);
+		conf.addProperty("population-size", 20);
+		conf.addProperty("number-subpop", 2);
+		conf.addProperty("max-of-generations", generations);
+		conf.addProperty("k", 3);
+		conf.addProperty("number-classifiers", 10);
+		conf.addProperty("beta-update-population", 0.75);
+		conf.addProperty("beta-ensemble-selection", 0.25);
+		conf.addProperty("ngenerations-comm", 2);
+		conf.addProperty("prune-ensemble", false);
+		conf.addProperty("sampling-ratio", 0.75);
+		conf.addProperty("communication", "operators");
+		conf.addProperty("probability-crossover-communication", 0.35);
+		conf.addProperty("probability-mutator-communication", 0.99);
+		conf.addProperty("eval-type", "full");
+		conf.addProperty("dataset.train-dataset", TRAIN);
+		conf.addProperty("dataset.test-dataset", TEST);
+		conf.addProperty("dataset.xml", XML);
+		conf.addProperty("deterministic", true);
+		conf.addProperty("number-threads", 2);
+
+		return conf;
+	}
+
+	/**
+	 * Get the individuals of all subpopulations of an algorithm, as strings with their genotype and fitness
+	 *
+	 * @param alg Algorithm
+	 * @return Individuals of each subpopulation
+	 */
+	public static List<String> populations(Alg alg)
+	{
+		List<String> pops = new ArrayList<String>();
+		for(int p=0; p<alg.getNumSubpop(); p++) {
+			StringBuilder sb = new StringBuilder();
+			for(IIndividual ind : alg.getInhabitants(p)) {
+				sb.append(((MultipListIndividual) ind).getGenotype()).append(" ").append(((SimpleValueFitness) ind.getFitness()).getValue()).append("; ");
+			}
+			pops.add(sb.toString());
+		}
+
+		return pops;
+	}
+
+	/**
+	 * Create a temporary directory
+	 *
+	 * @param prefix Prefix of its name
+	 * @return Directory
+	 * @throws IOException
+	 */
+	public static File tmpDir(String prefix) throws IOException
+	{
+		return Files.createTempDirectory(prefix).toFile();
+	}
+
+	/**
+	 * Delete a directory and its content
+	 *
+	 * @param dir Directory
+	 * @throws IOException
+	 */
+	public static void delete(File dir) throws IOException
+	{
+		if(dir != null && dir.exists()) {
+			Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(p -> p.toFile()).forEach(File::delete);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package coeaglet.distributed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.commons.configuration.XMLConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import coeaglet.algorithm.Checkpoint;
+import coeaglet.algorithm.TestUtils;
+
+/**
+ * Tests of the protocol between the coordinator and the workers, with workers played by the test over local sockets
+ *
+ * @author Jose M. Moyano
+ *
+ */
+public class CoordinatorTest {
+
+	/**
+	 * Configuration of the algorithm, with two subpopulations
+	 */
+	XMLConfiguration conf;
+
+	/**
+	 * Port of the coordinator
+	 */
+	int port;
+
+
+	/**
+	 * Create the configuration and find a free port
+	 */
+	@Before
+	public void setUp() throws Exception
+	{
+		conf = TestUtils.configuration(2);
+		try(ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+	}
+
+	/**
+	 * Each worker presents itself with HELLO and sends its candidates; when they finish, the coordinator replies STOP
+	 */
+	@Test(timeout = 120000)
+	public void handshake() throws Exception
+	{
+		Coordinator coordinator = new Coordinator(port, 2, conf);
+		CompletableFuture<Void> run = start(coordinator);
+
+		Socket [] sockets = new Socket[2];
+		DataInputStream [] in = new DataInputStream[2];
+		DataOutputStream [] out = new DataOutputStream[2];
+		for(int w=0; w<2; w++) {
+			sockets[w] = hello(w, w, 1);
+			in[w] = new DataInputStream(new BufferedInputStream(sockets[w].getInputStream()));
+			out[w] = new DataOutputStream(new BufferedOutputStream(sockets[w].getOutputStream()));
+		}
+
+		for(int w=0; w<2; w++) {
+			out[w].writeByte(Protocol.CANDIDATES);
+			out[w].writeInt(2);
+			out[w].writeBoolean(true);
+			Protocol.writeSummaries(out[w], candidates(w));
+			out[w].flush();
+		}
+		for(int w=0; w<2; w++) {
+			assertEquals(Protocol.STOP, in[w].readByte());
+		}
+
+		run.join();
+		assertNotNull(coordinator.getEnsemble());
+		for(Socket socket : sockets) {
+			socket.close();
+		}
+	}
+
+	/**
+	 * A worker presenting itself with the id of another one is rejected
+	 */
+	@Test(timeout = 120000)
+	public void repeatedWorkerIsRejected() throws Exception
+	{
+		CompletableFuture<Void> run = start(new Coordinator(port, 2, conf));
+
+		Socket first = hello(0, 0, 1);
+		Socket second = hello(0, 1, 1);
+
+		try {
+			run.join();
+		}
+		catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertTrue(e.getCause().getMessage().startsWith("Invalid or repeated worker id"));
+			return;
+		}
+		finally {
+			first.close();
+			second.close();
+		}
+
+		throw new AssertionError("Repeated worker was accepted");
+	}
+
+	/**
+	 * Run the coordinator in the background
+	 *
+	 * @param coordinator Coordinator
+	 * @return Future completed when the coordinator finishes
+	 */
+	private CompletableFuture<Void> start(Coordinator coordinator)
+	{
+		return CompletableFuture.runAsync(() -> {
+			try {
+				coordinator.run();
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	/**
+	 * Connect to the coordinator as a worker and send HELLO, with all instances as the sample of each subpopulation
+	 *
+	 * @param workerId Identifier of the worker
+	 * @param firstSubpop First subpopulation of the worker
+	 * @param nSubpops Number of subpopulations of the worker
+	 * @return Socket connected to the coordinator
+	 */
+	private Socket hello(int workerId, int firstSubpop, int nSubpops) throws Exception
+	{
+		Socket socket = connect();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		int [] sample = new int[TestUtils.emotions().getNumInstances()];
+		Arrays.setAll(sample, i -> i);
+
+		out.writeByte(Protocol.HELLO);
+		out.writeInt(workerId);
+		out.writeInt(firstSubpop);
+		out.writeInt(nSubpops);
+		for(int p=0; p<nSubpops; p++) {
+			Checkpoint.writeInts(out, sample);
+		}
+		out.flush();
+
+		return socket;
+	}
+
+	/**
+	 * Connect to the coordinator, retrying while it is not listening yet
+	 *
+	 * @return Socket
+	 */
+	private Socket connect() throws Exception
+	{
+		for(int i=0; ; i++) {
+			try {
+				return new Socket("localhost", port);
+			}
+			catch (ConnectException e) {
+				if(i >= 100) {
+					throw e;
+				}
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	/**
+	 * Candidates of a worker with a single subpopulation, without models
+	 *
+	 * @param subpop Subpopulation of the worker
+	 * @return Summaries of the candidates
+	 */
+	private List<Protocol.Summary> candidates(int subpop)
+	{
+		int [][] labels = new int [][] {{0, 1, 2}, {3, 4, 5}, {0, 2, 4}, {1, 3, 5}, {0, 1, 5}, {2, 3, 4}};
+
+		List<Protocol.Summary> summaries = new ArrayList<Protocol.Summary>();
+		for(int i=0; i<labels.length; i++) {
+			ArrayList<Integer> list = new ArrayList<Integer>();
+			for(int l : labels[i]) {
+				list.add(l);
+			}
+			summaries.add(new Protocol.Summary(subpop, list, 0.5 - 0.01 * i, null));
+		}
+
+		return summaries;
+	}
+}